@@ -0,0 +1,340 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact binary format for moving score history between databases.
+ *
+ * Rows are written in chunks of up to {@link #CHUNK_ROWS}, each stored column
+ * by column so similar values sit together:
+ * <pre>
+ *   header: int magic, short version, byte n, n x (byte length, difficulty name)
+ *   chunk:  int rows (0 ends the file), int body length, int CRC32C of body, body
+ *   body:   varint names, names x (varint length, UTF-8 name)
+ *           rows x varint  index into the chunk's names
+ *           rows x byte    index into the header's difficulty names
+ *           rows x varint  score
+ *           long first timestamp, rows - 1 x zigzag varint delta to the previous one
+ * </pre>
+ * Names are dictionary-encoded per chunk and difficulties by name in the
+ * header, so neither a user id nor a Difficulty ordinal leaks into the file.
+ * Rows exported in insertion order have near-sorted timestamps, so most
+ * deltas take one to three bytes. Writer and Reader hold one chunk at a time.
+ */
+public final class ColumnarScores {
+
+    public static final int MAGIC = 0x51534331; // "QSC1"
+    public static final short VERSION = 1;
+    public static final int CHUNK_ROWS = 65_536;
+    private static final int MAX_BODY_BYTES = 64 << 20;
+    // Every row takes at least a name index, a difficulty, a score and a timestamp byte
+    private static final int MIN_ROW_BYTES = 4;
+
+    private ColumnarScores() {
+    }
+
+    /**
+     * Encodes rows into a channel. Call {@link #add} per row, then
+     * {@link #finish()}; the channel is left open.
+     */
+    public static class Writer {
+        private final WritableByteChannel out;
+        private final int chunkRows;
+        private final Map<String, Integer> names = new HashMap<>();
+        private final List<String> nameOrder = new ArrayList<>();
+        private final int[] nameIndexes;
+        private final byte[] difficulties;
+        private final int[] scores;
+        private final long[] timestamps;
+        private final CRC32C crc = new CRC32C();
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        private int rows;
+        private long rowsWritten;
+        private int chunks;
+
+        public Writer(WritableByteChannel out) throws IOException {
+            this(out, CHUNK_ROWS);
+        }
+
+        public Writer(WritableByteChannel out, int chunkRows) throws IOException {
+            if (out == null) {
+                throw new IllegalArgumentException("Channel cannot be null");
+            }
+            if (chunkRows <= 0) {
+                throw new IllegalArgumentException("Chunk rows must be positive");
+            }
+            this.out = out;
+            this.chunkRows = chunkRows;
+            this.nameIndexes = new int[chunkRows];
+            this.difficulties = new byte[chunkRows];
+            this.scores = new int[chunkRows];
+            this.timestamps = new long[chunkRows];
+
+            Difficulty[] all = Difficulty.values();
+            ByteBuffer header = ByteBuffer.allocate(7 + all.length * 256);
+            header.putInt(MAGIC).putShort(VERSION).put((byte) all.length);
+            for (Difficulty difficulty : all) {
+                byte[] name = difficulty.name().getBytes(StandardCharsets.US_ASCII);
+                header.put((byte) name.length).put(name);
+            }
+            header.flip();
+            writeFully(header);
+        }
+
+        public void add(String userName, int score, Difficulty difficulty, long timestamp) throws IOException {
+            Integer index = names.get(userName);
+            if (index == null) {
+                index = nameOrder.size();
+                names.put(userName, index);
+                nameOrder.add(userName);
+            }
+            nameIndexes[rows] = index;
+            difficulties[rows] = (byte) difficulty.ordinal();
+            scores[rows] = score;
+            timestamps[rows] = timestamp;
+            if (++rows == chunkRows) {
+                flushChunk();
+            }
+        }
+
+        // Writes the last chunk and the end marker. Returns the number of rows written.
+        public long finish() throws IOException {
+            if (rows > 0) {
+                flushChunk();
+            }
+            ByteBuffer end = ByteBuffer.allocate(4).putInt(0);
+            end.flip();
+            writeFully(end);
+            return rowsWritten;
+        }
+
+        private void flushChunk() throws IOException {
+            List<byte[]> encodedNames = new ArrayList<>(nameOrder.size());
+            long bound = 12 + 5 + (long) rows * (5 + 1 + 5 + 10) + 8;
+            for (String name : nameOrder) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                encodedNames.add(bytes);
+                bound += 5 + bytes.length;
+            }
+            if (buffer.capacity() < bound) {
+                buffer = ByteBuffer.allocate((int) Math.max(bound, buffer.capacity() * 2L));
+            }
+            buffer.clear();
+            buffer.position(12); // chunk header, filled in below
+
+            putVarint(buffer, encodedNames.size());
+            for (byte[] bytes : encodedNames) {
+                putVarint(buffer, bytes.length);
+                buffer.put(bytes);
+            }
+            for (int i = 0; i < rows; i++) {
+                putVarint(buffer, nameIndexes[i]);
+            }
+            buffer.put(difficulties, 0, rows);
+            for (int i = 0; i < rows; i++) {
+                putVarint(buffer, scores[i]);
+            }
+            buffer.putLong(timestamps[0]);
+            for (int i = 1; i < rows; i++) {
+                long delta = timestamps[i] - timestamps[i - 1];
+                putVarint(buffer, (delta << 1) ^ (delta >> 63)); // zigzag: small negatives stay small
+            }
+
+            int bodyLength = buffer.position() - 12;
+            crc.reset();
+            crc.update(buffer.array(), 12, bodyLength);
+            buffer.putInt(0, rows).putInt(4, bodyLength).putInt(8, (int) crc.getValue());
+            buffer.flip();
+            writeFully(buffer);
+
+            rowsWritten += rows;
+            chunks++;
+            rows = 0;
+            names.clear();
+            nameOrder.clear();
+        }
+
+        private void writeFully(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                out.write(data);
+            }
+        }
+
+        public int getChunks() { return chunks; }
+    }
+
+    /**
+     * Decodes a file one chunk at a time: call {@link #nextChunk()} until it
+     * returns false, reading the chunk's rows through the accessors in between.
+     */
+    public static class Reader {
+        private final ReadableByteChannel in;
+        private final Difficulty[] difficultyMap;
+        private final CRC32C crc = new CRC32C();
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        private String[] names = new String[0];
+        private int[] nameIndexes = new int[0];
+        private Difficulty[] difficulties = new Difficulty[0];
+        private int[] scores = new int[0];
+        private long[] timestamps = new long[0];
+        private int rows;
+        private int chunks;
+
+        public Reader(ReadableByteChannel in) throws IOException {
+            if (in == null) {
+                throw new IllegalArgumentException("Channel cannot be null");
+            }
+            this.in = in;
+            ByteBuffer header = readFully(7);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a columnar score file");
+            }
+            short version = header.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported columnar score file version " + version);
+            }
+            difficultyMap = new Difficulty[header.get() & 0xFF];
+            for (int i = 0; i < difficultyMap.length; i++) {
+                byte[] name = new byte[readFully(1).get() & 0xFF];
+                readFully(name.length).get(name);
+                String difficulty = new String(name, StandardCharsets.US_ASCII);
+                try {
+                    difficultyMap[i] = Difficulty.valueOf(difficulty);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Unknown difficulty in file: " + difficulty, e);
+                }
+            }
+        }
+
+        public boolean nextChunk() throws IOException {
+            int count = readFully(4).getInt();
+            if (count == 0) {
+                rows = 0;
+                return false;
+            }
+            ByteBuffer lengths = readFully(8);
+            int bodyLength = lengths.getInt();
+            int expectedCrc = lengths.getInt();
+            // The row count is outside the checksum, so bound it by the body before decode sizes arrays with it
+            if (count < 0 || bodyLength < 0 || bodyLength > MAX_BODY_BYTES || count > bodyLength / MIN_ROW_BYTES) {
+                throw new IOException("Corrupt chunk header after chunk " + chunks);
+            }
+            ByteBuffer body = readFully(bodyLength);
+            crc.reset();
+            crc.update(body.array(), 0, bodyLength);
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new IOException("Checksum mismatch in chunk " + (chunks + 1));
+            }
+            decode(body, count);
+            rows = count;
+            chunks++;
+            return true;
+        }
+
+        private void decode(ByteBuffer body, int count) throws IOException {
+            if (scores.length < count) {
+                nameIndexes = new int[count];
+                difficulties = new Difficulty[count];
+                scores = new int[count];
+                timestamps = new long[count];
+            }
+            try {
+                int nameCount = (int) getVarint(body);
+                // Each name takes at least its length byte
+                if (nameCount < 0 || nameCount > body.remaining()) {
+                    throw new IOException("Name count out of range in chunk " + (chunks + 1));
+                }
+                names = new String[nameCount];
+                for (int i = 0; i < nameCount; i++) {
+                    int length = (int) getVarint(body);
+                    names[i] = new String(body.array(), body.position(), length, StandardCharsets.UTF_8);
+                    body.position(body.position() + length);
+                }
+                for (int i = 0; i < count; i++) {
+                    nameIndexes[i] = (int) getVarint(body);
+                    if (nameIndexes[i] >= nameCount) {
+                        throw new IOException("Name index out of range in chunk " + (chunks + 1));
+                    }
+                }
+                for (int i = 0; i < count; i++) {
+                    int d = body.get() & 0xFF;
+                    if (d >= difficultyMap.length) {
+                        throw new IOException("Difficulty index out of range in chunk " + (chunks + 1));
+                    }
+                    difficulties[i] = difficultyMap[d];
+                }
+                for (int i = 0; i < count; i++) {
+                    scores[i] = (int) getVarint(body);
+                }
+                timestamps[0] = body.getLong();
+                for (int i = 1; i < count; i++) {
+                    long zigzag = getVarint(body);
+                    timestamps[i] = timestamps[i - 1] + ((zigzag >>> 1) ^ -(zigzag & 1));
+                }
+                // A row count that is too small leaves part of the body unread
+                if (body.hasRemaining()) {
+                    throw new IOException("Row count does not match the body of chunk " + (chunks + 1));
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt chunk " + (chunks + 1) + ": " + e.getMessage(), e);
+            }
+        }
+
+        private ByteBuffer readFully(int length) throws IOException {
+            if (buffer.capacity() < length) {
+                buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+            }
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer) < 0) {
+                    throw new EOFException("Columnar score file ends mid-chunk");
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        // ROWS OF THE CURRENT CHUNK
+        public int size() { return rows; }
+        public int getChunks() { return chunks; }
+        public String userName(int row) { return names[nameIndexes[row]]; }
+        public int score(int row) { return scores[row]; }
+        public Difficulty difficulty(int row) { return difficulties[row]; }
+        public long timestamp(int row) { return timestamps[row]; }
+
+        // The chunk's distinct names; nameIndex(row) points into it
+        public List<String> names() { return Arrays.asList(names); }
+        public int nameIndex(int row) { return nameIndexes[row]; }
+    }
+
+    // VARINTS
+    // Unsigned LEB128: 7 bits per byte, high bit set on all but the last
+    static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint is too long");
+    }
+}
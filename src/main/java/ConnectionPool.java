@@ -0,0 +1,203 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small bounded pool of long-lived SQLite connections.
+ * Connections are opened lazily, tuned once with pragmas, and handed out
+ * as {@link PooledConnection}s which keep their own prepared-statement cache.
+ *
+ * Several processes may share the database file. Every transaction is
+ * opened with BEGIN IMMEDIATE, so a writer takes the write lock up front
+ * (waiting up to the busy timeout for it) instead of failing with
+ * SQLITE_BUSY part-way through when a read transaction tries to upgrade.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    public static final int DEFAULT_POOL_SIZE = 4;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 16;
+    public static final long DEFAULT_BUSY_TIMEOUT_MILLIS = 5_000;
+    private static final long ACQUIRE_TIMEOUT_MILLIS = 30_000;
+
+    // Applied to every new connection. journal_mode is persistent in the file,
+    // the others are per-connection settings.
+    private static final String[] PRAGMAS = {
+            "PRAGMA journal_mode=WAL",
+            "PRAGMA synchronous=NORMAL",
+            "PRAGMA temp_store=MEMORY",
+            "PRAGMA cache_size=-8000"
+    };
+
+    private final String url;
+    private final int maxSize;
+    private final int statementCacheSize;
+    private final long busyTimeoutMillis;
+    private final String[] extraPragmas;
+    private final BlockingQueue<PooledConnection> idle;
+    private final Semaphore permits;
+
+    // METRICS
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    private volatile boolean closed;
+
+    // CONSTRUCTORS
+    public ConnectionPool(String url) {
+        this(url, DEFAULT_POOL_SIZE, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    public ConnectionPool(String url, int maxSize, int statementCacheSize) {
+        this(url, maxSize, statementCacheSize, DEFAULT_BUSY_TIMEOUT_MILLIS);
+    }
+
+    // extraPragmas run on every new connection after the defaults
+    public ConnectionPool(String url, int maxSize, int statementCacheSize, long busyTimeoutMillis,
+                          String... extraPragmas) {
+        if (url == null || url.trim().isEmpty()) {
+            throw new IllegalArgumentException("Database URL cannot be null or empty");
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        if (statementCacheSize <= 0) {
+            // prepare() hands out cached statements, so the cache must hold at least the latest one
+            throw new IllegalArgumentException("Statement cache size must be positive");
+        }
+        if (busyTimeoutMillis < 0 || busyTimeoutMillis > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid busy timeout: " + busyTimeoutMillis);
+        }
+        this.url = url;
+        this.maxSize = maxSize;
+        this.statementCacheSize = statementCacheSize;
+        this.busyTimeoutMillis = busyTimeoutMillis;
+        this.extraPragmas = extraPragmas.clone();
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    // ACQUIRE / RELEASE
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(ACQUIRE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        PooledConnection pooled = idle.poll();
+        if (pooled == null) {
+            try {
+                pooled = new PooledConnection(this, openConnection(), statementCacheSize);
+                openConnections.incrementAndGet();
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+        pooled.markAcquired();
+        inUse.incrementAndGet();
+        return pooled;
+    }
+
+    void release(PooledConnection pooled) {
+        inUse.decrementAndGet();
+        boolean reusable = !closed && pooled.resetForReuse();
+        if (!reusable || !idle.offer(pooled)) {
+            pooled.closePhysical();
+            openConnections.decrementAndGet();
+        }
+        permits.release();
+    }
+
+    private Connection openConnection() throws SQLException {
+        // Driver settings: how setAutoCommit(false) begins a transaction, and how long a
+        // statement waits for a lock held by another connection before SQLITE_BUSY
+        Properties settings = new Properties();
+        settings.setProperty("transaction_mode", "IMMEDIATE");
+        settings.setProperty("busy_timeout", String.valueOf(busyTimeoutMillis));
+        Connection conn = DriverManager.getConnection(url, settings);
+        Statement stmt = null;
+        try {
+            stmt = conn.createStatement();
+            for (String pragma : PRAGMAS) {
+                stmt.execute(pragma);
+            }
+            for (String pragma : extraPragmas) {
+                stmt.execute(pragma);
+            }
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        } finally {
+            if (stmt != null) {
+                stmt.close();
+            }
+        }
+        return conn;
+    }
+
+    private void recordWait(long waitNanos) {
+        acquisitions.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    void recordStatementCacheHit() {
+        statementCacheHits.incrementAndGet();
+    }
+
+    void recordStatementCacheMiss() {
+        statementCacheMisses.incrementAndGet();
+    }
+
+    // SHUTDOWN
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null) {
+            pooled.closePhysical();
+            openConnections.decrementAndGet();
+        }
+    }
+
+    // GETTERS
+    public PoolStats getStats() {
+        return new PoolStats(
+                maxSize,
+                openConnections.get(),
+                inUse.get(),
+                acquisitions.get(),
+                totalWaitNanos.get(),
+                maxWaitNanos.get(),
+                statementCacheHits.get(),
+                statementCacheMisses.get());
+    }
+
+    public String getUrl() { return url; }
+    public int getMaxSize() { return maxSize; }
+    public long getBusyTimeoutMillis() { return busyTimeoutMillis; }
+    public boolean isClosed() { return closed; }
+}
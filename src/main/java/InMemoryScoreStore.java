@@ -0,0 +1,166 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Non-durable {@link ScoreStore} for tests and short-lived deployments.
+ * Each difficulty is a lock-free {@link ConcurrentSkipListSet} kept in
+ * leaderboard order, so top-N and keyset pages are a walk from the head or
+ * from the cursor, and concurrent writers never block each other.
+ */
+public class InMemoryScoreStore implements ScoreStore {
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingInt((Entry e) -> e.score).reversed()
+            .thenComparing(Comparator.comparingLong((Entry e) -> e.timestamp).reversed())
+            .thenComparingLong(e -> e.id);
+
+    private final Map<Difficulty, NavigableSet<Entry>> scores = new EnumMap<>(Difficulty.class);
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final ScoreListeners listeners = new ScoreListeners();
+
+    public InMemoryScoreStore() {
+        for (Difficulty difficulty : Difficulty.values()) {
+            scores.put(difficulty, new ConcurrentSkipListSet<>(ORDER));
+        }
+    }
+
+    @Override
+    public void initialize() {
+        // Nothing to create
+    }
+
+    // WRITES
+    @Override
+    public void saveScore(UserScoreRecord record) {
+        if (record == null) {
+            throw new IllegalArgumentException("Score record cannot be null");
+        }
+        scores.get(record.getDifficulty()).add(new Entry(record, nextId.getAndIncrement()));
+        listeners.fireSaved(record);
+    }
+
+    @Override
+    public IngestReport saveScores(Iterable<UserScoreRecord> records) {
+        if (records == null) {
+            throw new IllegalArgumentException("Score records cannot be null");
+        }
+        long start = System.nanoTime();
+        long written = 0;
+        for (UserScoreRecord record : records) {
+            saveScore(record);
+            written++;
+        }
+        return new IngestReport(written, 0, written == 0 ? 0 : 1, System.nanoTime() - start);
+    }
+
+    @Override
+    public void clearAllScores() {
+        for (NavigableSet<Entry> set : scores.values()) {
+            set.clear();
+        }
+        listeners.fireCleared();
+    }
+
+    // READS
+    @Override
+    public List<UserScoreRecord> getTopScores(Difficulty difficulty, int limit) {
+        if (difficulty == null) {
+            throw new IllegalArgumentException("Difficulty cannot be null");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        List<UserScoreRecord> top = new ArrayList<>(limit);
+        Iterator<Entry> it = scores.get(difficulty).iterator();
+        while (top.size() < limit && it.hasNext()) {
+            top.add(it.next().record);
+        }
+        return top;
+    }
+
+    @Override
+    public ScorePage getScoresPage(Difficulty difficulty, ScoreCursor cursor, int pageSize) {
+        if (difficulty == null) {
+            throw new IllegalArgumentException("Difficulty cannot be null");
+        }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        NavigableSet<Entry> set = scores.get(difficulty);
+        NavigableSet<Entry> rest = cursor == null ? set
+                : set.tailSet(new Entry(null, cursor.getScore(), cursor.getTimestamp(), cursor.getId()), false);
+
+        List<UserScoreRecord> records = new ArrayList<>(pageSize);
+        Entry last = null;
+        Iterator<Entry> it = rest.iterator();
+        while (records.size() < pageSize && it.hasNext()) {
+            last = it.next();
+            records.add(last.record);
+        }
+        ScoreCursor next = (last != null && it.hasNext()) ? new ScoreCursor(last.score, last.timestamp, last.id) : null;
+        return new ScorePage(records, next);
+    }
+
+    @Override
+    public long forEachScore(ScoreFilter filter, Consumer<UserScoreRecord> action) {
+        if (filter == null || action == null) {
+            throw new IllegalArgumentException("Filter and action cannot be null");
+        }
+        long visited = 0;
+        for (Map.Entry<Difficulty, NavigableSet<Entry>> e : scores.entrySet()) {
+            if (filter.getDifficulty() != null && filter.getDifficulty() != e.getKey()) {
+                continue;
+            }
+            for (Entry entry : e.getValue()) {
+                if (filter.matches(entry.record)) {
+                    action.accept(entry.record);
+                    visited++;
+                }
+            }
+        }
+        return visited;
+    }
+
+    // LISTENERS
+    @Override
+    public void addScoreListener(ScoreListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeScoreListener(ScoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+
+    // A stored record plus the id that breaks exact ties
+    private static class Entry {
+        final UserScoreRecord record;
+        final int score;
+        final long timestamp;
+        final long id;
+
+        Entry(UserScoreRecord record, long id) {
+            this(record, record.getScore(), record.getTimestamp(), id);
+        }
+
+        Entry(UserScoreRecord record, int score, long timestamp, long id) {
+            this.record = record;
+            this.score = score;
+            this.timestamp = timestamp;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Outcome of a bulk score import: how many rows were written, how many input
+ * lines were rejected, and the resulting throughput.
+ */
+public class IngestReport {
+    private final long rowsWritten;
+    private final long rowsRejected;
+    private final int chunks;
+    private final long elapsedNanos;
+
+    public IngestReport(long rowsWritten, long rowsRejected, int chunks, long elapsedNanos) {
+        this.rowsWritten = rowsWritten;
+        this.rowsRejected = rowsRejected;
+        this.chunks = chunks;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRowsWritten() { return rowsWritten; }
+    public long getRowsRejected() { return rowsRejected; }
+    public int getChunks() { return chunks; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : rowsWritten * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IngestReport[written=%d, rejected=%d, chunks=%d, elapsedMs=%.1f, rowsPerSec=%.0f]",
+                rowsWritten, rowsRejected, chunks, getElapsedMillis(), getRowsPerSecond());
+    }
+}
@@ -0,0 +1,223 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory top-K leaderboard per {@link Difficulty}, sitting in front of
+ * {@link ScoreStore#getTopScores(Difficulty, int)}.
+ *
+ * Each difficulty holds an immutable sorted list that is replaced with a
+ * compare-and-set on every committed save, so readers never lock. A
+ * difficulty is warmed from the database on its first read and again after
+ * {@link #invalidate()}. The list and a write version live in one holder, so
+ * a warm-up installs its list only if no save or invalidation touched the
+ * difficulty while it was loading.
+ *
+ * A warm-up can also run after a save commits but before that save's
+ * callback, and then already holds the record. The holder remembers which
+ * entries came from the load, and a callback equal to one of them is matched
+ * against it once instead of being inserted again.
+ */
+public class LeaderboardCache implements ScoreListener {
+
+    public static final int DEFAULT_CAPACITY = 100;
+
+    // Same order as the leaderboard queries: best score first, newest first on ties
+    static final Comparator<UserScoreRecord> LEADERBOARD_ORDER =
+            Comparator.comparingInt(UserScoreRecord::getScore).reversed()
+                    .thenComparing(Comparator.comparingLong(UserScoreRecord::getTimestamp).reversed());
+
+    private final ScoreStore scoreStore;
+    private final int capacity;
+
+    // Built once in the constructor and never modified, so safe to read from any thread
+    private final Map<Difficulty, AtomicReference<Snapshot>> snapshots = new EnumMap<>(Difficulty.class);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // CONSTRUCTORS
+    public LeaderboardCache(ScoreStore scoreStore) {
+        this(scoreStore, DEFAULT_CAPACITY);
+    }
+
+    public LeaderboardCache(ScoreStore scoreStore, int capacity) {
+        if (scoreStore == null) {
+            throw new IllegalArgumentException("Score store cannot be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.scoreStore = scoreStore;
+        this.capacity = capacity;
+        for (Difficulty difficulty : Difficulty.values()) {
+            snapshots.put(difficulty, new AtomicReference<>(Snapshot.COLD));
+        }
+        scoreStore.addScoreListener(this);
+    }
+
+    // READS
+    // Returns an immutable view of the best min(limit, capacity) scores
+    public List<UserScoreRecord> getTopScores(Difficulty difficulty, int limit) {
+        if (difficulty == null) {
+            throw new IllegalArgumentException("Difficulty cannot be null");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        List<UserScoreRecord> top = snapshots.get(difficulty).get().top;
+        if (top != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            top = warm(difficulty);
+        }
+        return top.subList(0, Math.min(limit, top.size()));
+    }
+
+    public void warmAll() {
+        for (Difficulty difficulty : Difficulty.values()) {
+            warm(difficulty);
+        }
+    }
+
+    private List<UserScoreRecord> warm(Difficulty difficulty) {
+        AtomicReference<Snapshot> ref = snapshots.get(difficulty);
+        Snapshot before = ref.get();
+        List<UserScoreRecord> loaded = Collections.unmodifiableList(
+                new ArrayList<>(scoreStore.getTopScores(difficulty, capacity)));
+        // Fails if a save or invalidation replaced the holder during the load
+        if (before.top == null) {
+            Set<UserScoreRecord> fromLoad = Collections.newSetFromMap(new IdentityHashMap<>());
+            fromLoad.addAll(loaded);
+            ref.compareAndSet(before, new Snapshot(before.version, loaded, fromLoad));
+        }
+        return loaded;
+    }
+
+    // WRITES
+    @Override
+    public void onScoreSaved(UserScoreRecord record) {
+        update(record.getDifficulty(), current -> {
+            if (current.top == null) {
+                return current.next(null); // cold: the next read loads it from the database
+            }
+            int pos = insertionPoint(current.top, record);
+            UserScoreRecord loaded = loadedCopy(current, record, pos);
+            if (loaded != null) {
+                // A warm-up that ran after the commit already has it
+                Set<UserScoreRecord> fromLoad = Collections.newSetFromMap(new IdentityHashMap<>());
+                fromLoad.addAll(current.fromLoad);
+                fromLoad.remove(loaded);
+                return new Snapshot(current.version + 1, current.top, fromLoad);
+            }
+            if (pos >= capacity) {
+                return current; // not good enough for the top K
+            }
+            List<UserScoreRecord> updated = new ArrayList<>(Math.min(current.top.size() + 1, capacity));
+            updated.addAll(current.top.subList(0, pos));
+            updated.add(record);
+            updated.addAll(current.top.subList(pos, Math.min(current.top.size(), capacity - 1)));
+            return current.next(Collections.unmodifiableList(updated));
+        });
+    }
+
+    private void update(Difficulty difficulty, UnaryOperator<Snapshot> change) {
+        AtomicReference<Snapshot> ref = snapshots.get(difficulty);
+        while (true) {
+            Snapshot current = ref.get();
+            Snapshot updated = change.apply(current);
+            if (updated == current || ref.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onScoresCleared() {
+        invalidate();
+    }
+
+    // Only the difficulties that lost rows are reloaded
+    @Override
+    public void onScoresRemoved(List<UserScoreRecord> removed) {
+        EnumSet<Difficulty> touched = EnumSet.noneOf(Difficulty.class);
+        for (UserScoreRecord record : removed) {
+            touched.add(record.getDifficulty());
+        }
+        for (Difficulty difficulty : touched) {
+            invalidate(difficulty);
+        }
+    }
+
+    // An unmatched entry from the warm-up equal to the record; equal entries sit just before pos
+    private static UserScoreRecord loadedCopy(Snapshot current, UserScoreRecord record, int pos) {
+        for (int i = pos - 1; i >= 0 && LEADERBOARD_ORDER.compare(current.top.get(i), record) == 0; i--) {
+            UserScoreRecord entry = current.top.get(i);
+            if (current.fromLoad.contains(entry) && entry.equals(record)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    // Equal entries stay ahead of the new one, matching the id ASC tiebreak of the leaderboard query
+    private static int insertionPoint(List<UserScoreRecord> sorted, UserScoreRecord record) {
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (LEADERBOARD_ORDER.compare(sorted.get(mid), record) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // INVALIDATION
+    public void invalidate() {
+        for (Difficulty difficulty : Difficulty.values()) {
+            invalidate(difficulty);
+        }
+    }
+
+    public void invalidate(Difficulty difficulty) {
+        update(difficulty, current -> current.next(null));
+    }
+
+    // A top-K list, null while cold, the number of writes applied before it,
+    // and the entries of its warm-up that no callback has matched yet
+    private static final class Snapshot {
+        static final Snapshot COLD = new Snapshot(0, null, Set.of());
+
+        final long version;
+        final List<UserScoreRecord> top;
+        final Set<UserScoreRecord> fromLoad; // compared by identity; never modified
+
+        Snapshot(long version, List<UserScoreRecord> top, Set<UserScoreRecord> fromLoad) {
+            this.version = version;
+            this.top = top;
+            this.fromLoad = fromLoad;
+        }
+
+        Snapshot next(List<UserScoreRecord> top) {
+            return new Snapshot(version + 1, top, top == null ? Set.of() : fromLoad);
+        }
+    }
+
+    // GETTERS
+    public int getCapacity() { return capacity; }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+}
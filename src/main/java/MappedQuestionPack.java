@@ -0,0 +1,427 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Binary question pack, memory-mapped read-only, that builds a question
+ * object only when it is read.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header:    int magic, short version, byte n, byte 0, int questions, int option refs, int strings,
+ *              long records, long option refs, long string offsets, long string data, long index (offsets)
+ *   records:   questions x 16 bytes: byte type (0 multiple choice, 1 true/false), byte difficulty
+ *              (into the index section's names), byte options, byte 0, int question, int answer, int first option ref
+ *   option refs: int string per option, each question's options consecutive
+ *   string offsets: strings + 1 ints into string data; string i is [offset i, offset i + 1)
+ *   string data: UTF-8, each distinct string once
+ *   index:     n x (byte length, difficulty name,
+ *                   int count, count x int record   all questions of the difficulty,
+ *                   int count, count x int record   multiple choice,
+ *                   int count, count x int record)  true/false
+ * </pre>
+ * Records keep the order of the source packs and the index lists keep that
+ * order too. Only the header and index offsets are read on {@link #open};
+ * lists handed out read records from the mapping on each {@code get}, so a
+ * quiz that reads ten questions builds ten objects and the heap holds none
+ * of the rest. Difficulties are stored by name, as in {@link ColumnarScores}.
+ * Packs are written with {@link #write} or {@link QuestionPackCompiler}.
+ */
+public class MappedQuestionPack implements QuestionSource {
+
+    public static final int MAGIC = 0x51504B31; // "QPK1"
+    public static final short VERSION = 1;
+    public static final String EXTENSION = ".qpk";
+    private static final int HEADER_BYTES = 60;
+    private static final int RECORD_BYTES = 16;
+    private static final byte TYPE_MULTIPLE_CHOICE = 0;
+    private static final byte TYPE_TRUE_FALSE = 1;
+
+    private final Path file;
+    private final ByteBuffer map;
+    private final int questions;
+    private final int records;
+    private final int optionRefs;
+    private final int stringOffsets;
+    private final int stringData;
+    private final int stringCount;
+    private final Difficulty[] difficultyMap;
+    private final List<Questions> all;
+    private final Map<Difficulty, List<Questions>> byDifficulty = new EnumMap<>(Difficulty.class);
+    private final Map<Difficulty, Map<QuestionType, List<Questions>>> byDifficultyAndType = new EnumMap<>(Difficulty.class);
+
+    private MappedQuestionPack(Path file, ByteBuffer map) throws IOException {
+        this.file = file;
+        this.map = map;
+        if (map.capacity() < HEADER_BYTES || map.getInt(0) != MAGIC) {
+            throw new IOException("Not a question pack: " + file);
+        }
+        if (map.getShort(4) != VERSION) {
+            throw new IOException("Unsupported question pack version " + map.getShort(4) + ": " + file);
+        }
+        int difficulties = map.get(6) & 0xFF;
+        this.questions = map.getInt(8);
+        int refCount = map.getInt(12);
+        this.stringCount = map.getInt(16);
+        this.records = section(20, (long) questions * RECORD_BYTES);
+        this.optionRefs = section(28, refCount * 4L);
+        this.stringOffsets = section(36, (stringCount + 1) * 4L);
+        this.stringData = section(44, map.getInt(stringOffsets + stringCount * 4));
+        int index = section(52, 0);
+
+        this.difficultyMap = new Difficulty[difficulties];
+        List<Questions> empty = List.of();
+        for (Difficulty difficulty : Difficulty.values()) {
+            byDifficulty.put(difficulty, empty);
+            Map<QuestionType, List<Questions>> types = new EnumMap<>(QuestionType.class);
+            for (QuestionType type : QuestionType.values()) {
+                types.put(type, empty);
+            }
+            byDifficultyAndType.put(difficulty, types);
+        }
+        try {
+            ByteBuffer in = map.duplicate().position(index);
+            for (int i = 0; i < difficulties; i++) {
+                byte[] name = new byte[in.get() & 0xFF];
+                in.get(name);
+                String difficultyName = new String(name, StandardCharsets.US_ASCII);
+                try {
+                    difficultyMap[i] = Difficulty.valueOf(difficultyName);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Unknown difficulty in question pack: " + difficultyName, e);
+                }
+                byDifficulty.put(difficultyMap[i], recordList(in));
+                Map<QuestionType, List<Questions>> types = byDifficultyAndType.get(difficultyMap[i]);
+                types.put(QuestionType.MULTIPLE_CHOICE, recordList(in));
+                types.put(QuestionType.TRUE_FALSE, recordList(in));
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt index in question pack " + file + ": " + e.getMessage(), e);
+        }
+        this.all = new RecordList(null, questions);
+        for (Map.Entry<Difficulty, Map<QuestionType, List<Questions>>> e : byDifficultyAndType.entrySet()) {
+            e.setValue(Collections.unmodifiableMap(e.getValue()));
+        }
+    }
+
+    // Reads a section offset from the header and checks the section fits in the file
+    private int section(int headerOffset, long length) throws IOException {
+        long offset = map.getLong(headerOffset);
+        if (offset < HEADER_BYTES || length < 0 || offset + length > map.capacity()) {
+            throw new IOException("Corrupt section table in question pack " + file);
+        }
+        return (int) offset;
+    }
+
+    // A count followed by record numbers; the list reads them from the mapping
+    private RecordList recordList(ByteBuffer in) {
+        int count = in.getInt();
+        IntBuffer ids = in.slice(in.position(), count * 4).asIntBuffer();
+        in.position(in.position() + count * 4);
+        return new RecordList(ids, count);
+    }
+
+    // OPEN
+    public static MappedQuestionPack open(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Pack file cannot be null");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Question pack is larger than 2 GB: " + file);
+            }
+            // The mapping outlives the channel
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedQuestionPack(file, map);
+        }
+    }
+
+    // MATERIALIZATION
+    private Questions materialize(int record) {
+        if (record < 0 || record >= questions) {
+            throw new IllegalStateException("Record " + record + " out of range in question pack " + file);
+        }
+        int at = records + record * RECORD_BYTES;
+        byte type = map.get(at);
+        int difficulty = map.get(at + 1) & 0xFF;
+        int optionCount = map.get(at + 2) & 0xFF;
+        if (difficulty >= difficultyMap.length) {
+            throw new IllegalStateException("Difficulty out of range in record " + record + " of " + file);
+        }
+        String text = string(map.getInt(at + 4));
+        String answer = string(map.getInt(at + 8));
+        if (type == TYPE_TRUE_FALSE) {
+            return new TrueFalseQuestion(text, answer, difficultyMap[difficulty]);
+        }
+        if (type != TYPE_MULTIPLE_CHOICE) {
+            throw new IllegalStateException("Unknown question type " + type + " in record " + record + " of " + file);
+        }
+        int firstRef = map.getInt(at + 12);
+        String[] options = new String[optionCount];
+        for (int i = 0; i < optionCount; i++) {
+            options[i] = string(map.getInt(optionRefs + (firstRef + i) * 4));
+        }
+        return new MultipleChoiceQuestion(text, options, answer, difficultyMap[difficulty]);
+    }
+
+    private String string(int id) {
+        if (id < 0 || id >= stringCount) {
+            throw new IllegalStateException("String " + id + " out of range in question pack " + file);
+        }
+        int start = map.getInt(stringOffsets + id * 4);
+        int end = map.getInt(stringOffsets + (id + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        map.get(stringData + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Questions by record number, or all records in order when ids is null
+    private final class RecordList extends AbstractList<Questions> implements RandomAccess {
+        private final IntBuffer ids;
+        private final int size;
+
+        RecordList(IntBuffer ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        @Override
+        public Questions get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+            }
+            return materialize(ids == null ? index : ids.get(index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    // LOOKUPS
+    @Override
+    public List<Questions> all() {
+        return all;
+    }
+
+    @Override
+    public List<Questions> get(Difficulty difficulty) {
+        if (difficulty == null) {
+            throw new IllegalArgumentException("Difficulty cannot be null");
+        }
+        return byDifficulty.get(difficulty);
+    }
+
+    @Override
+    public List<Questions> get(Difficulty difficulty, QuestionType type) {
+        if (difficulty == null || type == null) {
+            throw new IllegalArgumentException("Difficulty and type cannot be null");
+        }
+        return byDifficultyAndType.get(difficulty).get(type);
+    }
+
+    @Override
+    public int size() {
+        return questions;
+    }
+
+    public Path getFile() { return file; }
+
+    public long getFileBytes() { return map.capacity(); }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("MappedQuestionPack[").append(file).append(' ');
+        for (Difficulty difficulty : Difficulty.values()) {
+            builder.append(difficulty).append('=').append(byDifficulty.get(difficulty).size()).append(' ');
+        }
+        return builder.append("total=").append(questions).append(']').toString();
+    }
+
+    // WRITING
+    /**
+     * Writes questions to a pack file, replacing it atomically. Returns the
+     * number of bytes written. The whole pack is assembled on the heap first.
+     */
+    public static long write(List<? extends Questions> source, Path target) throws IOException {
+        if (source == null || target == null) {
+            throw new IllegalArgumentException("Questions and target cannot be null");
+        }
+        Map<String, Integer> stringIds = new HashMap<>();
+        ByteArrayBuilder strings = new ByteArrayBuilder();
+        IntArrayBuilder stringOffsets = new IntArrayBuilder();
+        IntArrayBuilder refs = new IntArrayBuilder();
+        ByteBuffer records = ByteBuffer.allocate(source.size() * RECORD_BYTES);
+        Difficulty[] difficulties = Difficulty.values();
+        IntArrayBuilder[][] index = new IntArrayBuilder[difficulties.length][3];
+        for (IntArrayBuilder[] lists : index) {
+            for (int t = 0; t < lists.length; t++) {
+                lists[t] = new IntArrayBuilder();
+            }
+        }
+
+        for (int record = 0; record < source.size(); record++) {
+            Questions q = source.get(record);
+            QuestionType type = QuestionType.of(q);
+            String[] options = type == QuestionType.MULTIPLE_CHOICE
+                    ? ((MultipleChoiceQuestion) q).getOptions() : new String[0];
+            if (options.length > 255) {
+                throw new IllegalArgumentException("Too many options in question " + record);
+            }
+            int firstRef = refs.size();
+            for (String option : options) {
+                refs.add(intern(option, stringIds, strings, stringOffsets));
+            }
+            records.put(type == QuestionType.MULTIPLE_CHOICE ? TYPE_MULTIPLE_CHOICE : TYPE_TRUE_FALSE)
+                    .put((byte) q.getDifficultyLevel().ordinal())
+                    .put((byte) options.length)
+                    .put((byte) 0)
+                    .putInt(intern(q.getText(), stringIds, strings, stringOffsets))
+                    .putInt(intern(q.getCorrectAnswer(), stringIds, strings, stringOffsets))
+                    .putInt(firstRef);
+            IntArrayBuilder[] lists = index[q.getDifficultyLevel().ordinal()];
+            lists[0].add(record);
+            lists[type == QuestionType.MULTIPLE_CHOICE ? 1 : 2].add(record);
+        }
+        stringOffsets.add(strings.size());
+
+        ByteArrayBuilder indexSection = new ByteArrayBuilder();
+        for (int d = 0; d < difficulties.length; d++) {
+            byte[] name = difficulties[d].name().getBytes(StandardCharsets.US_ASCII);
+            indexSection.put((byte) name.length).put(name, name.length);
+            for (IntArrayBuilder list : index[d]) {
+                indexSection.putInt(list.size());
+                for (int i = 0; i < list.size(); i++) {
+                    indexSection.putInt(list.get(i));
+                }
+            }
+        }
+
+        long recordsAt = HEADER_BYTES;
+        long refsAt = recordsAt + records.capacity();
+        long offsetsAt = refsAt + refs.size() * 4L;
+        long dataAt = offsetsAt + stringOffsets.size() * 4L;
+        long indexAt = dataAt + strings.size();
+        long total = indexAt + indexSection.size();
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Question pack would be larger than 2 GB");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putShort(VERSION).put((byte) difficulties.length).put((byte) 0)
+                .putInt(source.size()).putInt(refs.size()).putInt(stringOffsets.size() - 1)
+                .putLong(recordsAt).putLong(refsAt).putLong(offsetsAt).putLong(dataAt).putLong(indexAt);
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, header.flip());
+            writeFully(out, records.flip());
+            writeFully(out, refs.toBytes());
+            writeFully(out, stringOffsets.toBytes());
+            writeFully(out, strings.toBuffer());
+            writeFully(out, indexSection.toBuffer());
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return total;
+    }
+
+    private static int intern(String value, Map<String, Integer> ids, ByteArrayBuilder strings, IntArrayBuilder offsets) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = offsets.size();
+            ids.put(value, id);
+            offsets.add(strings.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            strings.put(bytes, bytes.length);
+        }
+        return id;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            out.write(data);
+        }
+    }
+
+    // Growable primitive buffers, so writing a million questions boxes nothing
+    private static final class IntArrayBuilder {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int i) { return values[i]; }
+        int size() { return size; }
+
+        ByteBuffer toBytes() {
+            ByteBuffer bytes = ByteBuffer.allocate(size * 4);
+            bytes.asIntBuffer().put(values, 0, size);
+            return bytes;
+        }
+    }
+
+    private static final class ByteArrayBuilder {
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                long grown = Math.max((long) bytes.length * 2, (long) size + extra);
+                if (grown > Integer.MAX_VALUE - 8) {
+                    throw new IllegalArgumentException("Question pack section is larger than 2 GB");
+                }
+                bytes = Arrays.copyOf(bytes, (int) grown);
+            }
+        }
+
+        ByteArrayBuilder put(byte value) {
+            ensure(1);
+            bytes[size++] = value;
+            return this;
+        }
+
+        ByteArrayBuilder put(byte[] values, int length) {
+            ensure(length);
+            System.arraycopy(values, 0, bytes, size, length);
+            size += length;
+            return this;
+        }
+
+        ByteArrayBuilder putInt(int value) {
+            ensure(4);
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        int size() { return size; }
+
+        ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(bytes, 0, size);
+        }
+    }
+}
@@ -0,0 +1,713 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * {@link ScoreStore} backed by an append-only, memory-mapped file of
+ * fixed-width binary records. Saving a score is a few buffer writes: no SQL,
+ * no per-insert fsync. Data reaches disk when the OS flushes the mapping or
+ * when the store is closed.
+ *
+ * Files, for a base path {@code scores}:
+ *   scores.log      - header + fixed-width records (user id, score, difficulty, timestamp, checksum)
+ *   scores.users    - user name dictionary, length-prefixed UTF-8 strings; the
+ *                     position in the file is the user id
+ *   scores.EASY.seg - sorted segment: record indexes of one difficulty in
+ *                     leaderboard order, covering the first N records of the log
+ *
+ * Recovery: every record carries a commit marker and a CRC32C. On open the log
+ * is scanned around the count stored in the header; torn or missing records at
+ * the tail are dropped and records written after the last header update are kept.
+ *
+ * Compaction: a background thread periodically merges the unsorted tail of the
+ * log into the sorted segments, so a top-N read is a walk over the segment plus
+ * a scan of the short tail instead of a scan of the whole log.
+ */
+public class MappedScoreStore implements ScoreStore {
+
+    static final int MAGIC = 0x51534C47;          // "QSLG"
+    static final int SEGMENT_MAGIC = 0x51535347;  // "QSSG"
+    static final int FORMAT_VERSION = 2;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 24;
+
+    public static final long DEFAULT_COMPACTION_INTERVAL_MILLIS = 10_000;
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 1_024;
+
+    // Header layout
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_COUNT = 8;
+
+    // Record layout; the checksum covers the first CHECKSUMMED_BYTES bytes
+    private static final int REC_USER = 0;
+    private static final int REC_SCORE = 4;
+    private static final int REC_DIFFICULTY = 6;
+    private static final int REC_MARKER = 7;
+    private static final int REC_TIMESTAMP = 8;
+    private static final int REC_CHECKSUM = 16;
+    private static final int CHECKSUMMED_BYTES = 16;
+    private static final byte COMMITTED = 0x5A;
+
+    // Segment file layout
+    private static final int SEG_HEADER_SIZE = 32;
+    private static final int SEG_COVERED = 8;
+    private static final int SEG_SIZE = 16;
+
+    private static final long INITIAL_CAPACITY = 4096;
+    private static final Difficulty[] DIFFICULTIES = Difficulty.values();
+
+    private final String basePath;
+    private final Path logPath;
+    private final Path usersPath;
+    private final long compactionIntervalMillis;
+    private final int compactionThreshold;
+    private final ScoreListeners listeners = new ScoreListeners();
+    private final CRC32C checksum = new CRC32C(); // used under the store lock only
+    private final Object compactionLock = new Object();
+
+    private FileChannel logChannel;
+    private FileChannel usersChannel;
+    private ScheduledExecutorService compactor;
+
+    // Written only while holding the store's lock. Readers take count first and then
+    // the other fields, so everything they see was published before that count.
+    private volatile MappedByteBuffer buffer;
+    private volatile long capacity;
+    private volatile long count;
+    private volatile String[] userNames = new String[64];
+    private int userCount;
+    private final Map<String, Integer> userIds = new HashMap<>();
+
+    // Sorted segments, replaced wholesale by compaction. Compaction and clearAllScores()
+    // both hold compactionLock, so a clear never races with a segment being published.
+    private final Map<Difficulty, AtomicReference<Segment>> segments = new EnumMap<>(Difficulty.class);
+
+    // CONSTRUCTORS
+    public MappedScoreStore(String basePath) {
+        this(basePath, DEFAULT_COMPACTION_INTERVAL_MILLIS, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    // An interval of 0 disables background compaction; compact() can still be called directly
+    public MappedScoreStore(String basePath, long compactionIntervalMillis, int compactionThreshold) {
+        if (basePath == null || basePath.trim().isEmpty()) {
+            throw new IllegalArgumentException("Base path cannot be null or empty");
+        }
+        if (compactionIntervalMillis < 0 || compactionThreshold <= 0) {
+            throw new IllegalArgumentException("Invalid compaction settings");
+        }
+        this.basePath = basePath;
+        this.logPath = Paths.get(basePath + ".log");
+        this.usersPath = Paths.get(basePath + ".users");
+        this.compactionIntervalMillis = compactionIntervalMillis;
+        this.compactionThreshold = compactionThreshold;
+        for (Difficulty difficulty : DIFFICULTIES) {
+            segments.put(difficulty, new AtomicReference<>(Segment.EMPTY));
+        }
+    }
+
+    // METHODS OF INITIALIZATION
+    @Override
+    public synchronized void initialize() {
+        if (logChannel != null) {
+            return;
+        }
+        try {
+            logChannel = FileChannel.open(logPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            usersChannel = FileChannel.open(usersPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            boolean fresh = logChannel.size() == 0;
+            map(Math.max(INITIAL_CAPACITY, fresh ? 0 : (logChannel.size() - HEADER_SIZE) / RECORD_SIZE));
+            if (fresh) {
+                buffer.putInt(HEADER_MAGIC, MAGIC);
+                buffer.putInt(HEADER_VERSION, FORMAT_VERSION);
+                buffer.putLong(HEADER_COUNT, 0);
+            } else if (buffer.getInt(HEADER_MAGIC) != MAGIC || buffer.getInt(HEADER_VERSION) != FORMAT_VERSION) {
+                throw new IllegalStateException("Not a score log (or unsupported version): " + logPath);
+            }
+            loadUsers();
+            count = recover();
+            for (Difficulty difficulty : DIFFICULTIES) {
+                segments.get(difficulty).set(loadSegment(difficulty));
+            }
+            System.out.println("Score log opened at " + logPath + " with " + count + " records");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open score log: " + e.getMessage(), e);
+        }
+
+        if (compactionIntervalMillis > 0) {
+            compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "score-log-compaction");
+                t.setDaemon(true);
+                return t;
+            });
+            compactor.scheduleWithFixedDelay(this::compactQuietly,
+                    compactionIntervalMillis, compactionIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void map(long recordCapacity) throws IOException {
+        if (HEADER_SIZE + recordCapacity * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Score log is full: " + logPath);
+        }
+        buffer = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + recordCapacity * RECORD_SIZE);
+        capacity = recordCapacity;
+    }
+
+    // Drops a torn last entry, which can only come from a crash mid-append
+    private void loadUsers() throws IOException {
+        ByteBuffer all = ByteBuffer.allocate((int) usersChannel.size());
+        usersChannel.read(all, 0);
+        all.flip();
+        long valid = 0;
+        while (all.remaining() >= 4) {
+            int length = all.getInt();
+            if (length < 0 || length > all.remaining()) {
+                break;
+            }
+            byte[] bytes = new byte[length];
+            all.get(bytes);
+            registerUser(new String(bytes, StandardCharsets.UTF_8));
+            valid = all.position();
+        }
+        if (valid < usersChannel.size()) {
+            System.err.println("Truncating torn user dictionary entry in " + usersPath);
+            usersChannel.truncate(valid);
+        }
+        usersChannel.position(valid);
+    }
+
+    // RECOVERY
+    // The header count is only a hint: it is written after each record, so after a
+    // crash it can lag behind valid records or point past a torn one.
+    private long recover() {
+        long hint = Math.min(buffer.getLong(HEADER_COUNT), capacity);
+        long valid = hint;
+        while (valid > 0 && !isValidRecord(valid - 1)) {
+            valid--;
+        }
+        while (valid < capacity && isValidRecord(valid)) {
+            valid++;
+        }
+        if (valid != hint) {
+            System.err.println("Recovered score log " + logPath + ": header said " + hint + " records, found " + valid);
+        }
+        // Clear anything after the last good record so it cannot be mistaken for data later
+        for (long i = valid; i < capacity && buffer.get(recordOffset(i) + REC_MARKER) != 0; i++) {
+            buffer.put(recordOffset(i) + REC_MARKER, (byte) 0);
+        }
+        buffer.putLong(HEADER_COUNT, valid);
+        return valid;
+    }
+
+    private boolean isValidRecord(long index) {
+        int offset = recordOffset(index);
+        MappedByteBuffer buf = buffer;
+        if (buf.get(offset + REC_MARKER) != COMMITTED) {
+            return false;
+        }
+        int difficulty = buf.get(offset + REC_DIFFICULTY);
+        int userId = buf.getInt(offset + REC_USER);
+        return difficulty >= 0 && difficulty < DIFFICULTIES.length &&
+                userId >= 0 && userId < userCount &&
+                buf.getInt(offset + REC_CHECKSUM) == checksumOf(buf, offset);
+    }
+
+    private int checksumOf(MappedByteBuffer buf, int offset) {
+        checksum.reset();
+        checksum.update(buf.slice(offset, CHECKSUMMED_BYTES));
+        return (int) checksum.getValue();
+    }
+
+    private static int recordOffset(long index) {
+        return (int) (HEADER_SIZE + index * RECORD_SIZE);
+    }
+
+    // USER DICTIONARY
+    private int registerUser(String name) {
+        int id = userCount++;
+        String[] names = userNames;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, names.length * 2);
+        }
+        names[id] = name;
+        userNames = names;
+        userIds.put(name, id);
+        return id;
+    }
+
+    private int userIdFor(String name) throws IOException {
+        Integer id = userIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(4 + bytes.length);
+        entry.putInt(bytes.length).put(bytes).flip();
+        while (entry.hasRemaining()) {
+            usersChannel.write(entry);
+        }
+        return registerUser(name);
+    }
+
+    // WRITES
+    @Override
+    public void saveScore(UserScoreRecord record) {
+        if (record == null) {
+            throw new IllegalArgumentException("Score record cannot be null");
+        }
+        synchronized (this) {
+            append(record);
+        }
+        listeners.fireSaved(record);
+    }
+
+    @Override
+    public IngestReport saveScores(Iterable<UserScoreRecord> records) {
+        if (records == null) {
+            throw new IllegalArgumentException("Score records cannot be null");
+        }
+        long start = System.nanoTime();
+        long written = 0;
+        List<UserScoreRecord> committed = listeners.isEmpty() ? null : new ArrayList<>();
+        try {
+            synchronized (this) {
+                for (UserScoreRecord record : records) {
+                    if (record == null) {
+                        throw new IllegalArgumentException("Score record cannot be null");
+                    }
+                    append(record);
+                    written++;
+                    if (committed != null) {
+                        committed.add(record);
+                    }
+                }
+            }
+        } finally {
+            // Records appended before a failure stay in the log, so the listeners must see them too
+            listeners.fireSaved(committed);
+        }
+        return new IngestReport(written, 0, written == 0 ? 0 : 1, System.nanoTime() - start);
+    }
+
+    // Caller holds the lock. Fields first, then marker and checksum, then the count,
+    // so a crash at any point leaves either a whole record or one recovery drops.
+    private void append(UserScoreRecord record) {
+        requireOpen();
+        if (record.getScore() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Score too large for the score log: " + record.getScore());
+        }
+        try {
+            int userId = userIdFor(record.getUserName());
+            long index = count;
+            if (index == capacity) {
+                map(capacity * 2);
+            }
+            int offset = recordOffset(index);
+            MappedByteBuffer buf = buffer;
+            buf.putInt(offset + REC_USER, userId);
+            buf.putShort(offset + REC_SCORE, (short) record.getScore());
+            buf.put(offset + REC_DIFFICULTY, (byte) record.getDifficulty().ordinal());
+            buf.put(offset + REC_MARKER, COMMITTED);
+            buf.putLong(offset + REC_TIMESTAMP, record.getTimestamp());
+            buf.putInt(offset + REC_CHECKSUM, checksumOf(buf, offset));
+            buf.putLong(HEADER_COUNT, index + 1);
+            count = index + 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append score: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void clearAllScores() {
+        synchronized (compactionLock) {
+            synchronized (this) {
+                requireOpen();
+                for (long i = 0; i < count; i++) {
+                    buffer.put(recordOffset(i) + REC_MARKER, (byte) 0);
+                }
+                buffer.putLong(HEADER_COUNT, 0);
+                count = 0;
+                for (Difficulty difficulty : DIFFICULTIES) {
+                    segments.get(difficulty).set(Segment.EMPTY);
+                    deleteQuietly(segmentPath(difficulty));
+                }
+            }
+        }
+        listeners.fireCleared();
+    }
+
+    // READS
+    @Override
+    public long forEachScore(ScoreFilter filter, Consumer<UserScoreRecord> action) {
+        if (filter == null || action == null) {
+            throw new IllegalArgumentException("Filter and action cannot be null");
+        }
+        long n = count;
+        MappedByteBuffer buf = buffer;
+        String[] names = userNames;
+        long visited = 0;
+        for (long i = 0; i < n; i++) {
+            int offset = recordOffset(i);
+            Difficulty difficulty = DIFFICULTIES[buf.get(offset + REC_DIFFICULTY)];
+            long timestamp = buf.getLong(offset + REC_TIMESTAMP);
+            if ((filter.getDifficulty() != null && filter.getDifficulty() != difficulty) ||
+                    timestamp < filter.getFromTimestamp() || timestamp >= filter.getToTimestamp()) {
+                continue;
+            }
+            action.accept(new UserScoreRecord(names[buf.getInt(offset + REC_USER)],
+                    buf.getShort(offset + REC_SCORE), difficulty, timestamp));
+            visited++;
+        }
+        return visited;
+    }
+
+    @Override
+    public List<UserScoreRecord> getTopScores(Difficulty difficulty, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        return getScoresPage(difficulty, null, limit).getRecords();
+    }
+
+    // Merges the sorted segment (from the cursor onwards) with the best entries of the unsorted tail
+    @Override
+    public ScorePage getScoresPage(Difficulty difficulty, ScoreCursor cursor, int pageSize) {
+        if (difficulty == null) {
+            throw new IllegalArgumentException("Difficulty cannot be null");
+        }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        long n = count;
+        Segment segment = segments.get(difficulty).get();
+        MappedByteBuffer buf = buffer;
+        String[] names = userNames;
+        int wanted = pageSize + 1;
+
+        if (segment.covered > n) {
+            segment = Segment.EMPTY; // cleared since this segment was read
+        }
+        int segPos = cursor == null ? 0 : segment.firstAfter(buf, cursor);
+        List<Long> tail = bestOfTail(buf, difficulty, cursor, segment.covered, n, wanted);
+
+        List<UserScoreRecord> records = new ArrayList<>(Math.min(pageSize, 64));
+        long lastIndex = -1;
+        int tailPos = 0;
+        boolean more = false;
+        while (true) {
+            long next;
+            boolean segHas = segPos < segment.size;
+            boolean tailHas = tailPos < tail.size();
+            if (!segHas && !tailHas) {
+                break;
+            } else if (segHas && (!tailHas || compareRecords(buf, segment.get(segPos), tail.get(tailPos)) < 0)) {
+                next = segment.get(segPos++);
+            } else {
+                next = tail.get(tailPos++);
+            }
+            if (records.size() == pageSize) {
+                more = true;
+                break;
+            }
+            int offset = recordOffset(next);
+            records.add(new UserScoreRecord(names[buf.getInt(offset + REC_USER)],
+                    buf.getShort(offset + REC_SCORE), difficulty, buf.getLong(offset + REC_TIMESTAMP)));
+            lastIndex = next;
+        }
+
+        ScoreCursor nextCursor = null;
+        if (more) {
+            int offset = recordOffset(lastIndex);
+            nextCursor = new ScoreCursor(buf.getShort(offset + REC_SCORE), buf.getLong(offset + REC_TIMESTAMP), lastIndex + 1);
+        }
+        return new ScorePage(records, nextCursor);
+    }
+
+    // Record indexes in [from, to) of one difficulty that sort after the cursor, best `wanted` of them, sorted
+    private List<Long> bestOfTail(MappedByteBuffer buf, Difficulty difficulty, ScoreCursor cursor,
+                                  long from, long to, int wanted) {
+        // Worst entry on top so it can be evicted
+        PriorityQueue<Long> heap = new PriorityQueue<>(wanted + 1, (a, b) -> compareRecords(buf, b, a));
+        for (long i = from; i < to; i++) {
+            int offset = recordOffset(i);
+            if (buf.get(offset + REC_DIFFICULTY) != difficulty.ordinal()) {
+                continue;
+            }
+            if (cursor != null && compareToCursor(buf, i, cursor) <= 0) {
+                continue;
+            }
+            heap.add(i);
+            if (heap.size() > wanted) {
+                heap.poll();
+            }
+        }
+        List<Long> sorted = new ArrayList<>(heap);
+        sorted.sort((a, b) -> compareRecords(buf, a, b));
+        return sorted;
+    }
+
+    // Leaderboard order of two record indexes: score DESC, timestamp DESC, index ASC
+    private static int compareRecords(MappedByteBuffer buf, long a, long b) {
+        int offsetA = recordOffset(a);
+        int offsetB = recordOffset(b);
+        int scoreA = buf.getShort(offsetA + REC_SCORE);
+        int scoreB = buf.getShort(offsetB + REC_SCORE);
+        if (scoreA != scoreB) return Integer.compare(scoreB, scoreA);
+        long tsA = buf.getLong(offsetA + REC_TIMESTAMP);
+        long tsB = buf.getLong(offsetB + REC_TIMESTAMP);
+        if (tsA != tsB) return Long.compare(tsB, tsA);
+        return Long.compare(a, b);
+    }
+
+    // Cursor ids are record index + 1
+    private static int compareToCursor(MappedByteBuffer buf, long index, ScoreCursor cursor) {
+        int offset = recordOffset(index);
+        int score = buf.getShort(offset + REC_SCORE);
+        if (score != cursor.getScore()) return Integer.compare(cursor.getScore(), score);
+        long ts = buf.getLong(offset + REC_TIMESTAMP);
+        if (ts != cursor.getTimestamp()) return Long.compare(cursor.getTimestamp(), ts);
+        return Long.compare(index + 1, cursor.getId());
+    }
+
+    // COMPACTION
+    // Merges every record not yet in a segment into the sorted segment of its difficulty
+    public void compact() {
+        synchronized (compactionLock) {
+            requireOpen();
+            long n = count;
+            MappedByteBuffer buf = buffer;
+            long start = System.nanoTime();
+            long merged = 0;
+
+            for (Difficulty difficulty : DIFFICULTIES) {
+                Segment old = segments.get(difficulty).get();
+                if (old.covered >= n) {
+                    continue;
+                }
+                List<Long> tail = new ArrayList<>();
+                for (long i = old.covered; i < n; i++) {
+                    if (buf.get(recordOffset(i) + REC_DIFFICULTY) == difficulty.ordinal()) {
+                        tail.add(i);
+                    }
+                }
+                tail.sort((a, b) -> compareRecords(buf, a, b));
+
+                int[] entries = new int[old.size + tail.size()];
+                int i = 0, j = 0, k = 0;
+                while (i < old.size || j < tail.size()) {
+                    if (j == tail.size() || (i < old.size && compareRecords(buf, old.get(i), tail.get(j)) < 0)) {
+                        entries[k++] = old.get(i++);
+                    } else {
+                        entries[k++] = (int) (long) tail.get(j++);
+                    }
+                }
+                segments.get(difficulty).set(writeSegment(difficulty, n, entries));
+                merged += tail.size();
+            }
+            if (merged > 0) {
+                System.out.printf("Compacted %d records into sorted segments in %.1f ms%n",
+                        merged, (System.nanoTime() - start) / 1_000_000.0);
+            }
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            long pending = 0;
+            for (Difficulty difficulty : DIFFICULTIES) {
+                pending = Math.max(pending, getUncompactedCount(difficulty));
+            }
+            if (pending >= compactionThreshold) {
+                compact();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Score log compaction failed: " + e.getMessage());
+        }
+    }
+
+    // Written to a temp file and moved into place, so a crash leaves the old segment or the new one
+    private Segment writeSegment(Difficulty difficulty, long covered, int[] entries) {
+        Path target = segmentPath(difficulty);
+        Path temp = Paths.get(target + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer seg = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    SEG_HEADER_SIZE + (long) entries.length * Integer.BYTES);
+            seg.putInt(0, SEGMENT_MAGIC);
+            seg.putInt(4, FORMAT_VERSION);
+            seg.putLong(SEG_COVERED, covered);
+            seg.putInt(SEG_SIZE, entries.length);
+            seg.position(SEG_HEADER_SIZE);
+            seg.asIntBuffer().put(entries);
+            seg.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write segment " + target + ": " + e.getMessage(), e);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to install segment " + target + ": " + e.getMessage(), e);
+        }
+        return loadSegment(difficulty);
+    }
+
+    // A missing, damaged or too-new segment is ignored; the next compaction rebuilds it
+    private Segment loadSegment(Difficulty difficulty) {
+        Path path = segmentPath(difficulty);
+        if (!Files.exists(path)) {
+            return Segment.EMPTY;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < SEG_HEADER_SIZE) {
+                return Segment.EMPTY;
+            }
+            MappedByteBuffer seg = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long covered = seg.getLong(SEG_COVERED);
+            int size = seg.getInt(SEG_SIZE);
+            if (seg.getInt(0) != SEGMENT_MAGIC || seg.getInt(4) != FORMAT_VERSION || covered > count ||
+                    channel.size() != SEG_HEADER_SIZE + (long) size * Integer.BYTES) {
+                System.err.println("Ignoring stale segment " + path);
+                return Segment.EMPTY;
+            }
+            seg.position(SEG_HEADER_SIZE);
+            return new Segment(covered, seg.asIntBuffer(), size);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable segment " + path + ": " + e.getMessage());
+            return Segment.EMPTY;
+        }
+    }
+
+    private Path segmentPath(Difficulty difficulty) {
+        return Paths.get(basePath + "." + difficulty.name() + ".seg");
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + path + ": " + e.getMessage());
+        }
+    }
+
+    // LISTENERS
+    @Override
+    public void addScoreListener(ScoreListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeScoreListener(ScoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    // SHUTDOWN
+    @Override
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = compactor;
+            compactor = null;
+        }
+        if (running != null) {
+            running.shutdown();
+            try {
+                running.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (logChannel == null) {
+                return;
+            }
+            try {
+                buffer.force();
+                usersChannel.force(true);
+                logChannel.close();
+                usersChannel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing score log: " + e.getMessage());
+            } finally {
+                logChannel = null;
+                usersChannel = null;
+            }
+        }
+    }
+
+    private void requireOpen() {
+        if (logChannel == null) {
+            throw new IllegalStateException("Score log is not open. Call initialize() first.");
+        }
+    }
+
+    public long size() {
+        return count;
+    }
+
+    // Records appended since the given difficulty's segment was last compacted
+    public long getUncompactedCount(Difficulty difficulty) {
+        return count - segments.get(difficulty).get().covered;
+    }
+
+    /**
+     * Record indexes of one difficulty in leaderboard order, covering log records [0, covered).
+     * Backed by a read-only mapping of the segment file.
+     */
+    private static class Segment {
+        static final Segment EMPTY = new Segment(0, IntBuffer.allocate(0), 0);
+
+        final long covered;
+        final IntBuffer entries;
+        final int size;
+
+        Segment(long covered, IntBuffer entries, int size) {
+            this.covered = covered;
+            this.entries = entries;
+            this.size = size;
+        }
+
+        int get(int position) {
+            return entries.get(position);
+        }
+
+        // First position whose record sorts strictly after the cursor
+        int firstAfter(MappedByteBuffer buf, ScoreCursor cursor) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareToCursor(buf, get(mid), cursor) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
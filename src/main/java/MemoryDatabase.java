@@ -0,0 +1,171 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A shared-cache {@code :memory:} SQLite database, optionally loaded from a
+ * file at startup and saved back to it with SQLite's online backup.
+ *
+ * Every connection opened on {@link #getUrl()} sees the same database, which
+ * lives as long as the anchor connection held here. Snapshots are written to
+ * a temp file and moved over the target, so the file on disk is always a
+ * complete snapshot; what is lost in a crash is whatever was written since
+ * the last one. A snapshot holds the write lock, so writers must run under
+ * {@link #getWriteLock()} for it to see a consistent database.
+ */
+public class MemoryDatabase implements AutoCloseable {
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final String url;
+    private final Path file; // null: nothing is loaded or saved
+    private final long snapshotIntervalMillis;
+    private final Connection anchor;
+    private final Object writeLock = new Object();
+
+    private boolean loaded;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+
+    // METRICS
+    private final AtomicLong snapshots = new AtomicLong();
+    private volatile long lastSnapshotMillis;
+    private volatile long lastSnapshotAt;
+
+    // snapshotIntervalMillis: 0 saves only on close
+    public MemoryDatabase(Path file, long snapshotIntervalMillis) {
+        if (snapshotIntervalMillis < 0) {
+            throw new IllegalArgumentException("Snapshot interval cannot be negative");
+        }
+        this.url = "jdbc:sqlite:file:quiz-memory-" + NEXT_ID.incrementAndGet() + "?mode=memory&cache=shared";
+        this.file = file;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+        try {
+            this.anchor = DriverManager.getConnection(url);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to open in-memory database: " + e.getMessage(), e);
+        }
+    }
+
+    // LOAD
+    // Copies the file into memory the first time it is called, before anything else uses the database.
+    // Returns true if there was a file to load.
+    public synchronized boolean load() {
+        if (loaded || file == null) {
+            return false;
+        }
+        loaded = true;
+        if (!Files.exists(file)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try (Statement stmt = anchor.createStatement()) {
+            stmt.executeUpdate("restore from \"" + file.toAbsolutePath() + "\"");
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load " + file + " into memory: " + e.getMessage(), e);
+        }
+        System.out.printf("Loaded %s into memory in %.1f ms%n", file, (System.nanoTime() - start) / 1_000_000.0);
+        return true;
+    }
+
+    // SNAPSHOTS
+    public synchronized void startSnapshots() {
+        if (scheduler != null || closed || file == null || snapshotIntervalMillis == 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "score-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalMillis, snapshotIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            System.err.println("Score snapshot failed: " + e.getMessage());
+        }
+    }
+
+    // Writes the whole database to the file. Does nothing without a file.
+    public void snapshot() {
+        if (file == null) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".snapshot");
+        long start = System.nanoTime();
+        synchronized (writeLock) {
+            try (Statement stmt = anchor.createStatement()) {
+                Files.deleteIfExists(temp);
+                stmt.executeUpdate("backup to \"" + temp.toAbsolutePath() + "\"");
+                // The file was last written by a file-backed PersistenceManager, whose WAL
+                // and index no longer describe it once it is replaced
+                Files.deleteIfExists(file.resolveSibling(file.getFileName() + "-wal"));
+                Files.deleteIfExists(file.resolveSibling(file.getFileName() + "-shm"));
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to snapshot database to " + file + ": " + e.getMessage(), e);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to snapshot database to " + file + ": " + e.getMessage(), e);
+            }
+        }
+        snapshots.incrementAndGet();
+        lastSnapshotMillis = (System.nanoTime() - start) / 1_000_000;
+        lastSnapshotAt = System.currentTimeMillis();
+    }
+
+    // SHUTDOWN
+    // Takes a final snapshot, then releases the database
+    @Override
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            running = scheduler;
+            scheduler = null;
+        }
+        if (running != null) {
+            running.shutdown();
+            try {
+                running.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            snapshot();
+        } finally {
+            try {
+                anchor.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing in-memory database: " + e.getMessage());
+            }
+        }
+    }
+
+    // GETTERS
+    public String getUrl() { return url; }
+    public Path getFile() { return file; }
+    public Object getWriteLock() { return writeLock; }
+    public long getSnapshotIntervalMillis() { return snapshotIntervalMillis; }
+    public long getSnapshotCount() { return snapshots.get(); }
+    public long getLastSnapshotMillis() { return lastSnapshotMillis; }
+    public long getLastSnapshotAt() { return lastSnapshotAt; }
+}
@@ -1,11 +1,14 @@
 import java.util.ArrayList;
 import java.util.List;
 public class MultipleChoiceQuestion extends Questions {
-    private String[] options;
+    private final String[] options;
 
     public MultipleChoiceQuestion(String question, String[] options, String correctAnswer, Difficulty difficultyLevel) {
         super(question, correctAnswer, difficultyLevel);
-        this.options = options;
+        if (options == null) {
+            throw new IllegalArgumentException("Options cannot be null");
+        }
+        this.options = options.clone();
     }
 
     @Override
@@ -51,8 +54,8 @@ public class MultipleChoiceQuestion extends Questions {
 
         return false;
     }
-    // Added for GUI support
+    // Added for GUI support; a copy, so the question stays immutable
     public String[] getOptions() {
-        return options;
+        return options.clone();
     }
 }
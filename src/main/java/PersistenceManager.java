@@ -1,118 +1,1232 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class PersistenceManager {
+public class PersistenceManager implements ScoreStore {
     private String DB_URL;
     private static String TABLE_NAME = "quiz_scores";
+    private static final int DEFAULT_CHUNK_SIZE = 10_000;
+    private static final int DEFAULT_FETCH_SIZE = 1_000;
+    public static final int DEFAULT_BUSY_RETRIES = 5;
+    public static final long DEFAULT_BUSY_RETRY_BASE_MILLIS = 20;
+    private static final long MAX_BUSY_RETRY_DELAY_MILLIS = 2_000;
+
+    private static final Difficulty[] DIFFICULTIES = Difficulty.values();
+
+    // Rows hold a users.id and the Difficulty ordinal; names are resolved through the UserDictionary
+    private static final String INSERT_SQL = "INSERT INTO " + TABLE_NAME +
+            "(user_id, score, difficulty, timestamp) VALUES(?, ?, ?, ?)";
+    // Matches the ORDER BY of the leaderboard queries so a top-N read walks
+    // the first few index entries for one difficulty instead of sorting the table;
+    // the trailing id ASC is the rowid SQLite appends to every index entry
+    private static final String CREATE_LEADERBOARD_INDEX_SQL = "CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_leaderboard " +
+            "ON " + TABLE_NAME + " (difficulty, score DESC, timestamp DESC)";
+    private static final String SELECT_ALL_SQL = "SELECT user_id, score, difficulty, timestamp " +
+            "FROM " + TABLE_NAME + " " +
+            "ORDER BY score DESC, timestamp DESC";
+    private static final String SELECT_TOP_SQL = "SELECT user_id, score, difficulty, timestamp " +
+            "FROM " + TABLE_NAME + " " +
+            "WHERE difficulty = ? " +
+            "ORDER BY score DESC, timestamp DESC, id ASC " +
+            "LIMIT ?";
+    // Raw rows are counted from the leaderboard index alone, without touching table rows;
+    // rows removed by retention are added back from their daily rollups
+    private static final String ROLLUP_TABLE_NAME = "daily_score_counts";
+    private static final String SCORE_COUNTS_SQL = "SELECT difficulty, score, SUM(total) AS total FROM (" +
+            "SELECT difficulty, score, COUNT(*) AS total FROM " + TABLE_NAME + " GROUP BY difficulty, score " +
+            "UNION ALL SELECT difficulty, score, total FROM " + ROLLUP_TABLE_NAME +
+            ") GROUP BY difficulty, score";
+    // Insertion order: rowid order needs no sort, and timestamps come out nearly sorted
+    private static final String EXPORT_SQL = "SELECT user_id, score, difficulty, timestamp " +
+            "FROM " + TABLE_NAME + " " +
+            "ORDER BY id";
+    // Keyset pagination: ordered by score, timestamp (both DESC) then id ASC, which is exactly
+    // the leaderboard index order (SQLite appends the rowid ascending). The row-value bound
+    // seeks straight into the index; the NOT clause only skips rows tied on the cursor's
+    // (score, timestamp) that were already shown.
+    private static final String PAGE_FIRST_SQL = "SELECT id, user_id, score, difficulty, timestamp " +
+            "FROM " + TABLE_NAME + " " +
+            "WHERE difficulty = ? " +
+            "ORDER BY score DESC, timestamp DESC, id ASC " +
+            "LIMIT ?";
+    private static final String PAGE_AFTER_SQL = "SELECT id, user_id, score, difficulty, timestamp " +
+            "FROM " + TABLE_NAME + " " +
+            "WHERE difficulty = ? AND (score, timestamp) <= (?, ?) " +
+            "AND NOT (score = ? AND timestamp = ? AND id <= ?) " +
+            "ORDER BY score DESC, timestamp DESC, id ASC " +
+            "LIMIT ?";
+    // Rowid order needs no sort, so a full scan streams straight off the table
+    private static final String SCAN_SQL = "SELECT user_id, score, difficulty, timestamp " +
+            "FROM " + TABLE_NAME + " " +
+            "WHERE timestamp >= ? AND timestamp < ?";
+    private static final String SCAN_DIFFICULTY_SQL = "SELECT user_id, score, difficulty, timestamp " +
+            "FROM " + TABLE_NAME + " " +
+            "WHERE difficulty = ? AND timestamp >= ? AND timestamp < ?";
+    // Per-user aggregate, kept in step with quiz_scores inside the same transaction
+    private static final String STATS_TABLE_NAME = "user_stats";
+    private static final String UPSERT_STATS_SQL = "INSERT INTO " + STATS_TABLE_NAME +
+            "(user_id, difficulty, best_score, attempts, last_played) VALUES(?, ?, ?, ?, ?) " +
+            "ON CONFLICT(user_id, difficulty) DO UPDATE SET " +
+            "best_score = MAX(best_score, excluded.best_score), " +
+            "attempts = attempts + excluded.attempts, " +
+            "last_played = MAX(last_played, excluded.last_played)";
+    // Retention: the oldest expired rows first, in timestamp index order (ties by rowid), so each
+    // batch reads from the start of the index and finding nothing left is a single seek
+    private static final String TIMESTAMP_INDEX_NAME = "idx_" + TABLE_NAME + "_timestamp";
+    private static final String SELECT_EXPIRED_SQL = "SELECT id, user_id, score, difficulty, timestamp " +
+            "FROM " + TABLE_NAME + " " +
+            "WHERE timestamp < ? " +
+            "ORDER BY timestamp, id " +
+            "LIMIT ?";
+    // Exactly the rows SELECT_EXPIRED_SQL returned: everything up to its last (timestamp, id),
+    // which is below the cutoff; the plain timestamp bound lets the index range stop there
+    private static final String DELETE_EXPIRED_SQL = "DELETE FROM " + TABLE_NAME + " " +
+            "WHERE timestamp <= ? AND (timestamp, id) <= (?, ?)";
+    private static final String UPSERT_ROLLUP_SQL = "INSERT INTO " + ROLLUP_TABLE_NAME +
+            "(day, difficulty, score, total) VALUES(?, ?, ?, ?) " +
+            "ON CONFLICT(day, difficulty, score) DO UPDATE SET total = total + excluded.total";
+    private static final String SELECT_STATS_SQL = "SELECT s.difficulty, s.best_score, s.attempts, s.last_played " +
+            "FROM " + STATS_TABLE_NAME + " s JOIN " + UserDictionary.TABLE_NAME + " u ON u.id = s.user_id " +
+            "WHERE u.name = ?";
+    // Point lookup on the leaderboard index (difficulty, score, timestamp); the name only filters ties
+    private static final String CONTAINS_SQL = "SELECT 1 FROM " + TABLE_NAME + " q " +
+            "JOIN " + UserDictionary.TABLE_NAME + " u ON u.id = q.user_id " +
+            "WHERE q.difficulty = ? AND q.score = ? AND q.timestamp = ? AND u.name = ? " +
+            "LIMIT 1";
+
+    private final ConnectionPool pool;
+    private final MemoryDatabase memory; // null unless in-memory (see inMemory())
+    private final UserDictionary users = new UserDictionary();
+    private final ScoreListeners listeners = new ScoreListeners();
+    private volatile int fetchSize = DEFAULT_FETCH_SIZE;
+    private int migrationChunkRows = SchemaMigrator.DEFAULT_CHUNK_ROWS;
+    private List<SchemaMigrator.Applied> appliedMigrations = List.of();
+    private volatile int busyRetries = DEFAULT_BUSY_RETRIES;
+    private volatile long busyRetryBaseMillis = DEFAULT_BUSY_RETRY_BASE_MILLIS;
+
+    // METRICS
+    private final AtomicLong writeTransactions = new AtomicLong();
+    private final AtomicLong busyRetryCount = new AtomicLong();
+    private final AtomicLong busyFailureCount = new AtomicLong();
 
     // CONSTRUCTORS
     public PersistenceManager() {
         this.DB_URL = "jdbc:sqlite:quiz_scores.db";
+        this.pool = new ConnectionPool(DB_URL);
+        this.memory = null;
     }
 
     public PersistenceManager(String dbFilename) {
+        this(dbFilename, ConnectionPool.DEFAULT_POOL_SIZE);
+    }
+
+    public PersistenceManager(String dbFilename, int poolSize) {
+        this(dbFilename, poolSize, ConnectionPool.DEFAULT_BUSY_TIMEOUT_MILLIS);
+    }
+
+    // busyTimeoutMillis: how long a write waits for another process's lock before it is retried
+    public PersistenceManager(String dbFilename, int poolSize, long busyTimeoutMillis) {
         if (dbFilename == null || dbFilename.trim().isEmpty()) {
             throw new IllegalArgumentException("Database file name cannot be null or empty");
         }
         this.DB_URL = "jdbc:sqlite:" + dbFilename;
+        this.pool = new ConnectionPool(DB_URL, poolSize, ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE, busyTimeoutMillis);
+        this.memory = null;
+    }
+
+    private PersistenceManager(MemoryDatabase memory, int poolSize) {
+        this.DB_URL = memory.getUrl();
+        // Connections sharing one cache lock whole tables instead of waiting on each other:
+        // readers skip the locks (and may see a write that is still in flight), and
+        // writers take turns on the database's write lock instead
+        this.pool = new ConnectionPool(DB_URL, poolSize, ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE,
+                ConnectionPool.DEFAULT_BUSY_TIMEOUT_MILLIS, "PRAGMA read_uncommitted = true");
+        this.memory = memory;
+    }
+
+    /**
+     * A store held entirely in memory, for events and tests where a write to
+     * disk per score is pure overhead. The database is loaded from
+     * snapshotFile (if it exists) by initialize(), saved back to it every
+     * snapshotIntervalMillis (0: only on close) and on close(). Scores written
+     * since the last snapshot are lost in a crash. With a null snapshotFile
+     * nothing is loaded or saved.
+     */
+    public static PersistenceManager inMemory(String snapshotFile, long snapshotIntervalMillis) {
+        Path file = snapshotFile == null ? null : Path.of(snapshotFile);
+        return new PersistenceManager(new MemoryDatabase(file, snapshotIntervalMillis), ConnectionPool.DEFAULT_POOL_SIZE);
     }
 
     // METHODS OF INITIALIZATION
-    public void initializeDatabase() {
-        String createTableSQL = "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
-                " id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                " user_name TEXT NOT NULL," +
-                " score INTEGER NOT NULL," +
-                " difficulty TEXT NOT NULL," +
-                " timestamp INTEGER NOT NULL" +
-                ")";
+    @Override
+    public void initialize() {
+        initializeDatabase();
+    }
 
-        Connection conn = null;
-        Statement stmt = null;
+    public void initializeDatabase() {
+        PooledConnection conn = null;
 
         try {
-            conn = DriverManager.getConnection(DB_URL);
-            stmt = conn.createStatement();
-            stmt.execute(createTableSQL);
-            System.out.println("Database initialized successfully at: " + DB_URL);
+            if (memory != null) {
+                memory.load();
+            }
+            conn = pool.acquire();
+            appliedMigrations = new SchemaMigrator(migrations()).migrate(conn);
+            users.load(conn);
+            if (memory != null) {
+                memory.startSnapshots();
+            }
+            System.out.println("Database initialized successfully at: " + DB_URL +
+                    " (schema v" + SchemaMigrator.getVersion(conn) + ")");
         } catch (SQLException e) {
             throw new RuntimeException("Failed to initialize database: " + e.getMessage(), e);
         } finally {
-            closeQuietly(stmt);
             closeQuietly(conn);
         }
     }
 
+    // SCHEMA MIGRATIONS
+    // Append new steps at the end; never edit a step that has shipped.
+    private List<SchemaMigrator.Step> migrations() {
+        return List.of(
+                SchemaMigrator.Step.transactional(1, "create scores table", this::createScoresTable),
+                SchemaMigrator.Step.chunked(2, "move user names to users table", this::moveUsersToUsersTable),
+                SchemaMigrator.Step.transactional(3, "add per-user stats table", this::createUserStatsTable),
+                SchemaMigrator.Step.transactional(4, "add daily score rollups", this::createRollupTable),
+                SchemaMigrator.Step.chunked(5, "enable incremental vacuum", this::enableIncrementalVacuum),
+                SchemaMigrator.Step.transactional(6, "index scores by timestamp", this::createTimestampIndex));
+    }
+
+    // The original layout, with user_name and difficulty stored as TEXT on every row
+    private void createScoresTable(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+                    " id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    " user_name TEXT NOT NULL," +
+                    " score INTEGER NOT NULL," +
+                    " difficulty TEXT NOT NULL," +
+                    " timestamp INTEGER NOT NULL" +
+                    ")");
+            stmt.execute(CREATE_LEADERBOARD_INDEX_SQL);
+        }
+    }
+
+    // Rebuilds quiz_scores with a user_id into the users table and the Difficulty ordinal.
+    // Rows are copied into quiz_scores_new in id chunks (the index is filled as they arrive),
+    // keeping their ids so pagination cursors stay valid; the final swap is one short transaction.
+    private void moveUsersToUsersTable(PooledConnection conn) throws SQLException {
+        String newTable = TABLE_NAME + "_new";
+        StringBuilder ordinal = new StringBuilder("CASE s.difficulty");
+        for (Difficulty difficulty : DIFFICULTIES) {
+            ordinal.append(" WHEN '").append(difficulty.name()).append("' THEN ").append(difficulty.ordinal());
+        }
+        ordinal.append(" END");
+
+        // Checked in the same transaction as the setup, so a process that swapped meanwhile is seen
+        Connection setup = conn.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            setup.setAutoCommit(false);
+            if (!SchemaMigrator.hasColumn(conn, TABLE_NAME, "user_name")) {
+                return; // already in the new layout
+            }
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + UserDictionary.TABLE_NAME + " (" +
+                    " id INTEGER PRIMARY KEY," +
+                    " name TEXT NOT NULL UNIQUE" +
+                    ")");
+            stmt.execute(createScoresTableSQL(newTable));
+            // The leaderboard index name moves to the new table up front (unless a
+            // previous, interrupted run already did that)
+            if (indexBelongsTo(stmt, "idx_" + TABLE_NAME + "_leaderboard", TABLE_NAME)) {
+                stmt.execute("DROP INDEX idx_" + TABLE_NAME + "_leaderboard");
+            }
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_leaderboard " +
+                    "ON " + newTable + " (difficulty, score DESC, timestamp DESC)");
+            setup.commit();
+        } finally {
+            setup.setAutoCommit(true);
+        }
+
+        String copyUsersSQL = "INSERT OR IGNORE INTO " + UserDictionary.TABLE_NAME + "(name) " +
+                "SELECT DISTINCT user_name FROM " + TABLE_NAME + " WHERE id > ? AND id <= ?";
+        String copyScoresSQL = "INSERT INTO " + newTable + "(id, user_id, score, difficulty, timestamp) " +
+                "SELECT s.id, u.id, s.score, " + ordinal + ", s.timestamp " +
+                "FROM " + TABLE_NAME + " s JOIN " + UserDictionary.TABLE_NAME + " u ON u.name = s.user_name " +
+                "WHERE s.id > ? AND s.id <= ?";
+        long rows = SchemaMigrator.copyInChunks(conn, TABLE_NAME, newTable, migrationChunkRows,
+                copyUsersSQL, copyScoresSQL);
+
+        // Catch up on anything written since the last chunk, then swap the tables,
+        // unless another process migrating alongside has swapped them already
+        Connection connection = conn.getConnection();
+        try (Statement stmt = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            if (!SchemaMigrator.hasColumn(conn, TABLE_NAME, "user_name")) {
+                return;
+            }
+            SchemaMigrator.copyRemaining(conn, TABLE_NAME, newTable, copyUsersSQL, copyScoresSQL);
+            stmt.execute("DROP TABLE " + TABLE_NAME);
+            stmt.execute("ALTER TABLE " + newTable + " RENAME TO " + TABLE_NAME);
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        System.out.println("Moved " + rows + " scores to the users table");
+    }
+
+    // WITHOUT ROWID: the (user_id, difficulty) key is the table, so a lookup is one b-tree seek
+    private void createUserStatsTable(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + STATS_TABLE_NAME + " (" +
+                    " user_id INTEGER NOT NULL REFERENCES " + UserDictionary.TABLE_NAME + "(id)," +
+                    " difficulty INTEGER NOT NULL," +
+                    " best_score INTEGER NOT NULL," +
+                    " attempts INTEGER NOT NULL," +
+                    " last_played INTEGER NOT NULL," +
+                    " PRIMARY KEY (user_id, difficulty)" +
+                    ") WITHOUT ROWID");
+            int rows = stmt.executeUpdate("INSERT OR REPLACE INTO " + STATS_TABLE_NAME +
+                    "(user_id, difficulty, best_score, attempts, last_played) " +
+                    "SELECT user_id, difficulty, MAX(score), COUNT(*), MAX(timestamp) " +
+                    "FROM " + TABLE_NAME + " GROUP BY user_id, difficulty");
+            System.out.println("Built " + rows + " per-user stats rows");
+        }
+    }
+
+    // Per-score counts of rows removed by retention, by UTC day (epoch millis / 86,400,000)
+    private void createRollupTable(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + ROLLUP_TABLE_NAME + " (" +
+                    " day INTEGER NOT NULL," +
+                    " difficulty INTEGER NOT NULL," +
+                    " score INTEGER NOT NULL," +
+                    " total INTEGER NOT NULL," +
+                    " PRIMARY KEY (day, difficulty, score)" +
+                    ") WITHOUT ROWID");
+        }
+    }
+
+    // Switching an existing file to incremental auto-vacuum takes one full VACUUM;
+    // after that, retention gives pages back a few at a time (see vacuumIncrementally)
+    private void enableIncrementalVacuum(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA auto_vacuum")) {
+                if (rs.next() && rs.getInt(1) == 2) {
+                    return;
+                }
+            }
+            stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            stmt.execute("VACUUM");
+        }
+    }
+
+    // For retention, which reads and deletes the oldest rows first
+    private void createTimestampIndex(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE INDEX IF NOT EXISTS " + TIMESTAMP_INDEX_NAME + " ON " + TABLE_NAME + " (timestamp)");
+        }
+    }
+
+    private static boolean indexBelongsTo(Statement stmt, String index, String table) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT tbl_name FROM sqlite_master " +
+                "WHERE type = 'index' AND name = '" + index + "'")) {
+            return rs.next() && table.equals(rs.getString(1));
+        }
+    }
+
+    private static String createScoresTableSQL(String tableName) {
+        return "CREATE TABLE IF NOT EXISTS " + tableName + " (" +
+                " id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                " user_id INTEGER NOT NULL REFERENCES " + UserDictionary.TABLE_NAME + "(id)," +
+                " score INTEGER NOT NULL," +
+                " difficulty INTEGER NOT NULL," +
+                " timestamp INTEGER NOT NULL" +
+                ")";
+    }
+
     // METHODS OF SAVE SCORE
+    @Override
     public void saveScore(UserScoreRecord record) {
         if (record == null) {
             throw new IllegalArgumentException("Score record cannot be null");
         }
-        String insertSQL = "INSERT INTO " + TABLE_NAME +
-                "(user_name, score, difficulty, timestamp) VALUES(?, ?, ?, ?)";
-        Connection conn = null;
-        PreparedStatement pstmt = null;
+        PooledConnection conn = null;
+        // A new user's id is cached only once the transaction that inserted it commits
+        Map<String, Integer> newUsers = new HashMap<>();
 
         try {
-            conn = DriverManager.getConnection(DB_URL);
-            pstmt = conn.prepareStatement(insertSQL);
-            pstmt.setString(1, record.getUserName());
-            pstmt.setInt(2, record.getScore());
-            pstmt.setString(3, record.getDifficulty().name());
-            pstmt.setLong(4, record.getTimestamp());
+            conn = pool.acquire();
+            inWriteTransaction(conn, c -> {
+                newUsers.clear();
+                int userId = userIdFor(c, record.getUserName(), newUsers);
+                // Cached per connection, so it is not closed here
+                PreparedStatement pstmt = c.prepare(INSERT_SQL);
+                pstmt.setInt(1, userId);
+                pstmt.setInt(2, record.getScore());
+                pstmt.setInt(3, record.getDifficulty().ordinal());
+                pstmt.setLong(4, record.getTimestamp());
 
-            int rowsAffected = pstmt.executeUpdate();
-            if (rowsAffected == 0) {
-                throw new RuntimeException("Failed to insert score record - no rows affected");
-            }
+                int rowsAffected = pstmt.executeUpdate();
+                if (rowsAffected == 0) {
+                    throw new RuntimeException("Failed to insert score record - no rows affected");
+                }
+                PreparedStatement stats = c.prepare(UPSERT_STATS_SQL);
+                setStats(stats, userId, record.getDifficulty().ordinal(), record.getScore(), 1, record.getTimestamp());
+                stats.executeUpdate();
+                return null;
+            });
+            rememberCommitted(newUsers);
             System.out.println("Score saved : " + record);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to save score: " + e.getMessage(), e);
         } finally {
-            closeQuietly(pstmt);
             closeQuietly(conn);
         }
+        listeners.fireSaved(record);
+    }
+
+    // METHODS OF BATCH SAVE
+    // Each chunk of records is written in its own transaction with JDBC batching.
+    // A batch no larger than one chunk is therefore saved atomically.
+    @Override
+    public IngestReport saveScores(Iterable<UserScoreRecord> records) {
+        return saveScores(records, DEFAULT_CHUNK_SIZE);
+    }
+
+    public IngestReport saveScores(Iterable<UserScoreRecord> records, int chunkSize) {
+        if (records == null) {
+            throw new IllegalArgumentException("Score records cannot be null");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        long start = System.nanoTime();
+        long written = 0;
+        int chunks = 0;
+        PooledConnection conn = null;
+
+        try {
+            conn = pool.acquire();
+            // Held in memory one chunk at a time, so bulk imports stay constant-memory;
+            // the write lock is released between chunks so other writers get a turn
+            List<UserScoreRecord> chunk = new ArrayList<>(Math.min(chunkSize, DEFAULT_CHUNK_SIZE));
+            for (UserScoreRecord record : records) {
+                if (record == null) {
+                    throw new IllegalArgumentException("Score record cannot be null");
+                }
+                chunk.add(record);
+                if (chunk.size() == chunkSize) {
+                    written += writeChunk(conn, chunk);
+                    chunks++;
+                }
+            }
+            if (!chunk.isEmpty()) {
+                written += writeChunk(conn, chunk);
+                chunks++;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save scores after " + written + " rows: " + e.getMessage(), e);
+        } finally {
+            // Rolls back any uncommitted chunk and restores auto-commit
+            closeQuietly(conn);
+        }
+
+        IngestReport report = new IngestReport(written, 0, chunks, System.nanoTime() - start);
+        System.out.println("Saved scores: " + report);
+        return report;
+    }
+
+    // Writes one chunk in its own transaction, then notifies listeners and empties the chunk
+    private int writeChunk(PooledConnection conn, List<UserScoreRecord> chunk) throws SQLException {
+        // Users inserted by the open transaction; cached only once it commits
+        Map<String, Integer> newUsers = new HashMap<>();
+        inWriteTransaction(conn, c -> {
+            newUsers.clear();
+            // Per (user, difficulty) totals of the chunk, written just before its commit
+            Map<Long, long[]> chunkStats = new HashMap<>();
+            PreparedStatement pstmt = c.prepare(INSERT_SQL);
+            pstmt.clearBatch();
+            for (UserScoreRecord record : chunk) {
+                int userId = userIdFor(c, record.getUserName(), newUsers);
+                pstmt.setInt(1, userId);
+                pstmt.setInt(2, record.getScore());
+                pstmt.setInt(3, record.getDifficulty().ordinal());
+                pstmt.setLong(4, record.getTimestamp());
+                pstmt.addBatch();
+                addToStats(chunkStats, userId, record);
+            }
+            pstmt.executeBatch();
+            writeStats(c, chunkStats);
+            return null;
+        });
+        rememberCommitted(newUsers);
+        int size = chunk.size();
+        listeners.fireSaved(chunk);
+        chunk.clear();
+        return size;
+    }
+
+    // Cached id for the name, or the users table's id for it. Users inserted inside a
+    // transaction go to pending and are cached by rememberCommitted() after the commit.
+    private int userIdFor(PooledConnection conn, String name, Map<String, Integer> pending) throws SQLException {
+        Integer id = users.cachedId(name);
+        if (id == null) {
+            id = pending.get(name);
+        }
+        if (id != null) {
+            return id;
+        }
+        int inserted = users.lookupOrInsert(conn, name);
+        pending.put(name, inserted);
+        return inserted;
+    }
+
+    // Key is (user id, difficulty ordinal); value is {best score, attempts, last played}
+    private static void addToStats(Map<Long, long[]> stats, int userId, UserScoreRecord record) {
+        addToStats(stats, userId, record.getDifficulty().ordinal(), record.getScore(), record.getTimestamp());
+    }
+
+    private static void addToStats(Map<Long, long[]> stats, int userId, int difficulty, int score, long timestamp) {
+        long key = ((long) userId << 8) | difficulty;
+        long[] totals = stats.computeIfAbsent(key, k -> new long[]{Long.MIN_VALUE, 0, Long.MIN_VALUE});
+        totals[0] = Math.max(totals[0], score);
+        totals[1]++;
+        totals[2] = Math.max(totals[2], timestamp);
+    }
+
+    private static void writeStats(PooledConnection conn, Map<Long, long[]> stats) throws SQLException {
+        PreparedStatement pstmt = conn.prepare(UPSERT_STATS_SQL);
+        for (Map.Entry<Long, long[]> e : stats.entrySet()) {
+            long[] totals = e.getValue();
+            setStats(pstmt, (int) (e.getKey() >>> 8), (int) (e.getKey() & 0xFF), (int) totals[0], totals[1], totals[2]);
+            pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+        stats.clear();
+    }
+
+    private static void setStats(PreparedStatement pstmt, int userId, int difficulty, int bestScore,
+                                 long attempts, long lastPlayed) throws SQLException {
+        pstmt.setInt(1, userId);
+        pstmt.setInt(2, difficulty);
+        pstmt.setInt(3, bestScore);
+        pstmt.setLong(4, attempts);
+        pstmt.setLong(5, lastPlayed);
+    }
+
+    private void rememberCommitted(Map<String, Integer> pending) {
+        pending.forEach(users::remember);
+        pending.clear();
+    }
+
+    // Streams CSV lines (see ScoreCsv) straight into chunked batch inserts,
+    // so memory use does not grow with the size of the input
+    public IngestReport importScoresCsv(InputStream in) {
+        return importScoresCsv(in, DEFAULT_CHUNK_SIZE);
+    }
+
+    public IngestReport importScoresCsv(InputStream in, int chunkSize) {
+        if (in == null) {
+            throw new IllegalArgumentException("Input stream cannot be null");
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        ScoreCsv.Reader csv = new ScoreCsv.Reader(reader);
+        IngestReport saved = saveScores(() -> csv, chunkSize);
+
+        IngestReport report = new IngestReport(saved.getRowsWritten(), csv.getRejected(),
+                saved.getChunks(), saved.getElapsedNanos());
+        System.out.println("Imported scores: " + report);
+        return report;
+    }
+
+    // COLUMNAR EXPORT / IMPORT
+    // Writes every score, in insertion order, to a ColumnarScores file. Rows go straight
+    // from the result set into the writer's current chunk, so memory use is one chunk
+    // whatever the table size. The file only appears once it is complete.
+    public IngestReport exportScores(Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        long start = System.nanoTime();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long rows;
+        int chunks;
+
+        PooledConnection conn = null;
+        ResultSet rs = null;
+
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            conn = pool.acquire();
+            PreparedStatement pstmt = conn.prepare(EXPORT_SQL);
+            pstmt.setFetchSize(fetchSize);
+            rs = pstmt.executeQuery();
+            ColumnarScores.Writer writer = new ColumnarScores.Writer(out);
+            while (rs.next()) {
+                writer.add(users.nameOf(conn, rs.getInt("user_id")), rs.getInt("score"),
+                        DIFFICULTIES[rs.getInt("difficulty")], rs.getLong("timestamp"));
+            }
+            rows = writer.finish();
+            chunks = writer.getChunks();
+            out.force(false);
+        } catch (SQLException e) {
+            deleteQuietly(temp);
+            throw new RuntimeException("Failed to export scores : " + e.getMessage(), e);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new UncheckedIOException("Failed to export scores to " + file + ": " + e.getMessage(), e);
+        } finally {
+            closeQuietly(rs);
+            closeQuietly(conn);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new UncheckedIOException("Failed to move export into place at " + file + ": " + e.getMessage(), e);
+        }
+
+        IngestReport report = new IngestReport(rows, 0, chunks, System.nanoTime() - start);
+        System.out.println("Exported scores: " + report);
+        return report;
+    }
+
+    // Appends the scores in a ColumnarScores file, one transaction per chunk.
+    // A failure leaves the chunks before it imported.
+    public IngestReport importScores(Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        long start = System.nanoTime();
+        long written = 0;
+        int chunks = 0;
+        PooledConnection conn = null;
+
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ColumnarScores.Reader reader = new ColumnarScores.Reader(in);
+            conn = pool.acquire();
+            while (reader.nextChunk()) {
+                written += writeColumnarChunk(conn, reader);
+                chunks++;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to import scores after " + written + " rows: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to import scores from " + file + " after " + written +
+                    " rows: " + e.getMessage(), e);
+        } finally {
+            closeQuietly(conn);
+        }
+
+        IngestReport report = new IngestReport(written, 0, chunks, System.nanoTime() - start);
+        System.out.println("Imported scores: " + report);
+        return report;
+    }
+
+    // Names are resolved once per chunk from its dictionary rather than once per row
+    private int writeColumnarChunk(PooledConnection conn, ColumnarScores.Reader chunk) throws SQLException {
+        List<String> names = checkColumnarChunk(chunk);
+        int[] userIds = new int[names.size()];
+        Map<String, Integer> newUsers = new HashMap<>();
+        inWriteTransaction(conn, c -> {
+            newUsers.clear();
+            for (int n = 0; n < userIds.length; n++) {
+                userIds[n] = userIdFor(c, names.get(n), newUsers);
+            }
+            Map<Long, long[]> chunkStats = new HashMap<>();
+            PreparedStatement pstmt = c.prepare(INSERT_SQL);
+            pstmt.clearBatch();
+            for (int i = 0; i < chunk.size(); i++) {
+                int userId = userIds[chunk.nameIndex(i)];
+                int difficulty = chunk.difficulty(i).ordinal();
+                pstmt.setInt(1, userId);
+                pstmt.setInt(2, chunk.score(i));
+                pstmt.setInt(3, difficulty);
+                pstmt.setLong(4, chunk.timestamp(i));
+                pstmt.addBatch();
+                addToStats(chunkStats, userId, difficulty, chunk.score(i), chunk.timestamp(i));
+            }
+            pstmt.executeBatch();
+            writeStats(c, chunkStats);
+            return null;
+        });
+        rememberCommitted(newUsers);
+        // Records are only built when someone is listening
+        if (!listeners.isEmpty()) {
+            List<UserScoreRecord> committed = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                committed.add(new UserScoreRecord(chunk.userName(i), chunk.score(i), chunk.difficulty(i),
+                        chunk.timestamp(i)));
+            }
+            listeners.fireSaved(committed);
+        }
+        return chunk.size();
+    }
+
+    // Applies UserScoreRecord's rules to a whole chunk before any of it is written,
+    // and returns its names trimmed the way a record would store them
+    private static List<String> checkColumnarChunk(ColumnarScores.Reader chunk) {
+        List<String> names = new ArrayList<>(chunk.names().size());
+        for (String name : chunk.names()) {
+            if (name == null || name.trim().isEmpty()) {
+                throw new IllegalArgumentException("Username cannot be null or empty in chunk " + chunk.getChunks());
+            }
+            names.add(name.trim());
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            if (chunk.score(i) < 0) {
+                throw new IllegalArgumentException("Score cannot be negative in chunk " + chunk.getChunks() +
+                        ", row " + i);
+            }
+            if (chunk.timestamp(i) <= 0) {
+                throw new IllegalArgumentException("Timestamp must be positive in chunk " + chunk.getChunks() +
+                        ", row " + i);
+            }
+        }
+        return names;
     }
 
     // LOAD SCORES
+    @Override
     public List<UserScoreRecord> loadAllScores() {
         List<UserScoreRecord> scores = new ArrayList<>();
-        String selectSQL = "SELECT user_name, score, difficulty, timestamp " +
-                "FROM " + TABLE_NAME + " " +
-                "ORDER BY score DESC, timestamp DESC";
 
-        Connection conn = null;
-        Statement stmt = null;
+        PooledConnection conn = null;
         ResultSet rs = null;
 
         try {
-            conn = DriverManager.getConnection(DB_URL);
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery(selectSQL);
+            conn = pool.acquire();
+            rs = conn.prepare(SELECT_ALL_SQL).executeQuery();
 
             while (rs.next()) {
-                String userName = rs.getString("user_name");
-                int score = rs.getInt("score");
-                String difficultyStr = rs.getString("difficulty");
-                long timestamp = rs.getLong("timestamp");
-
-                Difficulty difficulty = Difficulty.valueOf(difficultyStr);
-                UserScoreRecord record = new UserScoreRecord(userName, score, difficulty, timestamp);
-                scores.add(record);
+                scores.add(readRecord(conn, rs));
             }
             System.out.println("Loaded " + scores.size() + " score records");
         } catch (SQLException e) {
             throw new RuntimeException("Failed to load scores : " + e.getMessage(), e);
         } finally {
             closeQuietly(rs);
-            closeQuietly(stmt);
             closeQuietly(conn);
         }
         return scores;
     }
 
+    // STREAMING SCORES
+    // Visits matching scores one row at a time in insertion order, without
+    // building a list. Returns the number of records visited.
+    @Override
+    public long forEachScore(ScoreFilter filter, Consumer<UserScoreRecord> action) {
+        if (filter == null || action == null) {
+            throw new IllegalArgumentException("Filter and action cannot be null");
+        }
+        long visited = 0;
+
+        PooledConnection conn = null;
+        ResultSet rs = null;
+
+        try {
+            conn = pool.acquire();
+            rs = openScan(conn, filter);
+            while (rs.next()) {
+                action.accept(readRecord(conn, rs));
+                visited++;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to scan scores : " + e.getMessage(), e);
+        } finally {
+            closeQuietly(rs);
+            closeQuietly(conn);
+        }
+        return visited;
+    }
+
+    // Lazily reads matching scores. The stream holds a pooled connection until
+    // it is closed, so use it in a try-with-resources block.
+    public Stream<UserScoreRecord> streamScores(ScoreFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter cannot be null");
+        }
+        PooledConnection conn = null;
+        ResultSet rs = null;
+
+        try {
+            conn = pool.acquire();
+            rs = openScan(conn, filter);
+        } catch (SQLException e) {
+            closeQuietly(rs);
+            closeQuietly(conn);
+            throw new RuntimeException("Failed to scan scores : " + e.getMessage(), e);
+        }
+
+        final PooledConnection streamConn = conn;
+        final ResultSet streamRs = rs;
+        Spliterator<UserScoreRecord> rows = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super UserScoreRecord> action) {
+                try {
+                    if (!streamRs.next()) {
+                        return false;
+                    }
+                    action.accept(readRecord(streamConn, streamRs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new RuntimeException("Failed to read score row : " + e.getMessage(), e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            closeQuietly(streamRs);
+            closeQuietly(streamConn);
+        });
+    }
+
+    private ResultSet openScan(PooledConnection conn, ScoreFilter filter) throws SQLException {
+        PreparedStatement pstmt;
+        int index = 1;
+        if (filter.getDifficulty() != null) {
+            pstmt = conn.prepare(SCAN_DIFFICULTY_SQL);
+            pstmt.setInt(index++, filter.getDifficulty().ordinal());
+        } else {
+            pstmt = conn.prepare(SCAN_SQL);
+        }
+        pstmt.setLong(index++, filter.getFromTimestamp());
+        pstmt.setLong(index, filter.getToTimestamp());
+        pstmt.setFetchSize(fetchSize);
+        return pstmt.executeQuery();
+    }
+
+    @Override
+    public List<UserScoreRecord> getTopScores(Difficulty difficulty, int limit) {
+        if (difficulty == null) {
+            throw new IllegalArgumentException("Difficulty cannot be null");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        List<UserScoreRecord> scores = new ArrayList<>(limit);
+
+        PooledConnection conn = null;
+        ResultSet rs = null;
+
+        try {
+            conn = pool.acquire();
+            PreparedStatement pstmt = conn.prepare(SELECT_TOP_SQL);
+            pstmt.setInt(1, difficulty.ordinal());
+            pstmt.setInt(2, limit);
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                scores.add(readRecord(conn, rs));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load top scores : " + e.getMessage(), e);
+        } finally {
+            closeQuietly(rs);
+            closeQuietly(conn);
+        }
+        return scores;
+    }
+
+    // AGGREGATES
+    // Number of stored scores per score value, indexed by score, for each difficulty
+    @Override
+    public Map<Difficulty, long[]> loadScoreCounts() {
+        Map<Difficulty, long[]> counts = new EnumMap<>(Difficulty.class);
+
+        PooledConnection conn = null;
+        ResultSet rs = null;
+
+        try {
+            conn = pool.acquire();
+            rs = conn.prepare(SCORE_COUNTS_SQL).executeQuery();
+            while (rs.next()) {
+                Difficulty difficulty = DIFFICULTIES[rs.getInt("difficulty")];
+                int score = rs.getInt("score");
+                long[] perScore = counts.getOrDefault(difficulty, new long[0]);
+                if (score >= perScore.length) {
+                    perScore = Arrays.copyOf(perScore, score + 1);
+                }
+                perScore[score] = rs.getLong("total");
+                counts.put(difficulty, perScore);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load score counts : " + e.getMessage(), e);
+        } finally {
+            closeQuietly(rs);
+            closeQuietly(conn);
+        }
+        return counts;
+    }
+
+    // RETENTION
+    /**
+     * Removes up to {@code limit} of the oldest rows with a timestamp before
+     * {@code cutoff}. They are written to the archive first (if one is given),
+     * then counted into the daily rollups and deleted in one transaction.
+     * Returns the number of rows removed; 0 means nothing older is left.
+     */
+    public int removeExpiredBatch(long cutoff, int limit, ScoreArchive archive) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        List<UserScoreRecord> expired = new ArrayList<>();
+        long firstId = -1;
+        long lastId = -1;
+        long lastTimestamp = 0;
+
+        PooledConnection conn = null;
+        ResultSet rs = null;
+
+        try {
+            conn = pool.acquire();
+            PreparedStatement select = conn.prepare(SELECT_EXPIRED_SQL);
+            select.setLong(1, cutoff);
+            select.setInt(2, limit);
+            rs = select.executeQuery();
+            while (rs.next()) {
+                lastId = rs.getLong("id");
+                if (firstId < 0) {
+                    firstId = lastId;
+                }
+                UserScoreRecord record = readRecord(conn, rs);
+                lastTimestamp = record.getTimestamp();
+                expired.add(record);
+            }
+            closeQuietly(rs);
+            rs = null;
+            if (expired.isEmpty()) {
+                return 0;
+            }
+            // If the delete then fails, the next run archives the same range again
+            if (archive != null) {
+                archive.write(expired, firstId, lastId);
+            }
+
+            final long last = lastId;
+            final long lastTime = lastTimestamp;
+            inWriteTransaction(conn, c -> {
+                writeRollups(c, expired);
+                PreparedStatement delete = c.prepare(DELETE_EXPIRED_SQL);
+                delete.setLong(1, lastTime);
+                delete.setLong(2, lastTime);
+                delete.setLong(3, last);
+                int deleted = delete.executeUpdate();
+                if (deleted != expired.size()) {
+                    throw new SQLException("Expected to delete " + expired.size() + " rows but deleted " + deleted);
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to remove expired scores: " + e.getMessage(), e);
+        } finally {
+            closeQuietly(rs);
+            closeQuietly(conn);
+        }
+        listeners.fireRemoved(expired);
+        return expired.size();
+    }
+
+    private static void writeRollups(PooledConnection conn, List<UserScoreRecord> removed) throws SQLException {
+        // Key is (day, difficulty ordinal, score)
+        Map<List<Long>, Long> totals = new HashMap<>();
+        for (UserScoreRecord record : removed) {
+            List<Long> key = List.of(Math.floorDiv(record.getTimestamp(), 86_400_000L),
+                    (long) record.getDifficulty().ordinal(), (long) record.getScore());
+            totals.merge(key, 1L, Long::sum);
+        }
+        PreparedStatement pstmt = conn.prepare(UPSERT_ROLLUP_SQL);
+        for (Map.Entry<List<Long>, Long> e : totals.entrySet()) {
+            pstmt.setLong(1, e.getKey().get(0));
+            pstmt.setLong(2, e.getKey().get(1));
+            pstmt.setLong(3, e.getKey().get(2));
+            pstmt.setLong(4, e.getValue());
+            pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+    }
+
+    // Returns up to maxPages free pages to the file system, in one short transaction.
+    // Returns the number freed.
+    public int vacuumIncrementally(int maxPages) {
+        if (maxPages <= 0) {
+            throw new IllegalArgumentException("Max pages must be positive");
+        }
+        PooledConnection conn = null;
+        Statement stmt = null;
+
+        try {
+            conn = pool.acquire();
+            stmt = conn.createStatement();
+            long before = freePages(stmt);
+            int pages = (int) Math.min(before, maxPages);
+            if (pages == 0) {
+                return 0;
+            }
+            // The driver steps a statement without result columns only once, and each
+            // step of this pragma frees a single page, so it is run once per page
+            inWriteTransaction(conn, c -> {
+                // Not cached: the statement has to be finalized before the commit
+                try (PreparedStatement vacuum = c.getConnection().prepareStatement("PRAGMA incremental_vacuum")) {
+                    for (int i = 0; i < pages; i++) {
+                        vacuum.execute();
+                    }
+                }
+                return null;
+            });
+            return (int) (before - freePages(stmt));
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to vacuum database: " + e.getMessage(), e);
+        } finally {
+            closeQuietly(stmt);
+            closeQuietly(conn);
+        }
+    }
+
+    private static long freePages(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA freelist_count")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // PERSONAL STATS
+    // One indexed lookup on users.name plus at most one row per difficulty
+    @Override
+    public PersonalStats getPersonalStats(String userName) {
+        if (userName == null) {
+            throw new IllegalArgumentException("User name cannot be null");
+        }
+        int[] best = new int[DIFFICULTIES.length];
+        long[] attempts = new long[DIFFICULTIES.length];
+        long lastPlayed = 0;
+        Arrays.fill(best, -1);
+
+        PooledConnection conn = null;
+        ResultSet rs = null;
+
+        try {
+            conn = pool.acquire();
+            PreparedStatement pstmt = conn.prepare(SELECT_STATS_SQL);
+            pstmt.setString(1, userName);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                int d = rs.getInt("difficulty");
+                best[d] = rs.getInt("best_score");
+                attempts[d] = rs.getLong("attempts");
+                lastPlayed = Math.max(lastPlayed, rs.getLong("last_played"));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load personal stats : " + e.getMessage(), e);
+        } finally {
+            closeQuietly(rs);
+            closeQuietly(conn);
+        }
+        return new PersonalStats(userName, best, attempts, lastPlayed);
+    }
+
+    @Override
+    public boolean containsScore(UserScoreRecord record) {
+        if (record == null) {
+            throw new IllegalArgumentException("Score record cannot be null");
+        }
+        PooledConnection conn = null;
+        ResultSet rs = null;
+
+        try {
+            conn = pool.acquire();
+            PreparedStatement pstmt = conn.prepare(CONTAINS_SQL);
+            pstmt.setInt(1, record.getDifficulty().ordinal());
+            pstmt.setInt(2, record.getScore());
+            pstmt.setLong(3, record.getTimestamp());
+            pstmt.setString(4, record.getUserName());
+            rs = pstmt.executeQuery();
+            return rs.next();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to look up score : " + e.getMessage(), e);
+        } finally {
+            closeQuietly(rs);
+            closeQuietly(conn);
+        }
+    }
+
+    // PAGINATION
+    // Returns the page after the cursor, or the first page when the cursor is null.
+    // Each page costs an index seek plus pageSize rows, however deep it is.
+    @Override
+    public ScorePage getScoresPage(Difficulty difficulty, ScoreCursor cursor, int pageSize) {
+        if (difficulty == null) {
+            throw new IllegalArgumentException("Difficulty cannot be null");
+        }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        List<UserScoreRecord> records = new ArrayList<>(pageSize);
+        ScoreCursor last = null;
+
+        PooledConnection conn = null;
+        ResultSet rs = null;
+
+        try {
+            conn = pool.acquire();
+            PreparedStatement pstmt;
+            if (cursor == null) {
+                pstmt = conn.prepare(PAGE_FIRST_SQL);
+                pstmt.setInt(1, difficulty.ordinal());
+                // Fetch one extra row to know whether another page exists
+                pstmt.setInt(2, pageSize + 1);
+            } else {
+                pstmt = conn.prepare(PAGE_AFTER_SQL);
+                pstmt.setInt(1, difficulty.ordinal());
+                pstmt.setInt(2, cursor.getScore());
+                pstmt.setLong(3, cursor.getTimestamp());
+                pstmt.setInt(4, cursor.getScore());
+                pstmt.setLong(5, cursor.getTimestamp());
+                pstmt.setLong(6, cursor.getId());
+                pstmt.setInt(7, pageSize + 1);
+            }
+            rs = pstmt.executeQuery();
+
+            boolean more = false;
+            while (rs.next()) {
+                if (records.size() == pageSize) {
+                    more = true;
+                    break;
+                }
+                UserScoreRecord record = readRecord(conn, rs);
+                records.add(record);
+                last = new ScoreCursor(record.getScore(), record.getTimestamp(), rs.getLong("id"));
+            }
+            return new ScorePage(records, more ? last : null);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load score page : " + e.getMessage(), e);
+        } finally {
+            closeQuietly(rs);
+            closeQuietly(conn);
+        }
+    }
+
+    // LISTENERS
+    @Override
+    public void addScoreListener(ScoreListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeScoreListener(ScoreListener listener) {
+        listeners.remove(listener);
+    }
+
     // HELPER METHODS
+    private UserScoreRecord readRecord(PooledConnection conn, ResultSet rs) throws SQLException {
+        String userName = users.nameOf(conn, rs.getInt("user_id"));
+        int score = rs.getInt("score");
+        Difficulty difficulty = DIFFICULTIES[rs.getInt("difficulty")];
+        long timestamp = rs.getLong("timestamp");
+
+        return new UserScoreRecord(userName, score, difficulty, timestamp);
+    }
+
+    private static long databaseSize(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT (page_count - freelist_count) * page_size " +
+                     "FROM pragma_page_count(), pragma_freelist_count(), pragma_page_size()")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Body of a write transaction; run again from the start if the transaction is retried
+    @FunctionalInterface
+    private interface WriteBody<T> {
+        T run(PooledConnection conn) throws SQLException;
+    }
+
+    /**
+     * Runs body in one IMMEDIATE transaction. If another process holds the write
+     * lock for longer than the busy timeout, the transaction is rolled back and
+     * retried after a random pause of up to base * 2^attempt ms ("full jitter",
+     * so writers that collided do not wake up together), busyRetries times.
+     * Commits by returning to auto-commit mode: the driver's commit() would
+     * open the next IMMEDIATE transaction straight away and hold the lock.
+     */
+    private <T> T inWriteTransaction(PooledConnection conn, WriteBody<T> body) throws SQLException {
+        if (memory != null) {
+            // Also keeps writes out of a snapshot in progress
+            synchronized (memory.getWriteLock()) {
+                return runWriteTransaction(conn, body);
+            }
+        }
+        return runWriteTransaction(conn, body);
+    }
+
+    private <T> T runWriteTransaction(PooledConnection conn, WriteBody<T> body) throws SQLException {
+        Connection connection = conn.getConnection();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                connection.setAutoCommit(false);
+                T result = body.run(conn);
+                connection.setAutoCommit(true);
+                writeTransactions.incrementAndGet();
+                return result;
+            } catch (SQLException e) {
+                conn.abortTransaction();
+                if (!isBusy(e)) {
+                    throw e;
+                }
+                if (attempt >= busyRetries) {
+                    busyFailureCount.incrementAndGet();
+                    throw e;
+                }
+                busyRetryCount.incrementAndGet();
+                long bound = Math.min(busyRetryBaseMillis << Math.min(attempt, 20), MAX_BUSY_RETRY_DELAY_MILLIS);
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            } catch (RuntimeException e) {
+                conn.abortTransaction();
+                throw e;
+            }
+        }
+    }
+
+    // SQLITE_BUSY or SQLITE_LOCKED, including their extended codes
+    private static boolean isBusy(SQLException e) {
+        int primary = e.getErrorCode() & 0xff;
+        return primary == 5 || primary == 6;
+    }
+
+    // Drops a partial temp file; the failure being reported matters more than this one
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + path + ": " + e.getMessage());
+        }
+    }
+
     private void closeQuietly(AutoCloseable closeable) {
         if (closeable != null) {
             try {
@@ -124,26 +1238,113 @@ public class PersistenceManager {
     }
 
     // UTILITY TESTING METHODS (Fixed typos here!)
+    @Override
     public void clearAllScores() {
         String deleteSQL = "DELETE FROM " + TABLE_NAME; // Fixed DELTE
+        String deleteStatsSQL = "DELETE FROM " + STATS_TABLE_NAME;
+        String deleteRollupsSQL = "DELETE FROM " + ROLLUP_TABLE_NAME;
 
-        Connection conn = null;
-        Statement stmt = null;
+        PooledConnection conn = null;
 
         try {
-            conn = DriverManager.getConnection(DB_URL);
-            stmt = conn.createStatement();
-            int deleted = stmt.executeUpdate(deleteSQL);
+            conn = pool.acquire();
+            int deleted = inWriteTransaction(conn, c -> {
+                try (Statement stmt = c.createStatement()) {
+                    int rows = stmt.executeUpdate(deleteSQL);
+                    stmt.executeUpdate(deleteStatsSQL);
+                    stmt.executeUpdate(deleteRollupsSQL);
+                    return rows;
+                }
+            });
             System.out.println("Cleared " + deleted + " score records");
         } catch (SQLException e) {
             throw new RuntimeException("Failed to clear scores: " + e.getMessage(), e);
         } finally {
-            closeQuietly(stmt);
             closeQuietly(conn);
         }
+        listeners.fireCleared();
+    }
+
+    // SHUTDOWN
+    @Override
+    public void close() {
+        pool.close();
+        if (memory != null) {
+            memory.close();
+        }
+    }
+
+    // Saves the in-memory database to its snapshot file now
+    public void snapshot() {
+        if (memory == null) {
+            throw new IllegalStateException("Snapshots need an in-memory store");
+        }
+        memory.snapshot();
+    }
+
+    // Null unless this store is in memory
+    public MemoryDatabase getMemoryDatabase() {
+        return memory;
     }
 
     public String getDatabaseUrl() {
         return DB_URL;
     }
-}
\ No newline at end of file
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    // Bytes in use in the main database file; free pages left by dropped or deleted rows
+    // (reused by later writes) and the WAL are not counted
+    public long getDatabaseSize() {
+        PooledConnection conn = null;
+        try {
+            conn = pool.acquire();
+            return databaseSize(conn);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read database size: " + e.getMessage(), e);
+        } finally {
+            closeQuietly(conn);
+        }
+    }
+
+    // Migrations run by the last initializeDatabase() call, with per-step timings
+    public List<SchemaMigrator.Applied> getAppliedMigrations() {
+        return appliedMigrations;
+    }
+
+    // Rows per transaction for chunked migration steps; set before initializeDatabase()
+    public void setMigrationChunkRows(int migrationChunkRows) {
+        if (migrationChunkRows <= 0) {
+            throw new IllegalArgumentException("Migration chunk rows must be positive");
+        }
+        this.migrationChunkRows = migrationChunkRows;
+    }
+
+    public PoolStats getPoolStats() {
+        return pool.getStats();
+    }
+
+    // How often a write that found the database locked past the busy timeout is retried,
+    // and the base of the jittered exponential pause between attempts
+    public void setBusyRetry(int busyRetries, long baseDelayMillis) {
+        if (busyRetries < 0 || baseDelayMillis <= 0) {
+            throw new IllegalArgumentException("Invalid busy retry settings");
+        }
+        this.busyRetries = busyRetries;
+        this.busyRetryBaseMillis = baseDelayMillis;
+    }
+
+    public long getBusyTimeoutMillis() { return pool.getBusyTimeoutMillis(); }
+    public long getWriteTransactions() { return writeTransactions.get(); }
+    public long getBusyRetries() { return busyRetryCount.get(); }
+    public long getBusyFailures() { return busyFailureCount.get(); }
+}
@@ -0,0 +1,81 @@
+import java.util.Arrays;
+
+/**
+ * One player's aggregate over all their scores: best score and number of
+ * attempts per difficulty, and when they last played. Immutable.
+ */
+public class PersonalStats {
+
+    private static final int DIFFICULTIES = Difficulty.values().length;
+
+    private final String userName;
+    private final int[] bestScores;   // by Difficulty ordinal, -1 if never played
+    private final long[] attempts;    // by Difficulty ordinal
+    private final long lastPlayed;    // 0 if never played
+
+    PersonalStats(String userName, int[] bestScores, long[] attempts, long lastPlayed) {
+        this.userName = userName;
+        this.bestScores = bestScores;
+        this.attempts = attempts;
+        this.lastPlayed = lastPlayed;
+    }
+
+    public static PersonalStats empty(String userName) {
+        int[] best = new int[DIFFICULTIES];
+        Arrays.fill(best, -1);
+        return new PersonalStats(userName, best, new long[DIFFICULTIES], 0);
+    }
+
+    public static PersonalStats of(String userName, Iterable<UserScoreRecord> records) {
+        PersonalStats stats = empty(userName);
+        for (UserScoreRecord record : records) {
+            stats = stats.with(record);
+        }
+        return stats;
+    }
+
+    // These stats plus one more attempt
+    public PersonalStats with(UserScoreRecord record) {
+        int d = record.getDifficulty().ordinal();
+        int[] best = bestScores.clone();
+        long[] tries = attempts.clone();
+        best[d] = Math.max(best[d], record.getScore());
+        tries[d]++;
+        return new PersonalStats(userName, best, tries, Math.max(lastPlayed, record.getTimestamp()));
+    }
+
+    // GETTERS
+    public String getUserName() { return userName; }
+    public long getLastPlayed() { return lastPlayed; }
+
+    // -1 if the player has no score for this difficulty
+    public int getBestScore(Difficulty difficulty) {
+        return bestScores[difficulty.ordinal()];
+    }
+
+    public long getAttempts(Difficulty difficulty) {
+        return attempts[difficulty.ordinal()];
+    }
+
+    public long getTotalAttempts() {
+        long total = 0;
+        for (long a : attempts) {
+            total += a;
+        }
+        return total;
+    }
+
+    public boolean hasPlayed() {
+        return getTotalAttempts() > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "PersonalStats{" +
+                "userName='" + userName + '\'' +
+                ", bestScores=" + Arrays.toString(bestScores) +
+                ", attempts=" + Arrays.toString(attempts) +
+                ", lastPlayed=" + lastPlayed +
+                '}';
+    }
+}
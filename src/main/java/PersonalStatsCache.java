@@ -0,0 +1,122 @@
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU of {@link PersonalStats} in front of
+ * {@link ScoreStore#getPersonalStats(String)}.
+ *
+ * A committed save drops the player's entry through {@link ScoreListener},
+ * and the next read loads it again. Applying the save to the cached entry
+ * instead could count it twice, since a load that ran after the commit but
+ * before the callback already includes it. A load that overlapped a save for
+ * the same player is returned but not cached. Players that fall out of the
+ * LRU are loaded again on their next read too.
+ */
+public class PersonalStatsCache implements ScoreListener {
+
+    public static final int DEFAULT_CAPACITY = 1_024;
+
+    private final ScoreStore scoreStore;
+    private final int capacity;
+    private final Map<String, PersonalStats> entries;
+    // Players with a load in flight; guarded by entries, so it only holds current loads
+    private final Map<String, Load> loading = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // CONSTRUCTORS
+    public PersonalStatsCache(ScoreStore scoreStore) {
+        this(scoreStore, DEFAULT_CAPACITY);
+    }
+
+    public PersonalStatsCache(ScoreStore scoreStore, int capacity) {
+        if (scoreStore == null) {
+            throw new IllegalArgumentException("Score store cannot be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.scoreStore = scoreStore;
+        this.capacity = capacity;
+        // Access-ordered so the least recently read player is evicted first
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PersonalStats> eldest) {
+                return size() > PersonalStatsCache.this.capacity;
+            }
+        };
+        scoreStore.addScoreListener(this);
+    }
+
+    // READS
+    public PersonalStats get(String userName) {
+        if (userName == null) {
+            throw new IllegalArgumentException("User name cannot be null");
+        }
+        synchronized (entries) {
+            PersonalStats cached = entries.get(userName);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        Load load;
+        long before;
+        synchronized (entries) {
+            load = loading.computeIfAbsent(userName, name -> new Load());
+            load.loaders++;
+            before = load.writes;
+        }
+        PersonalStats loaded = null;
+        try {
+            loaded = scoreStore.getPersonalStats(userName);
+        } finally {
+            synchronized (entries) {
+                if (loaded != null && load.writes == before) {
+                    entries.putIfAbsent(userName, loaded);
+                }
+                if (--load.loaders == 0) {
+                    loading.remove(userName);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    // UPDATES
+    @Override
+    public void onScoreSaved(UserScoreRecord record) {
+        synchronized (entries) {
+            entries.remove(record.getUserName());
+            Load load = loading.get(record.getUserName());
+            if (load != null) {
+                load.writes++;
+            }
+        }
+    }
+
+    @Override
+    public void onScoresCleared() {
+        synchronized (entries) {
+            entries.clear();
+            for (Load load : loading.values()) {
+                load.writes++;
+            }
+        }
+    }
+
+    // Saves seen for one player while loads for them were running
+    private static final class Load {
+        int loaders;
+        long writes;
+    }
+
+    // GETTERS
+    public int getCapacity() { return capacity; }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+}
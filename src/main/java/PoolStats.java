@@ -0,0 +1,51 @@
+/**
+ * Point-in-time snapshot of {@link ConnectionPool} metrics.
+ */
+public class PoolStats {
+    private final int maxSize;
+    private final int openConnections;
+    private final int inUse;
+    private final long acquisitions;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+    private final long statementCacheHits;
+    private final long statementCacheMisses;
+
+    public PoolStats(int maxSize, int openConnections, int inUse, long acquisitions,
+                     long totalWaitNanos, long maxWaitNanos,
+                     long statementCacheHits, long statementCacheMisses) {
+        this.maxSize = maxSize;
+        this.openConnections = openConnections;
+        this.inUse = inUse;
+        this.acquisitions = acquisitions;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+    }
+
+    public int getMaxSize() { return maxSize; }
+    public int getOpenConnections() { return openConnections; }
+    public int getInUse() { return inUse; }
+    public long getAcquisitions() { return acquisitions; }
+    public long getTotalWaitNanos() { return totalWaitNanos; }
+    public long getMaxWaitNanos() { return maxWaitNanos; }
+    public long getStatementCacheHits() { return statementCacheHits; }
+    public long getStatementCacheMisses() { return statementCacheMisses; }
+
+    public double getAverageWaitMillis() {
+        return acquisitions == 0 ? 0.0 : totalWaitNanos / (double) acquisitions / 1_000_000.0;
+    }
+
+    public double getStatementCacheHitRatio() {
+        long lookups = statementCacheHits + statementCacheMisses;
+        return lookups == 0 ? 0.0 : statementCacheHits / (double) lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PoolStats[open=%d/%d, inUse=%d, acquisitions=%d, avgWaitMs=%.3f, maxWaitMs=%.3f, cacheHits=%d, cacheMisses=%d]",
+                openConnections, maxSize, inUse, acquisitions, getAverageWaitMillis(),
+                maxWaitNanos / 1_000_000.0, statementCacheHits, statementCacheMisses);
+    }
+}
@@ -0,0 +1,129 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A connection borrowed from a {@link ConnectionPool}.
+ * Closing it hands it back to the pool instead of closing the SQLite file.
+ * Statements returned by {@link #prepare(String)} are owned by the cache and
+ * must not be closed by callers.
+ */
+public class PooledConnection implements AutoCloseable {
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statementCache;
+    private boolean closed; // only touched by the thread holding this connection
+
+    PooledConnection(ConnectionPool pool, Connection connection, int statementCacheSize) {
+        this.pool = pool;
+        this.connection = connection;
+        // Access-ordered so the least recently used statement is evicted first
+        this.statementCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > statementCacheSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Only ever used by the thread holding this connection, so no locking is needed
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement pstmt = statementCache.get(sql);
+        if (pstmt != null && !pstmt.isClosed()) {
+            pool.recordStatementCacheHit();
+            pstmt.clearParameters();
+            pstmt.clearBatch();
+            return pstmt;
+        }
+        pool.recordStatementCacheMiss();
+        pstmt = connection.prepareStatement(sql);
+        statementCache.put(sql, pstmt);
+        return pstmt;
+    }
+
+    public Statement createStatement() throws SQLException {
+        return connection.createStatement();
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    // Closing twice would release the pool permit twice
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pool.release(this);
+    }
+
+    // Called by the pool when it hands this connection out again
+    void markAcquired() {
+        closed = false;
+    }
+
+    // Puts the connection back into auto-commit mode after a failed transaction.
+    boolean resetForReuse() {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                abortTransaction();
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Discarding broken connection: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Rolls back the open transaction, if any, and returns to auto-commit mode
+     * without starting another one. The driver's rollback() would immediately
+     * BEGIN IMMEDIATE again and could wait on another writer's lock; and when
+     * a BEGIN fails with SQLITE_BUSY the driver is left out of auto-commit mode
+     * with no transaction open, which both statements below tolerate.
+     */
+    void abortTransaction() {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ROLLBACK");
+        } catch (SQLException e) {
+            // No transaction was open
+        }
+        try {
+            // Sets the driver's flag first, then fails on the COMMIT if nothing is open
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            // Already back in auto-commit mode
+        }
+    }
+
+    void closePhysical() {
+        for (PreparedStatement pstmt : statementCache.values()) {
+            closeQuietly(pstmt);
+        }
+        statementCache.clear();
+        closeQuietly(connection);
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                System.err.println("Error closing resource: " + e.getMessage());
+            }
+        }
+    }
+}
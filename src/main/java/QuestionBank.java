@@ -1,115 +1,263 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
+/**
+ * The questions every quiz draws from, read from question packs and
+ * published as immutable, versioned {@link QuestionSnapshot}s.
+ *
+ * Packs are listed in the {@code quiz.questions} system property, separated
+ * like a class path; a directory entry loads every pack file in it, in name
+ * order. Text packs (see {@link QuestionPack}) are parsed onto the heap. A
+ * single binary pack (see {@link MappedQuestionPack}) is served straight from
+ * its mapping; mixed with other packs it is read onto the heap with them.
+ * Without the property, or if none of the listed packs loads at startup, the
+ * pack bundled on the class path is used.
+ *
+ * {@link #reload()} reads the packs again and swaps the new snapshot in with
+ * a single volatile write, either by hand or from {@link #watch()}. Readers
+ * never lock: {@link #current()} is a volatile read. A reload that fails
+ * leaves the current snapshot in place. QuizApp starts watching when
+ * {@code quiz.questions.watch} is true.
+ */
 public class QuestionBank {
 
+    public static final String PACKS_PROPERTY = "quiz.questions";
+    public static final String WATCH_PROPERTY = "quiz.questions.watch";
+    public static final String BUILT_IN_PACK = "/questions/climate.jsonl";
 
-    private static final List<Questions> ALL_QUESTIONS = new ArrayList<>();
+    // Serializes reloads and watcher changes; readers never take it
+    private static final Object RELOAD_LOCK = new Object();
+    private static volatile QuestionSnapshot current;
+    private static List<Path> packs; // guarded by RELOAD_LOCK; empty: the built-in pack
+    private static QuestionPackWatcher watcher; // guarded by RELOAD_LOCK
 
 
     static {
-        loadAllQuestions();
-    }
-
-    private static void loadAllQuestions() {
-        // EASY QUESTIONS
-        ALL_QUESTIONS.add(new MultipleChoiceQuestion(
-                "What is climate change?",
-                new String[]{"Oxygen levels", "Nitrogen shifts", "Long-term weather shifts", "Dioxide levels"},
-                "Long-term weather shifts",
-                Difficulty.EASY));
-
-        ALL_QUESTIONS.add(new MultipleChoiceQuestion(
-                "Which gas is a major greenhouse gas?",
-                new String[]{"Oxygen", "Nitrogen", "Carbon Dioxide", "Argon"},
-                "Carbon Dioxide",
-                Difficulty.EASY));
-
-        ALL_QUESTIONS.add(new MultipleChoiceQuestion(
-                "What does deforestation do?",
-                new String[]{"Decreases CO2", "Increases CO2", "Stabilizes climate", "Cools Earth"},
-                "Increases CO2",
-                Difficulty.EASY));
-
-        ALL_QUESTIONS.add(new MultipleChoiceQuestion(
-                "Which is the most important day young people can take action on climate?",
-                new String[]{"Earth Day", "World Environment Day", "Every day", "Cleanup Day"},
-                "Every day",
-                Difficulty.EASY));
-
-        ALL_QUESTIONS.add(new TrueFalseQuestion(
-                "Climate change is directly associated with greenhouse gases.",
-                "True",
-                Difficulty.EASY));
-
-        ALL_QUESTIONS.add(new TrueFalseQuestion(
-                "Only industry should be concerned about climate change.",
-                "False",
-                Difficulty.EASY));
-
-        ALL_QUESTIONS.add(new TrueFalseQuestion(
-                "Deforestation contributes to global warming.",
-                "True",
-                Difficulty.EASY));
-
-        ALL_QUESTIONS.add(new TrueFalseQuestion(
-                "More greenhouse gases = lower temperatures.",
-                "False",
-                Difficulty.EASY));
-
-        // HARD QUESTIONS
-        ALL_QUESTIONS.add(new MultipleChoiceQuestion(
-                "Mainly, Ozonosphere is depleted by:",
-                new String[]{"CFCs", "Excess CO2", "Ozone", "Excess CO"},
-                "CFCs",
-                Difficulty.HARD));
-
-        ALL_QUESTIONS.add(new MultipleChoiceQuestion(
-                "This process removes carbon dioxide from the atmosphere:",
-                new String[]{"Lightning", "Deforestation", "Burning fossil fuels", "Photosynthesis"},
-                "Photosynthesis",
-                Difficulty.HARD));
-
-        ALL_QUESTIONS.add(new MultipleChoiceQuestion(
-                "Which is NOT a major greenhouse gas?",
-                new String[]{"Water vapour", "Nitrogen", "Methane", "Carbon dioxide"},
-                "Nitrogen",
-                Difficulty.HARD));
-
-        ALL_QUESTIONS.add(new MultipleChoiceQuestion(
-                "Which sector contributes most to global emissions?",
-                new String[]{"Agriculture", "Transport", "Forestry", "Energy supply"},
-                "Energy supply",
-                Difficulty.HARD));
-
-        ALL_QUESTIONS.add(new TrueFalseQuestion(
-                "The oceans absorb about 50% of the excess heat in the climate system.",
-                "False", // Corrected fact
-                Difficulty.HARD));
-
-        ALL_QUESTIONS.add(new TrueFalseQuestion(
-                "Transportation is the largest contributor to global greenhouse gas.",
-                "False",
-                Difficulty.HARD));
-
-        ALL_QUESTIONS.add(new TrueFalseQuestion(
-                "Ozone layer depletion is mainly caused by Chlorofluorocarbons.",
-                "True",
-                Difficulty.HARD));
-
-        ALL_QUESTIONS.add(new TrueFalseQuestion(
-                "Climate change can increase the burden of vector-borne and water-borne diseases by lengthening their transmission season and altering their geographic range.",
-                "True",
-                Difficulty.HARD));
+        packs = configuredPacks();
+        current = loadAllQuestions(packs, 1, false);
+    }
+
+    private static List<Path> configuredPacks() {
+        List<Path> entries = new ArrayList<>();
+        String configured = System.getProperty(PACKS_PROPERTY);
+        if (configured != null && !configured.isBlank()) {
+            for (String entry : configured.split(File.pathSeparator)) {
+                if (!entry.isBlank()) {
+                    entries.add(Path.of(entry.trim()));
+                }
+            }
+        }
+        return List.copyOf(entries);
+    }
+
+    // strict: any pack that fails to load fails the whole load, instead of being skipped
+    private static QuestionSnapshot loadAllQuestions(List<Path> entries, long version, boolean strict) {
+        long start = System.nanoTime();
+        List<QuestionPack> textPacks = new ArrayList<>();
+        List<MappedQuestionPack> mapped = new ArrayList<>();
+        for (Path entry : entries) {
+            try {
+                for (Path file : packFiles(entry)) {
+                    if (isMappedPack(file)) {
+                        mapped.add(MappedQuestionPack.open(file));
+                    } else {
+                        textPacks.add(QuestionPack.load(file));
+                    }
+                }
+            } catch (IOException e) {
+                if (strict) {
+                    throw new UncheckedIOException("Failed to load question pack " + entry + ": " + e.getMessage(), e);
+                }
+                System.err.println("Failed to load question pack " + entry + ": " + e.getMessage());
+            } catch (RuntimeException e) {
+                if (strict) {
+                    throw e;
+                }
+                System.err.println("Failed to load question pack " + entry + ": " + e.getMessage());
+            }
+        }
+        if (textPacks.isEmpty() && mapped.isEmpty()) {
+            if (strict && !entries.isEmpty()) {
+                throw new IllegalStateException("No question packs found in " + entries);
+            }
+            textPacks.add(loadBuiltInPack());
+        }
+        if (textPacks.isEmpty() && mapped.size() == 1) {
+            MappedQuestionPack pack = mapped.get(0);
+            System.out.printf("Mapped %d questions from %s in %.1f ms (version %d)%n", pack.size(), pack.getFile(),
+                    (System.nanoTime() - start) / 1_000_000.0, version);
+            return new QuestionSnapshot(version, pack, List.of(pack.getFile().toString()));
+        }
+
+        List<Questions> all = new ArrayList<>();
+        List<String> sources = new ArrayList<>();
+        for (QuestionPack pack : textPacks) {
+            all.addAll(pack.getQuestions());
+            sources.add(pack.getSource());
+            System.out.printf("  %s: %d questions, %d rejected, %.1f ms%n", pack.getSource(),
+                    pack.getQuestions().size(), pack.getRejected(), pack.getElapsedMillis());
+        }
+        for (MappedQuestionPack pack : mapped) {
+            all.addAll(pack.all());
+            sources.add(pack.getFile().toString());
+            System.out.printf("  %s: %d questions, read onto the heap to merge%n", pack.getFile(), pack.size());
+        }
+        if (all.isEmpty() && strict) {
+            throw new IllegalStateException("Question packs " + entries + " hold no questions");
+        }
+        System.out.printf("Loaded %d questions from %d pack(s) in %.1f ms (version %d)%n", all.size(), sources.size(),
+                (System.nanoTime() - start) / 1_000_000.0, version);
+        return new QuestionSnapshot(version, QuestionIndex.of(all), sources);
+    }
+
+    // A pack file as is, or the pack files directly inside a directory in name order
+    static List<Path> packFiles(Path entry) throws IOException {
+        if (!Files.isDirectory(entry)) {
+            return List.of(entry);
+        }
+        try (Stream<Path> files = Files.list(entry)) {
+            return files.filter(file -> Files.isRegularFile(file) && isPackFile(file)).sorted().toList();
+        }
+    }
+
+    static boolean isPackFile(Path file) {
+        if (isMappedPack(file)) {
+            return true;
+        }
+        try {
+            QuestionPack.Format.of(file);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    static boolean isMappedPack(Path file) {
+        return file.getFileName().toString().endsWith(MappedQuestionPack.EXTENSION);
+    }
+
+    public static QuestionPack loadBuiltInPack() {
+        InputStream stream = QuestionBank.class.getResourceAsStream(BUILT_IN_PACK);
+        if (stream == null) {
+            throw new IllegalStateException("Built-in question pack " + BUILT_IN_PACK + " is missing from the class path");
+        }
+        try {
+            return QuestionPack.load(stream, QuestionPack.Format.JSON_LINES, BUILT_IN_PACK);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read built-in question pack: " + e.getMessage(), e);
+        }
+    }
+
+    // RELOADING
+    /**
+     * Reads the packs again and publishes them as the next version. Quizzes
+     * already running keep the snapshot they started with.
+     * @return The snapshot now current.
+     * @throws UncheckedIOException or IllegalStateException if a pack fails
+     *         to load, in which case the current snapshot stays published.
+     */
+    public static QuestionSnapshot reload() {
+        synchronized (RELOAD_LOCK) {
+            QuestionSnapshot next = loadAllQuestions(packs, current.getVersion() + 1, true);
+            current = next;
+            return next;
+        }
+    }
+
+    /**
+     * Switches to a different list of packs (empty for the built-in pack)
+     * and reloads. A running watcher is moved to the new packs.
+     * @return The snapshot now current.
+     */
+    public static QuestionSnapshot reload(List<Path> entries) {
+        if (entries == null) {
+            throw new IllegalArgumentException("Pack list cannot be null");
+        }
+        QuestionPackWatcher replaced;
+        QuestionSnapshot next;
+        synchronized (RELOAD_LOCK) {
+            next = loadAllQuestions(List.copyOf(entries), current.getVersion() + 1, true);
+            packs = List.copyOf(entries);
+            current = next;
+            replaced = watcher;
+            watcher = null;
+            if (replaced != null && !packs.isEmpty()) {
+                watch(replaced.getDebounceMillis());
+            }
+        }
+        // Outside the lock: the old watcher's thread may be waiting for it to reload
+        if (replaced != null) {
+            replaced.close();
+        }
+        return next;
+    }
+
+    // WATCHING
+    public static void watch() {
+        watch(QuestionPackWatcher.DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    // Reloads whenever a configured pack changes; does nothing if already watching
+    public static void watch(long debounceMillis) {
+        synchronized (RELOAD_LOCK) {
+            if (watcher != null) {
+                return;
+            }
+            if (packs.isEmpty()) {
+                throw new IllegalStateException("No question packs configured to watch; set -D" + PACKS_PROPERTY);
+            }
+            watcher = new QuestionPackWatcher(packs, QuestionBank::reload, debounceMillis);
+            System.out.println("Watching question packs " + packs);
+        }
+    }
+
+    public static void stopWatching() {
+        QuestionPackWatcher running;
+        synchronized (RELOAD_LOCK) {
+            running = watcher;
+            watcher = null;
+        }
+        if (running != null) {
+            running.close();
+        }
+    }
+
+    public static boolean isWatching() {
+        synchronized (RELOAD_LOCK) {
+            return watcher != null;
+        }
+    }
+
+    // LOOKUPS
+    /**
+     * Provides the snapshot new quizzes should use. Lock-free.
+     * @return The latest published snapshot.
+     */
+    public static QuestionSnapshot current() {
+        return current;
     }
 
     /**
      * Provides an unmodifiable list of all loaded questions.
-     * @return A list of all questions.
+     * @return A list of all questions in the current snapshot.
      */
     public static List<Questions> getAllQuestions() {
-        // Return a copy to prevent external modification of the bank
-        return new ArrayList<>(ALL_QUESTIONS);
+        // Shared read-only view; nothing is copied
+        return current.all();
+    }
+
+    /**
+     * Provides the loaded questions grouped by difficulty and type.
+     * @return The current snapshot.
+     */
+    public static QuestionSource getIndex() {
+        return current;
     }
-}
\ No newline at end of file
+}
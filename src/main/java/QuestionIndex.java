@@ -0,0 +1,114 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Questions grouped by difficulty and then by type, built once.
+ *
+ * Every list handed out is an unmodifiable view built at construction, so
+ * any number of quiz sessions can share it and a lookup allocates nothing.
+ * Within a group, questions keep the order they were given in.
+ */
+public class QuestionIndex implements QuestionSource {
+
+    private static final QuestionIndex EMPTY = new QuestionIndex(List.of());
+
+    private final List<Questions> all;
+    private final Map<Difficulty, List<Questions>> byDifficulty = new EnumMap<>(Difficulty.class);
+    private final Map<Difficulty, Map<QuestionType, List<Questions>>> byDifficultyAndType = new EnumMap<>(Difficulty.class);
+
+    private QuestionIndex(List<Questions> questions) {
+        Map<Difficulty, Map<QuestionType, List<Questions>>> groups = new EnumMap<>(Difficulty.class);
+        Map<Difficulty, List<Questions>> levels = new EnumMap<>(Difficulty.class);
+        List<Questions> copy = new ArrayList<>(questions.size());
+        for (Difficulty difficulty : Difficulty.values()) {
+            levels.put(difficulty, new ArrayList<>());
+            Map<QuestionType, List<Questions>> types = new EnumMap<>(QuestionType.class);
+            for (QuestionType type : QuestionType.values()) {
+                types.put(type, new ArrayList<>());
+            }
+            groups.put(difficulty, types);
+        }
+        for (Questions question : questions) {
+            if (question == null) {
+                throw new IllegalArgumentException("Question cannot be null");
+            }
+            copy.add(question);
+            levels.get(question.getDifficultyLevel()).add(question);
+            groups.get(question.getDifficultyLevel()).get(QuestionType.of(question)).add(question);
+        }
+
+        this.all = Collections.unmodifiableList(copy);
+        for (Difficulty difficulty : Difficulty.values()) {
+            byDifficulty.put(difficulty, Collections.unmodifiableList(levels.get(difficulty)));
+            Map<QuestionType, List<Questions>> types = new EnumMap<>(QuestionType.class);
+            for (Map.Entry<QuestionType, List<Questions>> e : groups.get(difficulty).entrySet()) {
+                types.put(e.getKey(), Collections.unmodifiableList(e.getValue()));
+            }
+            byDifficultyAndType.put(difficulty, Collections.unmodifiableMap(types));
+        }
+    }
+
+    // Copies the list, so later changes to it do not show through the index
+    public static QuestionIndex of(List<? extends Questions> questions) {
+        if (questions == null) {
+            throw new IllegalArgumentException("Questions cannot be null");
+        }
+        return new QuestionIndex(new ArrayList<>(questions));
+    }
+
+    public static QuestionIndex empty() {
+        return EMPTY;
+    }
+
+    // LOOKUPS
+    @Override
+    public List<Questions> all() {
+        return all;
+    }
+
+    @Override
+    public List<Questions> get(Difficulty difficulty) {
+        if (difficulty == null) {
+            throw new IllegalArgumentException("Difficulty cannot be null");
+        }
+        return byDifficulty.get(difficulty);
+    }
+
+    @Override
+    public List<Questions> get(Difficulty difficulty, QuestionType type) {
+        if (difficulty == null || type == null) {
+            throw new IllegalArgumentException("Difficulty and type cannot be null");
+        }
+        return byDifficultyAndType.get(difficulty).get(type);
+    }
+
+    // Per type, for one difficulty
+    public Map<QuestionType, List<Questions>> byType(Difficulty difficulty) {
+        if (difficulty == null) {
+            throw new IllegalArgumentException("Difficulty cannot be null");
+        }
+        return byDifficultyAndType.get(difficulty);
+    }
+
+    @Override
+    public int size() {
+        return all.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return all.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("QuestionIndex[");
+        for (Difficulty difficulty : Difficulty.values()) {
+            builder.append(difficulty).append('=').append(byDifficulty.get(difficulty).size()).append(' ');
+        }
+        return builder.append("total=").append(all.size()).append(']').toString();
+    }
+}
@@ -0,0 +1,710 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.StreamSupport;
+
+/**
+ * Questions read from a pack file, one question per line.
+ *
+ * Two formats are understood, chosen by file extension:
+ * <pre>
+ *   .jsonl / .ndjson  {"type": "multiple_choice", "difficulty": "EASY", "question": "...",
+ *                      "options": ["...", "..."], "answer": "..."}
+ *                     {"type": "true_false", "difficulty": "HARD", "question": "...", "answer": "True"}
+ *   .csv              type,difficulty,question,answer[,option...]
+ * </pre>
+ * CSV fields holding a comma or a quote are wrapped in double quotes, with a
+ * quote inside written twice. Blank lines, lines starting with '#' and a
+ * leading CSV header starting with "type," are skipped; malformed lines are
+ * skipped and counted.
+ *
+ * The file is read one batch of {@link #BATCH_LINES} lines at a time. A pack
+ * that fits in one batch is parsed on the calling thread; a larger one is
+ * parsed and validated on a pool of threads while the next batches are read,
+ * with at most two batches per thread in flight, so memory beyond the
+ * questions themselves stays bounded. Questions keep the order of the file.
+ */
+public final class QuestionPack {
+
+    public enum Format {
+        JSON_LINES, CSV;
+
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+                return JSON_LINES;
+            }
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            throw new IllegalArgumentException("Not a question pack (expected .jsonl, .ndjson or .csv): " + file);
+        }
+    }
+
+    public static final int BATCH_LINES = 4096;
+    public static final String CSV_HEADER = "type,difficulty,question,answer,options";
+    private static final int MAX_LOGGED_REJECTS = 10;
+    private static final int MAX_OPTIONS = 26; // answered by letter, A to Z
+
+    private final String source;
+    private final Format format;
+    private final List<Questions> questions;
+    private final long lines;
+    private final long rejected;
+    private final int batches;
+    private final boolean parallel;
+    private final long elapsedNanos;
+
+    private QuestionPack(String source, Format format, List<Questions> questions, long lines, long rejected,
+                         int batches, boolean parallel, long elapsedNanos) {
+        this.source = source;
+        this.format = format;
+        this.questions = Collections.unmodifiableList(questions);
+        this.lines = lines;
+        this.rejected = rejected;
+        this.batches = batches;
+        this.parallel = parallel;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // LOADING
+    public static QuestionPack load(Path file) throws IOException {
+        return load(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static QuestionPack load(Path file, int threads) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Pack file cannot be null");
+        }
+        Format format = Format.of(file);
+        try (BufferedReader in = new BufferedReader(Files.newBufferedReader(file, StandardCharsets.UTF_8), 1 << 16)) {
+            return read(in, format, file.toString(), threads);
+        }
+    }
+
+    // For packs on the classpath; the stream is closed
+    public static QuestionPack load(InputStream stream, Format format, String source) throws IOException {
+        if (stream == null) {
+            throw new IllegalArgumentException("Pack stream cannot be null");
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8), 1 << 16)) {
+            return read(in, format, source, Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    public static QuestionPack read(BufferedReader in, Format format, String source, int threads) throws IOException {
+        if (in == null || format == null) {
+            throw new IllegalArgumentException("Reader and format cannot be null");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+        long start = System.nanoTime();
+        Merger merged = new Merger(source);
+        Batch batch = Batch.read(in, 0);
+        boolean parallel = !batch.last && threads > 1;
+
+        if (!parallel) {
+            while (true) {
+                merged.add(parse(batch, format));
+                if (batch.last) {
+                    break;
+                }
+                batch = Batch.read(in, batch.nextLine());
+            }
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "question-pack-parse");
+                t.setDaemon(true);
+                return t;
+            });
+            ArrayDeque<Future<Parsed>> inFlight = new ArrayDeque<>();
+            try {
+                while (true) {
+                    Batch submitted = batch;
+                    inFlight.add(pool.submit(() -> parse(submitted, format)));
+                    if (inFlight.size() >= threads * 2) {
+                        merged.add(await(inFlight.poll(), source));
+                    }
+                    if (submitted.last) {
+                        break;
+                    }
+                    batch = Batch.read(in, submitted.nextLine());
+                }
+                while (!inFlight.isEmpty()) {
+                    merged.add(await(inFlight.poll(), source));
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        return new QuestionPack(source, format, merged.questions, batch.nextLine(), merged.rejected,
+                merged.batches, parallel, System.nanoTime() - start);
+    }
+
+    private static Parsed await(Future<Parsed> future, String source) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading question pack " + source, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to parse question pack " + source + ": " + e.getCause().getMessage(),
+                    e.getCause());
+        }
+    }
+
+    // One run of consecutive lines; firstLine is the 0-based number of lines[0]
+    private static final class Batch {
+        final String[] lines;
+        final int count;
+        final long firstLine;
+        final boolean last;
+
+        private Batch(String[] lines, int count, long firstLine, boolean last) {
+            this.lines = lines;
+            this.count = count;
+            this.firstLine = firstLine;
+            this.last = last;
+        }
+
+        static Batch read(BufferedReader in, long firstLine) throws IOException {
+            String[] lines = new String[BATCH_LINES];
+            int count = 0;
+            String line = null;
+            while (count < BATCH_LINES && (line = in.readLine()) != null) {
+                lines[count++] = line;
+            }
+            // A full batch may have been the end of the file; the next read finds an empty batch then
+            return new Batch(lines, count, firstLine, line == null);
+        }
+
+        long nextLine() {
+            return firstLine + count;
+        }
+    }
+
+    private static final class Parsed {
+        final List<Questions> questions = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        long rejected;
+    }
+
+    private static Parsed parse(Batch batch, Format format) {
+        Parsed parsed = new Parsed();
+        for (int i = 0; i < batch.count; i++) {
+            String line = batch.lines[i];
+            long lineNumber = batch.firstLine + i + 1;
+            if (isSkipped(line, lineNumber, format)) {
+                continue;
+            }
+            try {
+                parsed.questions.add(parseLine(line, format));
+            } catch (IllegalArgumentException e) {
+                parsed.rejected++;
+                if (parsed.errors.size() < MAX_LOGGED_REJECTS) {
+                    parsed.errors.add("Skipping line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+        return parsed;
+    }
+
+    // Blank lines, comments and a CSV header
+    private static boolean isSkipped(String line, long lineNumber, Format format) {
+        return line.isBlank() || line.startsWith("#")
+                || (lineNumber == 1 && format == Format.CSV && line.startsWith("type,"));
+    }
+
+    // Collects batches in file order and logs the first rejects
+    private static final class Merger {
+        final String source;
+        final List<Questions> questions = new ArrayList<>();
+        long rejected;
+        int batches;
+        private int logged;
+
+        Merger(String source) {
+            this.source = source;
+        }
+
+        void add(Parsed parsed) {
+            questions.addAll(parsed.questions);
+            for (String error : parsed.errors) {
+                if (logged++ < MAX_LOGGED_REJECTS) {
+                    System.err.println(source + ": " + error);
+                }
+            }
+            rejected += parsed.rejected;
+            batches++;
+        }
+    }
+
+    // STREAMING
+    /**
+     * Samples k questions of one difficulty (null for any) from a pack in a
+     * single pass, holding only k of them at a time, for packs too large to
+     * load. Malformed lines are skipped, as when loading.
+     */
+    public static List<Questions> sample(Path file, Difficulty difficulty, int k, Random random) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Pack file cannot be null");
+        }
+        Format format = Format.of(file);
+        try (BufferedReader in = new BufferedReader(Files.newBufferedReader(file, StandardCharsets.UTF_8), 1 << 16)) {
+            Iterator<Questions> questions = new Reader(in, format, file.toString());
+            if (difficulty != null) {
+                questions = StreamSupport.stream(Spliterators.spliteratorUnknownSize(questions, Spliterator.ORDERED), false)
+                        .filter(q -> q.getDifficultyLevel() == difficulty)
+                        .iterator();
+            }
+            return QuestionSampler.reservoir(questions, k, random);
+        }
+    }
+
+    /**
+     * Lazily parses questions from a reader, one line at a time, on the
+     * calling thread. Skips what {@link #read} skips.
+     */
+    public static class Reader implements Iterator<Questions> {
+        private final BufferedReader in;
+        private final Format format;
+        private final String source;
+        private Questions next;
+        private long lineNumber;
+        private long rejected;
+
+        public Reader(BufferedReader in, Format format, String source) {
+            if (in == null || format == null) {
+                throw new IllegalArgumentException("Reader and format cannot be null");
+            }
+            this.in = in;
+            this.format = format;
+            this.source = source;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                String line;
+                try {
+                    line = in.readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read question line " + (lineNumber + 1), e);
+                }
+                if (line == null) {
+                    return false;
+                }
+                lineNumber++;
+                if (isSkipped(line, lineNumber, format)) {
+                    continue;
+                }
+                try {
+                    next = parseLine(line, format);
+                } catch (IllegalArgumentException e) {
+                    if (rejected++ < MAX_LOGGED_REJECTS) {
+                        System.err.println(source + ": Skipping line " + lineNumber + ": " + e.getMessage());
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Questions next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Questions question = next;
+            next = null;
+            return question;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+    }
+
+    // PARSING
+    public static Questions parseLine(String line, Format format) {
+        if (line == null || format == null) {
+            throw new IllegalArgumentException("Line and format cannot be null");
+        }
+        return format == Format.CSV ? parseCsv(line) : parseJson(line);
+    }
+
+    private static Questions parseJson(String line) {
+        JsonLine json = new JsonLine(line);
+        String type = null;
+        String difficulty = null;
+        String question = null;
+        String answer = null;
+        List<String> options = null;
+
+        json.expect('{');
+        if (!json.consume('}')) {
+            do {
+                String key = json.string();
+                json.expect(':');
+                switch (key) {
+                    case "type": type = json.string(); break;
+                    case "difficulty": difficulty = json.string(); break;
+                    case "question": question = json.string(); break;
+                    case "answer": answer = json.string(); break;
+                    case "options": options = json.stringArray(); break;
+                    default: json.skipValue(); break;
+                }
+            } while (json.consume(','));
+            json.expect('}');
+        }
+        json.end();
+        return build(type, difficulty, question, answer, options);
+    }
+
+    private static Questions parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() < 4) {
+            throw new IllegalArgumentException("Expected " + CSV_HEADER + " but got " + fields.size() + " fields");
+        }
+        List<String> options = fields.size() > 4 ? fields.subList(4, fields.size()) : null;
+        return build(fields.get(0), fields.get(1), fields.get(2), fields.get(3), options);
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(8);
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        while (true) {
+            field.setLength(0);
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= line.length()) {
+                        throw new IllegalArgumentException("Unterminated quoted field");
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < line.length() && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+                if (i < line.length() && line.charAt(i) != ',') {
+                    throw new IllegalArgumentException("Unexpected text after quoted field at column " + (i + 1));
+                }
+            } else {
+                int comma = line.indexOf(',', i);
+                int end = comma < 0 ? line.length() : comma;
+                field.append(line, i, end);
+                i = end;
+            }
+            fields.add(field.toString());
+            if (i >= line.length()) {
+                return fields;
+            }
+            i++; // the comma
+        }
+    }
+
+    // VALIDATION
+    private static Questions build(String type, String difficulty, String question, String answer, List<String> options) {
+        if (type == null || difficulty == null) {
+            throw new IllegalArgumentException("Type and difficulty are required");
+        }
+        QuestionType questionType;
+        Difficulty level;
+        try {
+            questionType = QuestionType.valueOf(type.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown question type: " + type);
+        }
+        try {
+            level = Difficulty.valueOf(difficulty.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown difficulty: " + difficulty);
+        }
+        if (answer == null) {
+            throw new IllegalArgumentException("Correct answer cannot be null or empty");
+        }
+
+        if (questionType == QuestionType.TRUE_FALSE) {
+            if (options != null && !options.isEmpty()) {
+                throw new IllegalArgumentException("True/false question cannot have options");
+            }
+            String value = answer.trim();
+            if (value.equalsIgnoreCase("true")) {
+                return new TrueFalseQuestion(question, "True", level);
+            }
+            if (value.equalsIgnoreCase("false")) {
+                return new TrueFalseQuestion(question, "False", level);
+            }
+            throw new IllegalArgumentException("True/false answer must be True or False but got: " + answer);
+        }
+
+        if (options == null || options.size() < 2) {
+            throw new IllegalArgumentException("Multiple choice question needs at least two options");
+        }
+        if (options.size() > MAX_OPTIONS) {
+            throw new IllegalArgumentException("Multiple choice question cannot have more than " + MAX_OPTIONS + " options");
+        }
+        String[] trimmed = new String[options.size()];
+        boolean answerListed = false;
+        for (int i = 0; i < trimmed.length; i++) {
+            String option = options.get(i);
+            if (option == null || option.isBlank()) {
+                throw new IllegalArgumentException("Option " + (char) ('A' + i) + " cannot be empty");
+            }
+            trimmed[i] = option.trim();
+            answerListed |= trimmed[i].equalsIgnoreCase(answer.trim());
+        }
+        if (!answerListed) {
+            throw new IllegalArgumentException("Answer is not one of the options: " + answer);
+        }
+        return new MultipleChoiceQuestion(question, trimmed, answer, level);
+    }
+
+    // FORMATTING
+    // Inverse of parseLine, for writing packs
+    public static String formatLine(Questions question, Format format) {
+        if (question == null || format == null) {
+            throw new IllegalArgumentException("Question and format cannot be null");
+        }
+        QuestionType type = QuestionType.of(question);
+        String[] options = question instanceof MultipleChoiceQuestion
+                ? ((MultipleChoiceQuestion) question).getOptions() : new String[0];
+        StringBuilder builder = new StringBuilder(128);
+        if (format == Format.CSV) {
+            builder.append(type.name().toLowerCase(Locale.ROOT)).append(',')
+                    .append(question.getDifficultyLevel().name()).append(',');
+            appendCsv(builder, question.getText()).append(',');
+            appendCsv(builder, question.getCorrectAnswer());
+            for (String option : options) {
+                appendCsv(builder.append(','), option);
+            }
+            return builder.toString();
+        }
+        builder.append("{\"type\":\"").append(type.name().toLowerCase(Locale.ROOT))
+                .append("\",\"difficulty\":\"").append(question.getDifficultyLevel().name()).append("\",\"question\":");
+        appendJson(builder, question.getText());
+        if (options.length > 0) {
+            builder.append(",\"options\":[");
+            for (int i = 0; i < options.length; i++) {
+                appendJson(i == 0 ? builder : builder.append(','), options[i]);
+            }
+            builder.append(']');
+        }
+        builder.append(",\"answer\":");
+        return appendJson(builder, question.getCorrectAnswer()).append('}').toString();
+    }
+
+    private static StringBuilder appendCsv(StringBuilder builder, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return builder.append(value);
+        }
+        return builder.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static StringBuilder appendJson(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': builder.append("\\\""); break;
+                case '\\': builder.append("\\\\"); break;
+                case '\n': builder.append("\\n"); break;
+                case '\r': builder.append("\\r"); break;
+                case '\t': builder.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.append('"');
+    }
+
+    /**
+     * Just enough JSON for one flat object per line: string values, arrays of
+     * strings, and numbers, booleans or null under keys that are ignored.
+     */
+    private static final class JsonLine {
+        private final String text;
+        private int pos;
+
+        JsonLine(String text) {
+            this.text = text;
+        }
+
+        void expect(char c) {
+            if (!consume(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        boolean consume(char c) {
+            skipWhitespace();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void end() {
+            skipWhitespace();
+            if (pos != text.length()) {
+                throw error("Unexpected text after object");
+            }
+        }
+
+        String string() {
+            skipWhitespace();
+            if (pos >= text.length() || text.charAt(pos) != '"') {
+                throw error("Expected a string");
+            }
+            pos++;
+            StringBuilder value = null; // only allocated when the string has escapes
+            int runStart = pos;
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == '"') {
+                    String result = value == null ? text.substring(runStart, pos)
+                            : value.append(text, runStart, pos).toString();
+                    pos++;
+                    return result;
+                }
+                if (c == '\\') {
+                    if (value == null) {
+                        value = new StringBuilder();
+                    }
+                    value.append(text, runStart, pos);
+                    value.append(escape());
+                    runStart = pos;
+                } else {
+                    pos++;
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        // pos is on the backslash; leaves it after the escape
+        private char escape() {
+            if (pos + 1 >= text.length()) {
+                throw error("Unterminated escape");
+            }
+            char c = text.charAt(pos + 1);
+            pos += 2;
+            switch (c) {
+                case '"': case '\\': case '/': return c;
+                case 'b': return '\b';
+                case 'f': return '\f';
+                case 'n': return '\n';
+                case 'r': return '\r';
+                case 't': return '\t';
+                case 'u':
+                    if (pos + 4 > text.length()) {
+                        throw error("Truncated \\u escape");
+                    }
+                    try {
+                        char decoded = (char) Integer.parseInt(text.substring(pos, pos + 4), 16);
+                        pos += 4;
+                        return decoded;
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid \\u escape");
+                    }
+                default:
+                    throw error("Invalid escape \\" + c);
+            }
+        }
+
+        List<String> stringArray() {
+            expect('[');
+            List<String> values = new ArrayList<>(4);
+            if (consume(']')) {
+                return values;
+            }
+            do {
+                values.add(string());
+            } while (consume(','));
+            expect(']');
+            return values;
+        }
+
+        void skipValue() {
+            skipWhitespace();
+            if (pos >= text.length()) {
+                throw error("Expected a value");
+            }
+            char c = text.charAt(pos);
+            if (c == '"') {
+                string();
+            } else if (c == '[') {
+                stringArray();
+            } else {
+                int start = pos;
+                while (pos < text.length() && ",}] \t".indexOf(text.charAt(pos)) < 0) {
+                    pos++;
+                }
+                if (pos == start) {
+                    throw error("Expected a value");
+                }
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at column " + (pos + 1));
+        }
+    }
+
+    // GETTERS
+    public String getSource() { return source; }
+    public Format getFormat() { return format; }
+    public List<Questions> getQuestions() { return questions; }
+    public long getLines() { return lines; }
+    public long getRejected() { return rejected; }
+    public int getBatches() { return batches; }
+    public boolean isParallel() { return parallel; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QuestionPack[%s: questions=%d, rejected=%d, lines=%d, batches=%d, parallel=%b, elapsedMs=%.1f]",
+                source, questions.size(), rejected, lines, batches, parallel, getElapsedMillis());
+    }
+}
@@ -0,0 +1,61 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command-line compiler from text question packs to a {@link MappedQuestionPack}.
+ *
+ *   java QuestionPackCompiler questions.qpk                  the built-in questions
+ *   java QuestionPackCompiler questions.qpk a.jsonl b.csv    text packs, in order
+ *
+ * Inputs may also be directories of packs or other .qpk files. Lines a text
+ * pack rejects are reported and left out, as when the pack is loaded directly.
+ */
+public class QuestionPackCompiler {
+
+    public static void main(String[] args) {
+        if (args.length < 1 || !args[0].endsWith(MappedQuestionPack.EXTENSION)) {
+            System.err.println("Usage: QuestionPackCompiler <output" + MappedQuestionPack.EXTENSION + "> [pack ...]");
+            System.exit(2);
+        }
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            inputs.add(Path.of(args[i]));
+        }
+        long start = System.nanoTime();
+        List<Questions> questions = readAll(inputs);
+        try {
+            long bytes = MappedQuestionPack.write(questions, Path.of(args[0]));
+            System.out.printf("Compiled %,d questions into %s (%,d bytes) in %.1f ms%n", questions.size(), args[0],
+                    bytes, (System.nanoTime() - start) / 1_000_000.0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + args[0] + ": " + e.getMessage(), e);
+        }
+    }
+
+    // The questions of every input in order; no inputs means the built-in pack
+    public static List<Questions> readAll(List<Path> inputs) {
+        if (inputs.isEmpty()) {
+            return new ArrayList<>(QuestionBank.loadBuiltInPack().getQuestions());
+        }
+        List<Questions> questions = new ArrayList<>();
+        for (Path input : inputs) {
+            try {
+                for (Path file : QuestionBank.packFiles(input)) {
+                    if (QuestionBank.isMappedPack(file)) {
+                        questions.addAll(MappedQuestionPack.open(file).all());
+                    } else {
+                        QuestionPack pack = QuestionPack.load(file);
+                        System.out.println(pack);
+                        questions.addAll(pack.getQuestions());
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + input + ": " + e.getMessage(), e);
+            }
+        }
+        return questions;
+    }
+}
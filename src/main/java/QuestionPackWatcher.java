@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watches question pack files and directories and runs a callback when one
+ * of them changes.
+ *
+ * A file entry is watched through its parent directory; a directory entry
+ * reacts to any pack file in it being created, changed or deleted. Changes
+ * are debounced: the callback runs once the packs have been quiet for the
+ * debounce interval, so a pack written in several steps triggers one
+ * reload. Packs should be replaced by moving a complete file into place, as
+ * {@link MappedQuestionPack#write} does; a file rewritten in place can be
+ * read half-written, and a binary pack truncated under a live mapping
+ * breaks the quizzes still reading it.
+ */
+public class QuestionPackWatcher implements AutoCloseable {
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 250;
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Set<Path> watchedDirectories = new HashSet<>();
+    private final Set<Path> watchedFiles = new HashSet<>();
+    private final Runnable onChange;
+    private final long debounceMillis;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    // METRICS
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong callbacks = new AtomicLong();
+
+    public QuestionPackWatcher(List<Path> entries, Runnable onChange, long debounceMillis) {
+        if (entries == null || entries.isEmpty() || onChange == null) {
+            throw new IllegalArgumentException("Entries and callback cannot be null or empty");
+        }
+        if (debounceMillis < 0) {
+            throw new IllegalArgumentException("Debounce interval cannot be negative");
+        }
+        this.onChange = onChange;
+        this.debounceMillis = debounceMillis;
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            for (Path entry : entries) {
+                Path absolute = entry.toAbsolutePath().normalize();
+                Path directory;
+                if (Files.isDirectory(absolute)) {
+                    watchedDirectories.add(absolute);
+                    directory = absolute;
+                } else {
+                    watchedFiles.add(absolute);
+                    directory = absolute.getParent();
+                }
+                if (!directories.containsValue(directory)) {
+                    directories.put(directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), directory);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to watch question packs: " + e.getMessage(), e);
+        }
+        this.thread = new Thread(this::run, "question-pack-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                boolean changed = drain(watchService.take());
+                // Wait for the writes to settle before reloading
+                WatchKey next;
+                while ((next = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(next);
+                }
+                if (changed && !closed) {
+                    callbacks.incrementAndGet();
+                    try {
+                        onChange.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Question pack reload failed: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    // True if any event in the key touches a watched pack
+    private boolean drain(WatchKey key) {
+        Path directory = directories.get(key);
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            events.incrementAndGet();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+            } else if (directory != null) {
+                Path file = directory.resolve((Path) event.context());
+                changed |= watchedFiles.contains(file)
+                        || (watchedDirectories.contains(directory) && QuestionBank.isPackFile(file));
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    // SHUTDOWN
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Error closing question pack watcher: " + e.getMessage());
+        }
+        if (Thread.currentThread() == thread) {
+            return; // closed from the callback
+        }
+        try {
+            thread.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // GETTERS
+    public long getDebounceMillis() { return debounceMillis; }
+    public long getEvents() { return events.get(); }
+    public long getCallbacks() { return callbacks.get(); }
+}
@@ -0,0 +1,108 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.RandomAccess;
+
+/**
+ * Uniform random samples of k items, without copying or shuffling the whole
+ * source.
+ *
+ * {@link #sample} runs the first k steps of a Fisher-Yates shuffle over the
+ * positions 0..n-1. When k is small next to n, only the positions a swap has
+ * displaced are kept, in a map, so a draw of ten from a million costs ten
+ * steps and ten entries. Either way the same Random gives the same sample,
+ * so a quiz built from a seed can be rebuilt from it, provided it samples
+ * from the same questions. {@link #reservoir} samples a stream of unknown
+ * length in one pass while holding only k items.
+ */
+public final class QuestionSampler {
+
+    private QuestionSampler() {
+    }
+
+    /**
+     * Picks min(k, n) distinct positions in 0..n-1, each k-subset equally
+     * likely and in random order.
+     */
+    public static int[] sampleIndexes(int n, int k, Random random) {
+        if (n < 0 || k < 0) {
+            throw new IllegalArgumentException("Population and sample size cannot be negative");
+        }
+        if (random == null) {
+            throw new IllegalArgumentException("Random cannot be null");
+        }
+        int count = Math.min(n, k);
+        int[] chosen = new int[count];
+        if (count * 4L >= n) {
+            // Dense: a large share of the positions is drawn anyway
+            int[] positions = new int[n];
+            for (int i = 0; i < n; i++) {
+                positions[i] = i;
+            }
+            for (int i = 0; i < count; i++) {
+                int j = i + random.nextInt(n - i);
+                chosen[i] = positions[j];
+                positions[j] = positions[i];
+            }
+        } else {
+            // Sparse: an absent key holds its own position
+            Map<Integer, Integer> displaced = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                int j = i + random.nextInt(n - i);
+                chosen[i] = displaced.getOrDefault(j, j);
+                displaced.put(j, displaced.getOrDefault(i, i));
+            }
+        }
+        return chosen;
+    }
+
+    // The items at sampleIndexes(source.size(), k, random); reads only those from the source
+    public static <T> List<T> sample(List<? extends T> source, int k, Random random) {
+        if (source == null) {
+            throw new IllegalArgumentException("Source cannot be null");
+        }
+        if (!(source instanceof RandomAccess)) {
+            throw new IllegalArgumentException("Source must support random access; use reservoir() for streams");
+        }
+        int[] chosen = sampleIndexes(source.size(), k, random);
+        List<T> sample = new ArrayList<>(chosen.length);
+        for (int index : chosen) {
+            sample.add(source.get(index));
+        }
+        return Collections.unmodifiableList(sample);
+    }
+
+    /**
+     * Samples min(k, items seen) items from a stream in one pass (Algorithm
+     * R), holding k at a time, and returns them in random order.
+     */
+    public static <T> List<T> reservoir(Iterator<? extends T> items, int k, Random random) {
+        if (items == null || random == null) {
+            throw new IllegalArgumentException("Items and random cannot be null");
+        }
+        if (k < 0) {
+            throw new IllegalArgumentException("Sample size cannot be negative");
+        }
+        List<T> chosen = new ArrayList<>(Math.min(k, 1024));
+        long seen = 0;
+        while (items.hasNext()) {
+            T item = items.next();
+            seen++;
+            if (chosen.size() < k) {
+                chosen.add(item);
+            } else {
+                long slot = random.nextLong(seen);
+                if (slot < k) {
+                    chosen.set((int) slot, item);
+                }
+            }
+        }
+        // The reservoir keeps early items in arrival order
+        Collections.shuffle(chosen, random);
+        return Collections.unmodifiableList(chosen);
+    }
+}
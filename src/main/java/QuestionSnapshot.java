@@ -0,0 +1,66 @@
+import java.util.List;
+
+/**
+ * One published version of the question bank: the questions, where they
+ * came from and when they were loaded. Immutable; a reload publishes a new
+ * snapshot rather than changing this one.
+ *
+ * A quiz keeps the snapshot it started with, so a superseded version stays
+ * reachable only through the quizzes still running on it and is garbage
+ * collected once they are gone.
+ */
+public final class QuestionSnapshot implements QuestionSource {
+
+    private static final QuestionSnapshot EMPTY = new QuestionSnapshot(0, QuestionIndex.empty(), List.of());
+
+    private final long version;
+    private final QuestionSource source;
+    private final List<String> packs;
+    private final long loadedAt;
+
+    public QuestionSnapshot(long version, QuestionSource source, List<String> packs) {
+        if (source == null || packs == null) {
+            throw new IllegalArgumentException("Source and packs cannot be null");
+        }
+        this.version = version;
+        this.source = source;
+        this.packs = List.copyOf(packs);
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    public static QuestionSnapshot empty() {
+        return EMPTY;
+    }
+
+    // LOOKUPS
+    @Override
+    public List<Questions> all() {
+        return source.all();
+    }
+
+    @Override
+    public List<Questions> get(Difficulty difficulty) {
+        return source.get(difficulty);
+    }
+
+    @Override
+    public List<Questions> get(Difficulty difficulty, QuestionType type) {
+        return source.get(difficulty, type);
+    }
+
+    @Override
+    public int size() {
+        return source.size();
+    }
+
+    // GETTERS
+    public long getVersion() { return version; }
+    public QuestionSource getSource() { return source; }
+    public List<String> getPacks() { return packs; }
+    public long getLoadedAt() { return loadedAt; }
+
+    @Override
+    public String toString() {
+        return "QuestionSnapshot[version=" + version + ", questions=" + size() + ", packs=" + packs + "]";
+    }
+}
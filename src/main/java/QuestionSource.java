@@ -0,0 +1,24 @@
+import java.util.List;
+
+/**
+ * Read-only access to a set of questions, grouped by difficulty and type.
+ *
+ * Implementations: {@link QuestionIndex} (questions on the heap) and
+ * {@link MappedQuestionPack} (a memory-mapped binary pack that builds each
+ * question when it is read). Every list returned is unmodifiable and keeps
+ * the order the questions were loaded in.
+ */
+public interface QuestionSource {
+
+    List<Questions> all();
+
+    List<Questions> get(Difficulty difficulty);
+
+    List<Questions> get(Difficulty difficulty, QuestionType type);
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * The kinds of question in the bank, one per {@link Questions} subclass.
+ */
+public enum QuestionType {
+    MULTIPLE_CHOICE,
+    TRUE_FALSE;
+
+    public static QuestionType of(Questions question) {
+        if (question instanceof MultipleChoiceQuestion) {
+            return MULTIPLE_CHOICE;
+        }
+        if (question instanceof TrueFalseQuestion) {
+            return TRUE_FALSE;
+        }
+        throw new IllegalArgumentException("Unknown question type: " + question.getClass().getName());
+    }
+}
@@ -1,7 +1,11 @@
+/**
+ * A question and its answer. Immutable, so one instance can be shared by
+ * every quiz and every version of the question bank that holds it.
+ */
 public abstract class Questions {
-    protected String question;
-    protected String correctAnswer;
-    protected Difficulty difficultyLevel;
+    protected final String question;
+    protected final String correctAnswer;
+    protected final Difficulty difficultyLevel;
 
 
     public Questions(String question, String correctAnswer,Difficulty difficultyLevel) {
@@ -35,28 +39,4 @@ public abstract class Questions {
 
 
     public abstract boolean checkAnswer(String userAnswer);
-
-    public void setQuestionText(String questionText) {
-        if (questionText == null || questionText.trim().isEmpty()) {
-            throw new IllegalArgumentException("Question text cannot be null or empty");
-        }
-        this.question = questionText.trim();
-    }
-
-    public void setCorrectAnswer(String correctAnswer) {
-        if (correctAnswer == null || correctAnswer.trim().isEmpty()) {
-            throw new IllegalArgumentException("Correct answer cannot be null or empty");
-        }
-        this.correctAnswer = correctAnswer;
-    }
-
-    public void setDifficulty(Difficulty difficultyLevel) {
-        if (difficultyLevel == null) {
-            throw new IllegalArgumentException("Difficulty cannot be null");
-        }
-        this.difficultyLevel = difficultyLevel;
-    }
-
-
-
 }
@@ -2,11 +2,14 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class QuizApp {
 
+    private static final int LEADERBOARD_SIZE = 5;
+    // Questions per quiz, drawn at random; 0 serves every question of the difficulty
+    private static final int QUIZ_SIZE = Integer.getInteger("quiz.size", 0);
+
     private JFrame frame;
     private CardLayout cardLayout;
 
@@ -43,6 +46,23 @@ public class QuizApp {
 
         quizManager = new QuizManager();
         quizManager.loadQuestions();
+
+        // Pick up edited question packs without a restart
+        if (Boolean.getBoolean(QuestionBank.WATCH_PROPERTY)) {
+            try {
+                QuestionBank.watch();
+            } catch (RuntimeException e) {
+                System.err.println("Warning: Question pack watching not started: " + e.getMessage());
+            }
+        }
+
+        // Flush any queued scores before the JVM exits
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                quizManager.shutdown();
+            }
+        });
         System.out.println("Questions loaded: " + quizManager.getTotalQuestions());
 
         cardLayout = new CardLayout();
@@ -310,7 +330,11 @@ public class QuizApp {
             String difficultyValue = difficulty.getSelectedItem().toString();
             selectedDifficulty = difficultyValue.equals("EASY") ? Difficulty.EASY : Difficulty.HARD;
 
-            quizManager.startQuiz(username,selectedDifficulty);
+            if (QUIZ_SIZE > 0) {
+                quizManager.startQuiz(username, selectedDifficulty, QUIZ_SIZE);
+            } else {
+                quizManager.startQuiz(username,selectedDifficulty);
+            }
             userName=username;
 
             QuestionScreen();
@@ -448,17 +472,23 @@ public class QuizApp {
         scoreLabel.setForeground(ForestTheme.ACCENT_COLOR);
         scoreLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
 
+        // Global rank among everyone who played this difficulty
+        long rankPosition = quizManager.getRankOfLastScore();
+        long players = Math.max(rankPosition, quizManager.getRankedPlayerCount(selectedDifficulty));
+        double beaten = quizManager.percentileOf(score, selectedDifficulty);
+        JLabel rankLabel = new JLabel(String.format("Rank #%d of %d - you beat %.0f%% of players", rankPosition, players, beaten));
+        rankLabel.setFont(ForestTheme.SUBTITLE_FONT);
+        rankLabel.setForeground(ForestTheme.TEXT_COLOR);
+        rankLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
         //LEADERBOARD
         JPanel leaderboardPanel = new JPanel();
         leaderboardPanel.setLayout(new BoxLayout(leaderboardPanel, BoxLayout.Y_AXIS));
         leaderboardPanel.setBorder(BorderFactory.createTitledBorder("Leaderboard"));
         leaderboardPanel.setOpaque(false);
 
-        List<UserScoreRecord> scores = quizManager.getLeaderboard();
-        scores.sort((a, b) -> Integer.compare(b.getScore(), a.getScore()));
-
-        // LIMIT results (Top 5)
-        scores = scores.stream().limit(5).toList();
+        // Top 5 for the difficulty just played, already sorted by the database
+        List<UserScoreRecord> scores = quizManager.getTopScores(selectedDifficulty, LEADERBOARD_SIZE);
         int rank = 1;
 
         for(UserScoreRecord r : scores) {
@@ -499,7 +529,9 @@ public class QuizApp {
         content.add(userLabel);
         content.add(Box.createVerticalStrut(30));
         content.add(scoreLabel);
-        content.add(Box.createVerticalStrut(60));
+        content.add(Box.createVerticalStrut(10));
+        content.add(rankLabel);
+        content.add(Box.createVerticalStrut(50));
         content.add(leaderboardPanel);
         content.add(Box.createVerticalStrut(40));
         content.add(backButton);
@@ -1,52 +1,124 @@
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class QuizManager {
 
     // ATTRIBUTES
-    private List<Questions> questionBank;
+    private QuestionSnapshot questionBank; // the version the current quiz runs on
     private int currentScore;
     private String userName;
     private Difficulty selectedDifficulty;
-    private PersistenceManager persistenceManager;
+    private ScoreStore scoreStore;
     private List<Questions> currentQuizQuestions;
+    private Long quizSeed; // null unless the current quiz was sampled
+    private ScoreWriteQueue writeQueue; // null unless write-behind is enabled
+    private ScoreRetentionJob retentionJob; // null unless retention is enabled
+    private ScoreRetryJournal retryJournal; // null unless the retry journal is enabled
+    private LeaderboardCache leaderboardCache;
+    private RankIndex rankIndex;
+    private ScoreHistogram histogram;
+    private WindowedLeaderboard windowedLeaderboard;
+    private PersonalStatsCache personalStats;
+    private UserScoreRecord lastRecord;
 
     // CONSTRUCTOR
     public QuizManager() {
-        this.questionBank = new ArrayList<>();
+        this.questionBank = QuestionSnapshot.empty();
         this.currentScore = 0;
         this.currentQuizQuestions = new ArrayList<>();
 
-        // Initialize Database connection
-        this.persistenceManager = new PersistenceManager();
+        // Initialize score storage (SQLite unless -Dquiz.store says otherwise)
+        this.scoreStore = ScoreStoreFactory.fromSystemProperties();
         try {
-            this.persistenceManager.initializeDatabase();
+            this.scoreStore.initialize();
         } catch (Exception e) {
             System.err.println("Warning: Database init failed: " + e.getMessage());
         }
+        this.leaderboardCache = new LeaderboardCache(scoreStore);
+        this.rankIndex = buildRankIndex(scoreStore);
+        this.histogram = buildHistogram(scoreStore, rankIndex);
+        this.windowedLeaderboard = buildWindowedLeaderboard(scoreStore);
+        this.personalStats = new PersonalStatsCache(scoreStore);
     }
 
-    // Constructor for testing (allows mocking PersistenceManager)
-    public QuizManager(PersistenceManager pm) {
-        this.questionBank = new ArrayList<>();
+    // Constructor for testing or for choosing a storage engine (any ScoreStore, already initialized)
+    public QuizManager(ScoreStore pm) {
+        this.questionBank = QuestionSnapshot.empty();
         this.currentScore = 0;
-        this.persistenceManager = pm;
+        this.scoreStore = pm;
         this.currentQuizQuestions = new ArrayList<>();
+        this.leaderboardCache = new LeaderboardCache(pm);
+        this.rankIndex = buildRankIndex(pm);
+        this.histogram = buildHistogram(pm, rankIndex);
+        this.windowedLeaderboard = buildWindowedLeaderboard(pm);
+        this.personalStats = new PersonalStatsCache(pm);
+    }
+
+    private static RankIndex buildRankIndex(ScoreStore pm) {
+        RankIndex index = new RankIndex(pm);
+        try {
+            index.rebuild();
+        } catch (Exception e) {
+            System.err.println("Warning: Rank index rebuild failed: " + e.getMessage());
+        }
+        return index;
+    }
+
+    private static ScoreHistogram buildHistogram(ScoreStore pm, RankIndex rankIndex) {
+        ScoreHistogram scoreHistogram = new ScoreHistogram(pm, rankIndex);
+        try {
+            scoreHistogram.reload();
+        } catch (Exception e) {
+            System.err.println("Warning: Score histogram load failed: " + e.getMessage());
+        }
+        return scoreHistogram;
+    }
+
+    private static WindowedLeaderboard buildWindowedLeaderboard(ScoreStore pm) {
+        WindowedLeaderboard leaderboard = new WindowedLeaderboard(pm);
+        try {
+            leaderboard.reload();
+        } catch (Exception e) {
+            System.err.println("Warning: Windowed leaderboard load failed: " + e.getMessage());
+        }
+        return leaderboard;
     }
 
     // LOGIC: LOADING QUESTIONS
     public void loadQuestions() {
-        questionBank = QuestionBank.getAllQuestions();
+        questionBank = QuestionBank.current();
         if (questionBank == null || questionBank.isEmpty()) {
-            System.err.println("FATAL: Question bank failed to load! Check QuestionBank.java.");
+            System.err.println("FATAL: Question bank failed to load! Check the question packs.");
         } else {
-            System.out.println("Loaded " + questionBank.size() + " questions from QuestionBank.");
+            System.out.println("Loaded " + questionBank.size() + " questions from QuestionBank (version " +
+                    questionBank.getVersion() + ").");
         }
     }
 
     // LOGIC: QUIZ FLOW
+    // Every question of the difficulty, in pack order
     public void startQuiz(String userName, Difficulty difficulty) {
+        start(userName, difficulty, 0, null);
+    }
+
+    // quizSize questions of the difficulty drawn at random (all of them, shuffled, if there are fewer)
+    public void startQuiz(String userName, Difficulty difficulty, int quizSize) {
+        startQuiz(userName, difficulty, quizSize, ThreadLocalRandom.current().nextLong());
+    }
+
+    // As above, from a seed: the same seed and question version give the same quiz
+    public void startQuiz(String userName, Difficulty difficulty, int quizSize, long seed) {
+        if (quizSize <= 0) {
+            throw new IllegalArgumentException("Quiz size must be positive");
+        }
+        start(userName, difficulty, quizSize, seed);
+    }
+
+    // seed is null when the quiz serves every question in order
+    private void start(String userName, Difficulty difficulty, int quizSize, Long seed) {
         if (userName == null || userName.trim().isEmpty()) {
             throw new IllegalArgumentException("User name cannot be null or empty");
         }
@@ -57,17 +129,28 @@ public class QuizManager {
             throw new IllegalStateException("Question bank is empty. Call loadQuestions() first.");
         }
 
+        // Each quiz pins the latest published version; a reload during the quiz does not affect it
+        QuestionSnapshot snapshot = QuestionBank.current();
+        List<Questions> questions = snapshot.get(difficulty);
+        if (questions.isEmpty()) {
+            throw new IllegalStateException("No questions available for difficulty: " + difficulty);
+        }
+        if (seed != null) {
+            // Reads only the chosen questions; the bank is neither copied nor shuffled
+            int available = questions.size();
+            questions = QuestionSampler.sample(questions, quizSize, new Random(seed));
+            System.out.println("Quiz for " + userName.trim() + ": " + questions.size() + " of " + available + " " +
+                    difficulty + " questions, version " + snapshot.getVersion() + ", seed " + seed);
+        }
+
         this.userName = userName.trim();
         this.selectedDifficulty = difficulty;
         this.currentScore = 0;
+        this.questionBank = snapshot;
+        this.quizSeed = seed;
 
-        this.currentQuizQuestions = questionBank.stream()
-                .filter(q -> q.getDifficultyLevel() == difficulty)
-                .collect(Collectors.toList());
-
-        if (currentQuizQuestions.isEmpty()) {
-            throw new IllegalStateException("No questions available for difficulty: " + difficulty);
-        }
+        // Shared read-only view from the snapshot, or the sample drawn from it
+        this.currentQuizQuestions = questions;
     }
 
     public boolean answerQuestion(int questionIndex, String userAnswer) {
@@ -98,28 +181,190 @@ public class QuizManager {
                 selectedDifficulty,
                 System.currentTimeMillis()
         );
+        lastRecord = record;
 
         try {
-            persistenceManager.saveScore(record);
-            System.out.println("Score recorded successfully for " + userName);
+            if (writeQueue != null) {
+                writeQueue.submit(record);
+                System.out.println("Score queued for " + userName);
+            } else {
+                scoreStore.saveScore(record);
+                System.out.println("Score recorded successfully for " + userName);
+            }
         } catch (Exception e) {
             System.err.println("Failed to record score: " + e.getMessage());
+            journalForRetry(record);
         }
     }
 
+    private void journalForRetry(UserScoreRecord record) {
+        if (retryJournal == null) {
+            return;
+        }
+        try {
+            retryJournal.append(record);
+            System.out.println("Score journaled for retry (backlog " + retryJournal.getBacklog() + ")");
+        } catch (Exception e) {
+            System.err.println("Failed to journal score: " + e.getMessage());
+        }
+    }
+
+    // LOGIC: RETRY JOURNAL
+    // Opt-in: scores whose write fails are kept in a local file and retried in the background
+    public void enableRetryJournal(Path file) {
+        if (retryJournal != null) {
+            throw new IllegalStateException("Retry journal is already enabled");
+        }
+        retryJournal = new ScoreRetryJournal(scoreStore, file);
+        if (writeQueue != null) {
+            writeQueue.setFailureHandler(this::journalAll);
+        }
+    }
+
+    private void journalAll(List<UserScoreRecord> records) {
+        for (UserScoreRecord record : records) {
+            retryJournal.append(record);
+        }
+    }
+
+    // LOGIC: WRITE-BEHIND
+    // Opt-in: scores are queued and written in batches by a background thread.
+    // Leaderboard reads only see queued scores once they have been flushed.
+    public void enableWriteBehind(int capacity, int batchSize, long maxDelayMillis,
+                                  ScoreWriteQueue.Backpressure backpressure, long offerTimeoutMillis) {
+        if (writeQueue != null) {
+            throw new IllegalStateException("Write-behind is already enabled");
+        }
+        writeQueue = new ScoreWriteQueue(scoreStore, capacity, batchSize,
+                maxDelayMillis, backpressure, offerTimeoutMillis);
+        if (retryJournal != null) {
+            writeQueue.setFailureHandler(this::journalAll);
+        }
+    }
+
+    // LOGIC: RETENTION
+    // Opt-in, SQLite only: removes old raw scores on a schedule (see RetentionPolicy)
+    public void enableRetention(RetentionPolicy policy, long intervalMillis) {
+        if (retentionJob != null) {
+            throw new IllegalStateException("Retention is already enabled");
+        }
+        if (!(scoreStore instanceof PersistenceManager)) {
+            throw new IllegalStateException("Retention needs the SQLite score store");
+        }
+        retentionJob = new ScoreRetentionJob((PersistenceManager) scoreStore, policy);
+        retentionJob.start(intervalMillis);
+    }
+
+    // Stops background jobs, drains any queued scores to the database and detaches the in-memory
+    // views from the store, which may outlive this manager. Safe to call more than once.
+    public void shutdown() {
+        if (retentionJob != null) {
+            retentionJob.close();
+            retentionJob = null;
+        }
+        if (writeQueue != null) {
+            writeQueue.close();
+            System.out.println("Score queue drained: " + writeQueue);
+            writeQueue = null;
+        }
+        if (retryJournal != null) {
+            retryJournal.close();
+            System.out.println("Retry journal closed: " + retryJournal);
+            retryJournal = null;
+        }
+        // After the drains above, whose saves still reach the views
+        scoreStore.removeScoreListener(leaderboardCache);
+        scoreStore.removeScoreListener(rankIndex);
+        scoreStore.removeScoreListener(windowedLeaderboard);
+        scoreStore.removeScoreListener(personalStats);
+    }
+
     public List<UserScoreRecord> getLeaderboard() {
         try {
-            return persistenceManager.loadAllScores();
+            return scoreStore.loadAllScores();
         } catch (Exception e) {
             System.err.println("Failed to load leaderboard: " + e.getMessage());
             return new ArrayList<>();
         }
     }
 
+    // Served from the in-memory leaderboard when it holds enough rows
+    public List<UserScoreRecord> getTopScores(Difficulty difficulty, int limit) {
+        try {
+            if (limit <= leaderboardCache.getCapacity()) {
+                return leaderboardCache.getTopScores(difficulty, limit);
+            }
+            return scoreStore.getTopScores(difficulty, limit);
+        } catch (Exception e) {
+            System.err.println("Failed to load top scores: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    // Each player's best score in the current day or week, best first
+    public List<UserScoreRecord> getTopScores(Difficulty difficulty, WindowedLeaderboard.Window window, int limit) {
+        return windowedLeaderboard.getTopScores(difficulty, window, limit);
+    }
+
+    // LOGIC: RANKING
+    // 1-based position of a score among every stored score of that difficulty
+    public long getRank(Difficulty difficulty, int score, long timestamp) {
+        return rankIndex.rankOf(difficulty, score, timestamp);
+    }
+
+    public long getRankOfLastScore() {
+        if (lastRecord == null) throw new IllegalStateException("No score recorded");
+        return rankIndex.rankOf(lastRecord.getDifficulty(), lastRecord.getScore(), lastRecord.getTimestamp());
+    }
+
+    public long getRankedPlayerCount(Difficulty difficulty) {
+        return rankIndex.size(difficulty);
+    }
+
+    // LOGIC: STATISTICS
+    // Best score and attempts per difficulty for one player, without scanning the history
+    public PersonalStats getPersonalStats(String userName) {
+        if (userName == null || userName.trim().isEmpty()) {
+            throw new IllegalArgumentException("User name cannot be null or empty");
+        }
+        return personalStats.get(userName.trim());
+    }
+
+    // Percentage of stored scores for the difficulty that are strictly lower
+    public double percentileOf(int score, Difficulty difficulty) {
+        return histogram.percentileOf(score, difficulty);
+    }
+
+    // Number of stored scores per score value, indexed by score
+    public long[] getDistribution(Difficulty difficulty) {
+        return histogram.getDistribution(difficulty);
+    }
+
+    // Forces the next leaderboard read to reload from the database,
+    // e.g. after another process has written to the same file
+    public void invalidateLeaderboardCache() {
+        leaderboardCache.invalidate();
+    }
+
+    // Pass null for the first page, then the previous page's next cursor
+    public ScorePage getScoresPage(Difficulty difficulty, ScoreCursor cursor, int pageSize) {
+        try {
+            return scoreStore.getScoresPage(difficulty, cursor, pageSize);
+        } catch (Exception e) {
+            System.err.println("Failed to load score page: " + e.getMessage());
+            return ScorePage.empty();
+        }
+    }
+
     // GETTERS
     public int getCurrentScore() { return currentScore; }
     public String getUserName() { return userName; }
     public List<Questions> getCurrentQuizQuestions() { return new ArrayList<>(currentQuizQuestions); }
     public Questions getQuestion(int index) { return currentQuizQuestions.get(index); }
     public int getTotalQuestions() { return currentQuizQuestions == null ? 0 : currentQuizQuestions.size(); }
+    public QuestionSnapshot getQuestionSnapshot() { return questionBank; }
+    public Long getQuizSeed() { return quizSeed; }
+    public ScoreWriteQueue getWriteQueue() { return writeQueue; }
+    public ScoreRetentionJob getRetentionJob() { return retentionJob; }
+    public ScoreRetryJournal getRetryJournal() { return retryJournal; }
 }
\ No newline at end of file
@@ -0,0 +1,412 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Order-statistic index over all stored scores, one per {@link Difficulty}.
+ *
+ * Scores are small non-negative integers, so each difficulty keeps a Fenwick
+ * tree of counts indexed by score; {@link #countAbove} is a prefix sum. Ties
+ * on score are ranked by timestamp (newest first, like the leaderboard), using
+ * a sorted array of timestamps per score value. Both lookups are O(log n).
+ *
+ * {@link #rebuild()} reads every row once and is meant for startup; after
+ * that the index follows committed saves and retention deletes through
+ * {@link ScoreListener}, so ranks are among the rows still stored. A rebuild
+ * counts into fresh trees and swaps them in. Callbacks that arrive during its
+ * scan are held back and replayed on the new trees, skipping saves the scan
+ * already counted; a clear during the scan makes it start over.
+ *
+ * The per-score counts double as the {@link ScoreHistogram}. Aggregates keep
+ * counting rows retention has deleted, so those are kept aside per score as
+ * retired counts, seeded by {@link #seedTotals} and grown by each removal.
+ */
+public class RankIndex implements ScoreListener {
+
+    private final ScoreStore scoreStore;
+    // Replaced whole by a rebuild; callbacks update it under lock, queries only read the reference
+    private volatile Map<Difficulty, DifficultyRanks> ranks = newRanks();
+
+    private final Object lock = new Object();
+    private List<Held> held;                 // guarded by lock; non-null while a rebuild scans
+    private boolean clearedDuringScan;       // guarded by lock
+
+    public RankIndex(ScoreStore scoreStore) {
+        if (scoreStore == null) {
+            throw new IllegalArgumentException("Score store cannot be null");
+        }
+        this.scoreStore = scoreStore;
+        scoreStore.addScoreListener(this);
+    }
+
+    private static Map<Difficulty, DifficultyRanks> newRanks() {
+        Map<Difficulty, DifficultyRanks> fresh = new EnumMap<>(Difficulty.class);
+        for (Difficulty difficulty : Difficulty.values()) {
+            fresh.put(difficulty, new DifficultyRanks());
+        }
+        return fresh;
+    }
+
+    // REBUILD
+    // Retired counts are kept: they are not held as rows
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        synchronized (lock) {
+            held = new ArrayList<>();
+            clearedDuringScan = false;
+        }
+        long rows;
+        while (true) {
+            Map<Difficulty, DifficultyRanks> fresh = newRanks();
+            try {
+                rows = scoreStore.forEachScore(ScoreFilter.all(),
+                        r -> fresh.get(r.getDifficulty()).add(r.getScore(), r.getTimestamp()));
+            } catch (RuntimeException e) {
+                synchronized (lock) {
+                    replay(ranks, held, false); // the old trees missed these
+                    held = null;
+                }
+                throw e;
+            }
+            synchronized (lock) {
+                if (clearedDuringScan) {
+                    // The scan may have read rows from before the clear
+                    held = new ArrayList<>();
+                    clearedDuringScan = false;
+                    continue;
+                }
+                for (Difficulty difficulty : Difficulty.values()) {
+                    fresh.get(difficulty).copyRetired(ranks.get(difficulty));
+                }
+                replay(fresh, held, true);
+                ranks = fresh;
+                held = null;
+            }
+            break;
+        }
+        System.out.printf("Rank index rebuilt from %d scores in %.1f ms%n", rows, (System.nanoTime() - start) / 1_000_000.0);
+    }
+
+    // A save committed before the scan read its row is already counted. Records hold no id, so
+    // a held save is skipped while the scan counted more rows with its score and timestamp than
+    // earlier held saves have claimed.
+    private static void replay(Map<Difficulty, DifficultyRanks> target, List<Held> events, boolean scanned) {
+        Map<List<Object>, Long> unclaimed = new HashMap<>();
+        if (scanned) {
+            for (Held event : events) {
+                if (event.saved != null) {
+                    UserScoreRecord r = event.saved;
+                    unclaimed.computeIfAbsent(key(r),
+                            k -> target.get(r.getDifficulty()).count(r.getScore(), r.getTimestamp()));
+                }
+            }
+        }
+        for (Held event : events) {
+            if (event.saved == null) {
+                for (UserScoreRecord r : event.removed) {
+                    DifficultyRanks ranks = target.get(r.getDifficulty());
+                    // A row deleted before the scan read it is still counted by the aggregates
+                    if (!ranks.remove(r.getScore(), r.getTimestamp()) && scanned) {
+                        ranks.retire(r.getScore());
+                    }
+                }
+                continue;
+            }
+            UserScoreRecord r = event.saved;
+            Long left = unclaimed.get(key(r));
+            if (left != null && left > 0) {
+                unclaimed.put(key(r), left - 1);
+            } else {
+                target.get(r.getDifficulty()).add(r.getScore(), r.getTimestamp());
+            }
+        }
+    }
+
+    private static List<Object> key(UserScoreRecord record) {
+        return List.of(record.getDifficulty(), record.getScore(), record.getTimestamp());
+    }
+
+    // QUERIES
+    // 1-based position a score would have on the full leaderboard
+    public long rankOf(Difficulty difficulty, int score, long timestamp) {
+        return ranksFor(difficulty).rankOf(score, timestamp);
+    }
+
+    public long countAbove(Difficulty difficulty, int score) {
+        return ranksFor(difficulty).countAbove(score);
+    }
+
+    public long size(Difficulty difficulty) {
+        return ranksFor(difficulty).size();
+    }
+
+    // Count per score of stored and retired rows, trimmed after the highest score seen
+    public long[] getDistribution(Difficulty difficulty) {
+        return ranksFor(difficulty).distribution();
+    }
+
+    /**
+     * Seeds the retired counts from totals per score that include rows
+     * retention has removed, such as {@link ScoreStore#loadScoreCounts()}:
+     * whatever the totals hold beyond the stored rows is retired.
+     */
+    public void seedTotals(Difficulty difficulty, long[] totals) {
+        if (totals == null) {
+            throw new IllegalArgumentException("Totals cannot be null");
+        }
+        ranksFor(difficulty).seedTotals(totals);
+    }
+
+    private DifficultyRanks ranksFor(Difficulty difficulty) {
+        if (difficulty == null) {
+            throw new IllegalArgumentException("Difficulty cannot be null");
+        }
+        return ranks.get(difficulty);
+    }
+
+    // UPDATES
+    @Override
+    public void onScoreSaved(UserScoreRecord record) {
+        synchronized (lock) {
+            if (held != null) {
+                held.add(new Held(record, null));
+                return;
+            }
+            ranks.get(record.getDifficulty()).add(record.getScore(), record.getTimestamp());
+        }
+    }
+
+    @Override
+    public void onScoresRemoved(List<UserScoreRecord> removed) {
+        synchronized (lock) {
+            if (held != null) {
+                held.add(new Held(null, new ArrayList<>(removed)));
+                return;
+            }
+            for (UserScoreRecord record : removed) {
+                ranks.get(record.getDifficulty()).remove(record.getScore(), record.getTimestamp());
+            }
+        }
+    }
+
+    @Override
+    public void onScoresCleared() {
+        synchronized (lock) {
+            for (DifficultyRanks r : ranks.values()) {
+                r.clear();
+            }
+            if (held != null) {
+                held.clear();
+                clearedDuringScan = true;
+            }
+        }
+    }
+
+    // A callback held back during a rebuild's scan: a save or a batch of removals
+    private static final class Held {
+        final UserScoreRecord saved;
+        final List<UserScoreRecord> removed;
+
+        Held(UserScoreRecord saved, List<UserScoreRecord> removed) {
+            this.saved = saved;
+            this.removed = removed;
+        }
+    }
+
+    /**
+     * Fenwick tree over score counts plus sorted timestamps per score.
+     */
+    private static class DifficultyRanks {
+        private static final int INITIAL_SCORE_CAPACITY = 16;
+
+        private long[] tree;          // 1-based Fenwick tree; tree index = score + 1
+        private long[][] timestamps;  // per score, ascending
+        private int[] timestampCounts;
+        private long[] retired;       // per score, rows removed by retention
+        private long total;
+
+        DifficultyRanks() {
+            clear();
+        }
+
+        synchronized void clear() {
+            tree = new long[INITIAL_SCORE_CAPACITY + 1];
+            timestamps = new long[INITIAL_SCORE_CAPACITY][];
+            timestampCounts = new int[INITIAL_SCORE_CAPACITY];
+            retired = new long[INITIAL_SCORE_CAPACITY];
+            total = 0;
+        }
+
+        // Only called on trees no other thread sees yet
+        void copyRetired(DifficultyRanks from) {
+            long[] source;
+            synchronized (from) {
+                source = from.retired.clone();
+            }
+            synchronized (this) {
+                if (source.length > timestampCounts.length) {
+                    grow(source.length);
+                }
+                System.arraycopy(source, 0, retired, 0, source.length);
+            }
+        }
+
+        synchronized void add(int score, long timestamp) {
+            if (score >= timestampCounts.length) {
+                grow(score + 1);
+            }
+            for (int i = score + 1; i < tree.length; i += i & -i) {
+                tree[i]++;
+            }
+            total++;
+            insertTimestamp(score, timestamp);
+        }
+
+        // Ignores scores the index does not hold, returning false
+        synchronized boolean remove(int score, long timestamp) {
+            if (score < 0 || score >= timestampCounts.length || timestampCounts[score] == 0) {
+                return false;
+            }
+            long[] values = timestamps[score];
+            int count = timestampCounts[score];
+            int pos = upperBound(values, count, timestamp) - 1;
+            if (pos < 0 || values[pos] != timestamp) {
+                return false;
+            }
+            System.arraycopy(values, pos + 1, values, pos, count - pos - 1);
+            timestampCounts[score] = count - 1;
+            retired[score]++;
+            for (int i = score + 1; i < tree.length; i += i & -i) {
+                tree[i]--;
+            }
+            total--;
+            return true;
+        }
+
+        synchronized void retire(int score) {
+            if (score >= timestampCounts.length) {
+                grow(score + 1);
+            }
+            retired[score]++;
+        }
+
+        synchronized long[] distribution() {
+            int length = timestampCounts.length;
+            while (length > 0 && timestampCounts[length - 1] == 0 && retired[length - 1] == 0) {
+                length--;
+            }
+            long[] counts = new long[length];
+            for (int score = 0; score < length; score++) {
+                counts[score] = timestampCounts[score] + retired[score];
+            }
+            return counts;
+        }
+
+        synchronized void seedTotals(long[] totals) {
+            if (totals.length > timestampCounts.length) {
+                grow(totals.length);
+            }
+            for (int score = 0; score < retired.length; score++) {
+                long seed = score < totals.length ? totals[score] : 0;
+                retired[score] = Math.max(0, seed - timestampCounts[score]);
+            }
+        }
+
+        synchronized long countAbove(int score) {
+            if (score < 0) {
+                return total;
+            }
+            return total - countAtOrBelow(score);
+        }
+
+        synchronized long rankOf(int score, long timestamp) {
+            long above = countAbove(score);
+            if (score < 0 || score >= timestampCounts.length) {
+                return above + 1;
+            }
+            // Same score but newer timestamp ranks ahead
+            int count = timestampCounts[score];
+            int newerFrom = count == 0 ? 0 : upperBound(timestamps[score], count, timestamp);
+            return above + (count - newerFrom) + 1;
+        }
+
+        synchronized long size() {
+            return total;
+        }
+
+        // Rows held with exactly this score and timestamp
+        synchronized long count(int score, long timestamp) {
+            if (score < 0 || score >= timestampCounts.length || timestampCounts[score] == 0) {
+                return 0;
+            }
+            long[] values = timestamps[score];
+            int count = timestampCounts[score];
+            int end = upperBound(values, count, timestamp);
+            int start = end;
+            while (start > 0 && values[start - 1] == timestamp) {
+                start--;
+            }
+            return end - start;
+        }
+
+        private long countAtOrBelow(int score) {
+            long sum = 0;
+            for (int i = Math.min(score + 1, tree.length - 1); i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        // Scores arrive roughly in time order, so this is normally an append
+        private void insertTimestamp(int score, long timestamp) {
+            long[] values = timestamps[score];
+            int count = timestampCounts[score];
+            if (values == null) {
+                values = new long[4];
+            } else if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            int pos = (count == 0 || values[count - 1] <= timestamp) ? count : upperBound(values, count, timestamp);
+            System.arraycopy(values, pos, values, pos + 1, count - pos);
+            values[pos] = timestamp;
+            timestamps[score] = values;
+            timestampCounts[score] = count + 1;
+        }
+
+        // Index of the first value strictly greater than key
+        private static int upperBound(long[] values, int count, long key) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] <= key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Rebuilds the Fenwick tree for a larger score domain from the per-score counts
+        private void grow(int minCapacity) {
+            int capacity = Math.max(minCapacity, timestampCounts.length * 2);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            timestampCounts = Arrays.copyOf(timestampCounts, capacity);
+            retired = Arrays.copyOf(retired, capacity);
+            tree = new long[capacity + 1];
+            for (int score = 0; score < capacity; score++) {
+                long c = timestampCounts[score];
+                if (c == 0) {
+                    continue;
+                }
+                for (int i = score + 1; i < tree.length; i += i & -i) {
+                    tree[i] += c;
+                }
+            }
+        }
+    }
+}
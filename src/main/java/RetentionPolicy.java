@@ -0,0 +1,63 @@
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@link ScoreRetentionJob} keeps and how gently it removes the rest.
+ *
+ * Raw score rows older than the retention period are archived (when an
+ * archive directory is set), rolled into daily per-score counts and deleted,
+ * a batch at a time. Each batch is its own short transaction followed by a
+ * pause, so writers wait at most one batch. Personal stats and score
+ * histograms are aggregates and keep counting removed rows; the weekly
+ * leaderboard is reseeded from raw rows at startup, so keep at least 7 days.
+ */
+public class RetentionPolicy {
+
+    public static final int DEFAULT_BATCH_SIZE = 5_000;
+    public static final long DEFAULT_BATCH_PAUSE_MILLIS = 20;
+    public static final int DEFAULT_VACUUM_PAGES = 2_000;
+
+    private final long retainMillis;
+    private final int batchSize;
+    private final long batchPauseMillis;
+    private final int vacuumPagesPerBatch;
+    private final Path archiveDirectory; // null: removed rows are not archived
+
+    public RetentionPolicy(long retainMillis, int batchSize, long batchPauseMillis,
+                           int vacuumPagesPerBatch, Path archiveDirectory) {
+        if (retainMillis <= 0) {
+            throw new IllegalArgumentException("Retention period must be positive");
+        }
+        if (batchSize <= 0 || batchPauseMillis < 0 || vacuumPagesPerBatch < 0) {
+            throw new IllegalArgumentException("Invalid batch settings");
+        }
+        this.retainMillis = retainMillis;
+        this.batchSize = batchSize;
+        this.batchPauseMillis = batchPauseMillis;
+        this.vacuumPagesPerBatch = vacuumPagesPerBatch;
+        this.archiveDirectory = archiveDirectory;
+    }
+
+    public static RetentionPolicy keepDays(int days, Path archiveDirectory) {
+        return new RetentionPolicy(TimeUnit.DAYS.toMillis(days), DEFAULT_BATCH_SIZE,
+                DEFAULT_BATCH_PAUSE_MILLIS, DEFAULT_VACUUM_PAGES, archiveDirectory);
+    }
+
+    // GETTERS
+    public long getRetainMillis() { return retainMillis; }
+    public int getBatchSize() { return batchSize; }
+    public long getBatchPauseMillis() { return batchPauseMillis; }
+    public int getVacuumPagesPerBatch() { return vacuumPagesPerBatch; }
+    public Path getArchiveDirectory() { return archiveDirectory; }
+
+    @Override
+    public String toString() {
+        return "RetentionPolicy{" +
+                "retainDays=" + TimeUnit.MILLISECONDS.toDays(retainMillis) +
+                ", batchSize=" + batchSize +
+                ", batchPauseMillis=" + batchPauseMillis +
+                ", vacuumPagesPerBatch=" + vacuumPagesPerBatch +
+                ", archiveDirectory=" + archiveDirectory +
+                '}';
+    }
+}
@@ -0,0 +1,300 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Brings a SQLite database up to the latest schema version.
+ *
+ * The current version lives in {@code PRAGMA user_version} (0 for a new or
+ * never-migrated file). Steps run in version order and each one bumps the
+ * version when it completes.
+ *
+ * A transactional step runs in a single transaction together with its version
+ * bump, so it is applied completely or not at all. A chunked step commits as it
+ * goes (see {@link #copyInChunks}) so a large table never holds the write lock
+ * for the whole copy; it must be safe to re-run after an interruption, and its
+ * version is bumped only once it has finished.
+ *
+ * Several processes may open the same file at once, so the version is read
+ * again before each step: inside the step's IMMEDIATE transaction for a
+ * transactional step, and just before the body for a chunked one. A step
+ * another process has already applied is skipped. Two processes can still
+ * overlap on a chunked step, so its body must also tolerate running alongside
+ * another copy of itself.
+ */
+public class SchemaMigrator {
+
+    public static final int DEFAULT_CHUNK_ROWS = 50_000;
+
+    private final List<Step> steps;
+
+    public SchemaMigrator(List<Step> steps) {
+        if (steps == null) {
+            throw new IllegalArgumentException("Steps cannot be null");
+        }
+        List<Step> sorted = new ArrayList<>(steps);
+        sorted.sort((a, b) -> Integer.compare(a.getVersion(), b.getVersion()));
+        for (int i = 0; i < sorted.size(); i++) {
+            if (sorted.get(i).getVersion() != i + 1) {
+                throw new IllegalArgumentException("Migration versions must be 1..n without gaps");
+            }
+        }
+        this.steps = Collections.unmodifiableList(sorted);
+    }
+
+    // Applies every step newer than the database and returns what was run, with timings
+    public List<Applied> migrate(PooledConnection conn) throws SQLException {
+        int current = getVersion(conn);
+        if (current > getLatestVersion()) {
+            throw new IllegalStateException("Database schema version " + current +
+                    " is newer than this build supports (" + getLatestVersion() + ")");
+        }
+        List<Applied> applied = new ArrayList<>();
+        for (Step step : steps) {
+            if (step.getVersion() <= current) {
+                continue;
+            }
+            long start = System.nanoTime();
+            boolean ran = step.isChunked() ? applyChunked(conn, step) : applyTransactional(conn, step);
+            if (!ran) {
+                System.out.println("Migration v" + step.getVersion() + " was already applied by another process");
+                continue;
+            }
+            Applied done = new Applied(step.getVersion(), step.getDescription(), System.nanoTime() - start);
+            System.out.println("Applied migration " + done);
+            applied.add(done);
+        }
+        return applied;
+    }
+
+    // The version check, the body and the bump share one IMMEDIATE transaction, which holds the write lock
+    private static boolean applyTransactional(PooledConnection conn, Step step) throws SQLException {
+        Connection connection = conn.getConnection();
+        connection.setAutoCommit(false);
+        try {
+            if (getVersion(conn) >= step.getVersion()) {
+                return false;
+            }
+            step.getBody().apply(conn);
+            setVersion(conn, step.getVersion());
+            connection.commit();
+            return true;
+        } finally {
+            // Rolls back a failed or skipped step, or the empty transaction the driver begins after a commit
+            conn.abortTransaction();
+        }
+    }
+
+    // The bump re-reads the version under the write lock, so it never lowers one set meanwhile
+    private static boolean applyChunked(PooledConnection conn, Step step) throws SQLException {
+        if (getVersion(conn) >= step.getVersion()) {
+            return false;
+        }
+        step.getBody().apply(conn);
+        Connection connection = conn.getConnection();
+        connection.setAutoCommit(false);
+        try {
+            if (getVersion(conn) < step.getVersion()) {
+                setVersion(conn, step.getVersion());
+            }
+            connection.commit();
+        } finally {
+            conn.abortTransaction();
+        }
+        return true;
+    }
+
+    public int getLatestVersion() {
+        return steps.size();
+    }
+
+    public static int getVersion(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void setVersion(PooledConnection conn, int version) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA user_version = " + version);
+        }
+    }
+
+    // HELPERS FOR CHUNKED STEPS
+    /**
+     * Runs {@code chunkSql} over the id range of {@code sourceTable} in chunks of
+     * {@code chunkRows} ids, committing after each chunk. Every statement takes two
+     * parameters, an exclusive lower and an inclusive upper id bound; the last one
+     * must copy rows into {@code targetTable} under the same ids, which is how an
+     * interrupted copy resumes after the largest id already there. Each chunk starts
+     * at the next source id, so gaps in the source ids are skipped. Each chunk reads
+     * that id under its own write lock, so a copy running alongside in another
+     * process continues where the other left off instead of repeating it; the
+     * copy stops early if the target table is gone. Indexes on the target are
+     * filled as the rows arrive. Returns the rows written by the last statement.
+     */
+    public static long copyInChunks(PooledConnection conn, String sourceTable, String targetTable,
+                                    int chunkRows, String... chunkSql) throws SQLException {
+        if (chunkRows <= 0) {
+            throw new IllegalArgumentException("Chunk rows must be positive");
+        }
+        long end = maxId(conn, sourceTable);
+        long scanned = 0;
+        long copied = 0;
+        Connection connection = conn.getConnection();
+        try {
+            while (true) {
+                connection.setAutoCommit(false);
+                if (!tableExists(conn, targetTable)) {
+                    break;
+                }
+                // A range with no source rows copies nothing, so progress cannot be read from the target alone
+                long from = Math.max(maxId(conn, targetTable), scanned);
+                long next = nextId(conn, sourceTable, from);
+                if (next == 0 || from >= end) {
+                    break;
+                }
+                from = next - 1;
+                long to = Math.min(from + chunkRows, end);
+                copied += runRange(connection, from, to, chunkSql);
+                scanned = to;
+                // Commits without the driver beginning the next transaction, so other writers get the lock in between
+                connection.setAutoCommit(true);
+            }
+        } finally {
+            conn.abortTransaction();
+        }
+        return copied;
+    }
+
+    // Copies whatever copyInChunks has not yet, inside the caller's transaction
+    public static long copyRemaining(PooledConnection conn, String sourceTable, String targetTable,
+                                     String... chunkSql) throws SQLException {
+        long from = maxId(conn, targetTable);
+        long end = maxId(conn, sourceTable);
+        return from < end ? runRange(conn.getConnection(), from, end, chunkSql) : 0;
+    }
+
+    private static long runRange(Connection connection, long from, long to, String... sql) throws SQLException {
+        long written = 0;
+        for (String statement : sql) {
+            try (PreparedStatement pstmt = connection.prepareStatement(statement)) {
+                pstmt.setLong(1, from);
+                pstmt.setLong(2, to);
+                written = pstmt.executeUpdate();
+            }
+        }
+        return written;
+    }
+
+    public static long maxId(PooledConnection conn, String table) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // The smallest id above the given one, or 0 if there is none
+    private static long nextId(PooledConnection conn, String table, long after) throws SQLException {
+        try (PreparedStatement pstmt = conn.getConnection().prepareStatement(
+                "SELECT COALESCE(MIN(id), 0) FROM " + table + " WHERE id > ?")) {
+            pstmt.setLong(1, after);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    public static boolean tableExists(PooledConnection conn, String table) throws SQLException {
+        try (PreparedStatement pstmt = conn.getConnection().prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            pstmt.setString(1, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    public static boolean hasColumn(PooledConnection conn, String table, String column) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equals(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The work of one migration step.
+     */
+    public interface Body {
+        void apply(PooledConnection conn) throws SQLException;
+    }
+
+    /**
+     * One schema version: what it does and how it is run.
+     */
+    public static class Step {
+        private final int version;
+        private final String description;
+        private final boolean chunked;
+        private final Body body;
+
+        private Step(int version, String description, boolean chunked, Body body) {
+            if (version <= 0 || description == null || body == null) {
+                throw new IllegalArgumentException("Invalid migration step");
+            }
+            this.version = version;
+            this.description = description;
+            this.chunked = chunked;
+            this.body = body;
+        }
+
+        public static Step transactional(int version, String description, Body body) {
+            return new Step(version, description, false, body);
+        }
+
+        // The body manages its own commits and must be re-runnable
+        public static Step chunked(int version, String description, Body body) {
+            return new Step(version, description, true, body);
+        }
+
+        public int getVersion() { return version; }
+        public String getDescription() { return description; }
+        public boolean isChunked() { return chunked; }
+        public Body getBody() { return body; }
+    }
+
+    /**
+     * A step that was applied, with how long it took.
+     */
+    public static class Applied {
+        private final int version;
+        private final String description;
+        private final long elapsedNanos;
+
+        Applied(int version, String description, long elapsedNanos) {
+            this.version = version;
+            this.description = description;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getVersion() { return version; }
+        public String getDescription() { return description; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        @Override
+        public String toString() {
+            return String.format("v%d (%s) in %.1f ms", version, description, elapsedNanos / 1_000_000.0);
+        }
+    }
+}
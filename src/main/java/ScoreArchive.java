@@ -0,0 +1,62 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Directory of gzip-compressed CSV chunks holding scores removed by retention.
+ *
+ * Each chunk is one retention batch, named after the ids of its first and
+ * last row ({@code scores-<firstId>-<lastId>.csv.gz}), in {@link ScoreCsv} format, so a
+ * chunk can be restored with
+ * {@code importScoresCsv(new GZIPInputStream(Files.newInputStream(chunk)))}.
+ * Chunks are written to a temp file, synced and then moved into place, so a
+ * chunk that exists is complete.
+ */
+public class ScoreArchive {
+
+    private final Path directory;
+
+    public ScoreArchive(Path directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Archive directory cannot be null");
+        }
+        this.directory = directory;
+    }
+
+    // Returns the chunk written; rewriting the same batch replaces the earlier chunk
+    public Path write(List<UserScoreRecord> records, long firstId, long lastId) {
+        Path target = directory.resolve("scores-" + firstId + "-" + lastId + ".csv.gz");
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (OutputStream file = Files.newOutputStream(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+                 BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                         new GZIPOutputStream(file, 1 << 16), StandardCharsets.UTF_8))) {
+                out.write(ScoreCsv.HEADER);
+                out.newLine();
+                for (UserScoreRecord record : records) {
+                    out.write(ScoreCsv.formatLine(record));
+                    out.newLine();
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write archive chunk " + target + ": " + e.getMessage(), e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+}
@@ -0,0 +1,104 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Plain-text score format used for imports: one record per line as
+ * {@code user_name,score,difficulty,timestamp}. The user name is everything
+ * before the last three commas, so names may themselves contain commas.
+ * A leading header line starting with "user_name" is ignored.
+ */
+public class ScoreCsv {
+
+    public static final String HEADER = "user_name,score,difficulty,timestamp";
+
+    private ScoreCsv() {
+    }
+
+    public static String formatLine(UserScoreRecord record) {
+        return record.getUserName() + "," + record.getScore() + "," +
+                record.getDifficulty().name() + "," + record.getTimestamp();
+    }
+
+    public static UserScoreRecord parseLine(String line) {
+        if (line == null) {
+            throw new IllegalArgumentException("Line cannot be null");
+        }
+        int c3 = line.lastIndexOf(',');
+        int c2 = c3 < 0 ? -1 : line.lastIndexOf(',', c3 - 1);
+        int c1 = c2 < 0 ? -1 : line.lastIndexOf(',', c2 - 1);
+        if (c1 <= 0) {
+            throw new IllegalArgumentException("Expected user_name,score,difficulty,timestamp but got: " + line);
+        }
+        try {
+            String userName = line.substring(0, c1);
+            int score = Integer.parseInt(line.substring(c1 + 1, c2).trim());
+            Difficulty difficulty = Difficulty.valueOf(line.substring(c2 + 1, c3).trim().toUpperCase());
+            long timestamp = Long.parseLong(line.substring(c3 + 1).trim());
+            return new UserScoreRecord(userName, score, difficulty, timestamp);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in line: " + line, e);
+        }
+    }
+
+    /**
+     * Lazily parses records from a reader, one line at a time.
+     * Blank lines are skipped; malformed lines are skipped and counted.
+     */
+    public static class Reader implements Iterator<UserScoreRecord> {
+        private static final int MAX_LOGGED_REJECTS = 10;
+
+        private final BufferedReader in;
+        private UserScoreRecord next;
+        private long lineNumber;
+        private long rejected;
+
+        public Reader(BufferedReader in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                String line;
+                try {
+                    line = in.readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read score line " + (lineNumber + 1), e);
+                }
+                if (line == null) {
+                    return false;
+                }
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && line.startsWith("user_name"))) {
+                    continue;
+                }
+                try {
+                    next = parseLine(line);
+                } catch (IllegalArgumentException e) {
+                    rejected++;
+                    if (rejected <= MAX_LOGGED_REJECTS) {
+                        System.err.println("Skipping line " + lineNumber + ": " + e.getMessage());
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public UserScoreRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            UserScoreRecord record = next;
+            next = null;
+            return record;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Position in a keyset-paginated leaderboard: the (score, timestamp, id) of
+ * the last row already shown. The next page starts strictly after it.
+ */
+public class ScoreCursor {
+    private final int score;
+    private final long timestamp;
+    private final long id;
+
+    public ScoreCursor(int score, long timestamp, long id) {
+        this.score = score;
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    public int getScore() { return score; }
+    public long getTimestamp() { return timestamp; }
+    public long getId() { return id; }
+
+    @Override
+    public String toString() {
+        return String.format("ScoreCursor[score=%d, timestamp=%d, id=%d]", score, timestamp, id);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        ScoreCursor that = (ScoreCursor) obj;
+        return score == that.score && timestamp == that.timestamp && id == that.id;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = score;
+        result = 31 * result + Long.hashCode(timestamp);
+        result = 31 * result + Long.hashCode(id);
+        return result;
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Optional restrictions for streaming over stored scores.
+ * A null difficulty matches every difficulty; the time range is
+ * inclusive of {@code fromTimestamp} and exclusive of {@code toTimestamp}.
+ */
+public class ScoreFilter {
+
+    private static final ScoreFilter ALL = new ScoreFilter(null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    private final Difficulty difficulty;
+    private final long fromTimestamp;
+    private final long toTimestamp;
+
+    private ScoreFilter(Difficulty difficulty, long fromTimestamp, long toTimestamp) {
+        if (fromTimestamp > toTimestamp) {
+            throw new IllegalArgumentException("Time range start must not be after its end");
+        }
+        this.difficulty = difficulty;
+        this.fromTimestamp = fromTimestamp;
+        this.toTimestamp = toTimestamp;
+    }
+
+    public static ScoreFilter all() {
+        return ALL;
+    }
+
+    public static ScoreFilter forDifficulty(Difficulty difficulty) {
+        if (difficulty == null) {
+            throw new IllegalArgumentException("Difficulty cannot be null");
+        }
+        return new ScoreFilter(difficulty, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public ScoreFilter between(long fromTimestamp, long toTimestamp) {
+        return new ScoreFilter(difficulty, fromTimestamp, toTimestamp);
+    }
+
+    public boolean matches(UserScoreRecord record) {
+        return (difficulty == null || record.getDifficulty() == difficulty) &&
+                record.getTimestamp() >= fromTimestamp &&
+                record.getTimestamp() < toTimestamp;
+    }
+
+    public Difficulty getDifficulty() { return difficulty; }
+    public long getFromTimestamp() { return fromTimestamp; }
+    public long getToTimestamp() { return toTimestamp; }
+
+    @Override
+    public String toString() {
+        return String.format("ScoreFilter[difficulty=%s, from=%d, to=%d]", difficulty, fromTimestamp, toTimestamp);
+    }
+}
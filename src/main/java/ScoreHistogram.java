@@ -0,0 +1,53 @@
+import java.util.Map;
+
+/**
+ * Count of scores per score value for each {@link Difficulty}, for
+ * percentiles and distributions straight from memory.
+ *
+ * The counts are the ones the {@link RankIndex} already keeps per score, so
+ * there is one structure to update on each save. This class seeds the
+ * index's retired counts with a single GROUP BY query, since the histogram
+ * still counts rows that retention has rolled up, and reads the totals.
+ */
+public class ScoreHistogram {
+
+    private final ScoreStore scoreStore;
+    private final RankIndex rankIndex;
+
+    public ScoreHistogram(ScoreStore scoreStore, RankIndex rankIndex) {
+        if (scoreStore == null || rankIndex == null) {
+            throw new IllegalArgumentException("Score store and rank index cannot be null");
+        }
+        this.scoreStore = scoreStore;
+        this.rankIndex = rankIndex;
+    }
+
+    // SEEDING
+    // Run after the rank index is rebuilt, so the stored rows are not counted twice
+    public void reload() {
+        Map<Difficulty, long[]> loaded = scoreStore.loadScoreCounts();
+        for (Difficulty difficulty : Difficulty.values()) {
+            rankIndex.seedTotals(difficulty, loaded.getOrDefault(difficulty, new long[0]));
+        }
+    }
+
+    // QUERIES
+    // Percentage (0-100) of scores strictly below the given score
+    public double percentileOf(int score, Difficulty difficulty) {
+        long below = 0;
+        long total = 0;
+        long[] counts = rankIndex.getDistribution(difficulty);
+        for (int s = 0; s < counts.length; s++) {
+            total += counts[s];
+            if (s < score) {
+                below += counts[s];
+            }
+        }
+        return total == 0 ? 0.0 : below * 100.0 / total;
+    }
+
+    // Copy of the counts indexed by score, trimmed after the highest score seen
+    public long[] getDistribution(Difficulty difficulty) {
+        return rankIndex.getDistribution(difficulty);
+    }
+}
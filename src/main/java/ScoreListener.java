@@ -0,0 +1,19 @@
+import java.util.List;
+
+/**
+ * Notified by a {@link ScoreStore} after score writes have been committed,
+ * so in-memory views of the scores can be kept current without re-reading the store.
+ * Callbacks run on the writing thread and should be quick.
+ */
+public interface ScoreListener {
+
+    void onScoreSaved(UserScoreRecord record);
+
+    default void onScoresCleared() {
+    }
+
+    // Raw rows deleted by retention. They still count towards aggregates
+    // (histograms, personal stats); only views of individual rows need to react.
+    default void onScoresRemoved(List<UserScoreRecord> removed) {
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listener registry shared by the {@link ScoreStore} implementations.
+ * A failing listener must not turn a committed write into an error for the caller,
+ * so exceptions are logged and swallowed.
+ */
+public class ScoreListeners {
+
+    private final List<ScoreListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void add(ScoreListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        listeners.add(listener);
+    }
+
+    public void remove(ScoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isEmpty() {
+        return listeners.isEmpty();
+    }
+
+    public void fireSaved(UserScoreRecord record) {
+        for (ScoreListener listener : listeners) {
+            try {
+                listener.onScoreSaved(record);
+            } catch (RuntimeException e) {
+                System.err.println("Score listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // Notifies and then empties a list of records that were just committed
+    public void fireSaved(List<UserScoreRecord> committed) {
+        if (committed == null) {
+            return;
+        }
+        for (UserScoreRecord record : committed) {
+            fireSaved(record);
+        }
+        committed.clear();
+    }
+
+    public void fireRemoved(List<UserScoreRecord> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        for (ScoreListener listener : listeners) {
+            try {
+                listener.onScoresRemoved(removed);
+            } catch (RuntimeException e) {
+                System.err.println("Score listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public void fireCleared() {
+        for (ScoreListener listener : listeners) {
+            try {
+                listener.onScoresCleared();
+            } catch (RuntimeException e) {
+                System.err.println("Score listener failed: " + e.getMessage());
+            }
+        }
+    }
+}
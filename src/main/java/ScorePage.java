@@ -0,0 +1,27 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of leaderboard rows plus the cursor to fetch the page after it.
+ * The next cursor is null when there are no more rows.
+ */
+public class ScorePage {
+    private final List<UserScoreRecord> records;
+    private final ScoreCursor nextCursor;
+
+    public ScorePage(List<UserScoreRecord> records, ScoreCursor nextCursor) {
+        if (records == null) {
+            throw new IllegalArgumentException("Records cannot be null");
+        }
+        this.records = Collections.unmodifiableList(records);
+        this.nextCursor = nextCursor;
+    }
+
+    public static ScorePage empty() {
+        return new ScorePage(Collections.emptyList(), null);
+    }
+
+    public List<UserScoreRecord> getRecords() { return records; }
+    public ScoreCursor getNextCursor() { return nextCursor; }
+    public boolean hasNext() { return nextCursor != null; }
+}
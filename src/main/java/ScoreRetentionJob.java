@@ -0,0 +1,137 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies a {@link RetentionPolicy} to a SQLite score database, on a schedule
+ * or on demand.
+ *
+ * A run removes every row older than the policy's period in batches: each
+ * batch is archived, rolled into the daily counts and deleted in one short
+ * transaction (see {@link PersistenceManager#removeExpiredBatch}), then up to
+ * a fixed number of free pages are handed back to the file system with
+ * incremental VACUUM, then the job pauses so queued writers get the lock.
+ */
+public class ScoreRetentionJob implements AutoCloseable {
+
+    private final PersistenceManager store;
+    private final RetentionPolicy policy;
+    private final ScoreArchive archive; // null when the policy has no archive directory
+
+    private ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong rowsRemoved = new AtomicLong();
+    private final AtomicLong pagesVacuumed = new AtomicLong();
+    private volatile long lastRunMillis;
+
+    public ScoreRetentionJob(PersistenceManager store, RetentionPolicy policy) {
+        if (store == null || policy == null) {
+            throw new IllegalArgumentException("Store and policy cannot be null");
+        }
+        this.store = store;
+        this.policy = policy;
+        this.archive = policy.getArchiveDirectory() == null ? null : new ScoreArchive(policy.getArchiveDirectory());
+    }
+
+    // SCHEDULING
+    public synchronized void start(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+        if (scheduler != null || closed) {
+            throw new IllegalStateException("Retention job already started or closed");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "score-retention");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::runQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void runQuietly() {
+        try {
+            runOnce();
+        } catch (RuntimeException e) {
+            System.err.println("Score retention run failed: " + e.getMessage());
+        }
+    }
+
+    // RUN
+    // Removes everything older than the retention period. Returns the number of rows removed.
+    public synchronized long runOnce() {
+        long start = System.nanoTime();
+        long cutoff = System.currentTimeMillis() - policy.getRetainMillis();
+        long removed = 0;
+        long pages = 0;
+        int batches = 0;
+
+        while (!closed) {
+            int batch = store.removeExpiredBatch(cutoff, policy.getBatchSize(), archive);
+            if (batch == 0) {
+                break;
+            }
+            removed += batch;
+            batches++;
+            if (policy.getVacuumPagesPerBatch() > 0) {
+                pages += store.vacuumIncrementally(policy.getVacuumPagesPerBatch());
+            }
+            if (!pause()) {
+                break;
+            }
+        }
+
+        runs.incrementAndGet();
+        rowsRemoved.addAndGet(removed);
+        pagesVacuumed.addAndGet(pages);
+        lastRunMillis = (System.nanoTime() - start) / 1_000_000;
+        if (removed > 0) {
+            System.out.println("Retention removed " + removed + " scores in " + batches + " batches, freed " +
+                    pages + " pages in " + lastRunMillis + " ms");
+        }
+        return removed;
+    }
+
+    private boolean pause() {
+        if (policy.getBatchPauseMillis() == 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(policy.getBatchPauseMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // SHUTDOWN
+    // Stops after the batch in progress; the rest is picked up by the next run
+    @Override
+    public void close() {
+        closed = true;
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = scheduler;
+            scheduler = null;
+        }
+        if (running != null) {
+            running.shutdown();
+            try {
+                running.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // GETTERS
+    public RetentionPolicy getPolicy() { return policy; }
+    public long getRuns() { return runs.get(); }
+    public long getRowsRemoved() { return rowsRemoved.get(); }
+    public long getPagesVacuumed() { return pagesVacuumed.get(); }
+    public long getLastRunMillis() { return lastRunMillis; }
+}
@@ -0,0 +1,383 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local journal of scores whose write to the score store failed, replayed in
+ * the background until they are stored.
+ *
+ * Each failed record is appended to the journal file in {@link ScoreCsv}
+ * format and synced before {@link #append} returns, so it survives a crash.
+ * A replayer thread retries the whole backlog with exponential backoff
+ * (doubling from baseDelayMillis up to maxDelayMillis, reset on success).
+ * Records are deduplicated by identity (user, score, difficulty, timestamp):
+ * a record already in the journal is not added twice, and a record the store
+ * already holds, because a write that reported failure had in fact committed
+ * or a crash came between replay and journal rewrite, is dropped instead of
+ * being written again. After each successful replay the journal file is
+ * rewritten with only what is still pending.
+ *
+ * A record the store refuses outright (an IllegalArgumentException or a
+ * constraint error) would fail every retry and hold back the records behind
+ * it. When a batch is refused, the records are replayed one at a time and
+ * the refused ones are moved to a rejects file next to the journal.
+ */
+public class ScoreRetryJournal implements AutoCloseable {
+
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 100;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 30_000;
+
+    private final ScoreStore scoreStore;
+    private final Path file;
+    private final Path rejectsFile;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    // Journal contents in append order; guarded by this
+    private final Set<UserScoreRecord> pending = new LinkedHashSet<>();
+    // Held for a whole replay so an on-demand replay never overlaps the background one
+    private final Object replayLock = new Object();
+    private FileChannel channel;
+    private final ScheduledExecutorService replayer;
+    private ScheduledFuture<?> scheduled;
+    private int failedAttempts;
+    private volatile boolean closed;
+
+    // METRICS
+    private final AtomicLong recordsJournaled = new AtomicLong();
+    private final AtomicLong recordsReplayed = new AtomicLong();
+    private final AtomicLong duplicatesDropped = new AtomicLong();
+    private final AtomicLong recordsRejected = new AtomicLong();
+    private final AtomicLong replayFailures = new AtomicLong();
+
+    // CONSTRUCTORS
+    public ScoreRetryJournal(ScoreStore scoreStore, Path file) {
+        this(scoreStore, file, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    // Loads whatever an earlier run left in the journal and schedules a replay if it is not empty
+    public ScoreRetryJournal(ScoreStore scoreStore, Path file, long baseDelayMillis, long maxDelayMillis) {
+        if (scoreStore == null || file == null) {
+            throw new IllegalArgumentException("Score store and journal file cannot be null");
+        }
+        if (baseDelayMillis <= 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Invalid backoff delays");
+        }
+        this.scoreStore = scoreStore;
+        this.file = file;
+        this.rejectsFile = file.resolveSibling(file.getFileName() + ".rejected");
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+
+        load();
+        this.replayer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "score-retry-replay");
+            t.setDaemon(true);
+            return t;
+        });
+        synchronized (this) {
+            if (!pending.isEmpty()) {
+                System.out.println("Retry journal holds " + pending.size() + " scores from an earlier run");
+                schedule(0);
+            }
+        }
+    }
+
+    private void load() {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            if (Files.exists(file)) {
+                // A line torn by a crash mid-append is skipped and dropped by the next rewrite
+                try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    ScoreCsv.Reader reader = new ScoreCsv.Reader(in);
+                    while (reader.hasNext()) {
+                        pending.add(reader.next());
+                    }
+                }
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            if (channel.size() > 0 && !endsWithNewline()) {
+                channel.write(ByteBuffer.wrap(System.lineSeparator().getBytes(StandardCharsets.UTF_8)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open retry journal " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private boolean endsWithNewline() throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            in.read(last, in.size() - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    // APPEND
+    // Durably records a score that could not be written. Returns false if it is already journaled.
+    public synchronized boolean append(UserScoreRecord record) {
+        if (record == null) {
+            throw new IllegalArgumentException("Score record cannot be null");
+        }
+        if (closed) {
+            throw new IllegalStateException("Retry journal is closed");
+        }
+        if (pending.contains(record)) {
+            duplicatesDropped.incrementAndGet();
+            return false;
+        }
+        byte[] line = (ScoreCsv.formatLine(record) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to retry journal " + file + ": " + e.getMessage(), e);
+        }
+        pending.add(record);
+        recordsJournaled.incrementAndGet();
+        if (scheduled == null || scheduled.isDone()) {
+            schedule(currentDelay());
+        }
+        return true;
+    }
+
+    // REPLAY
+    private synchronized void schedule(long delayMillis) {
+        if (closed) {
+            return;
+        }
+        scheduled = replayer.schedule(this::replayQuietly, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private long currentDelay() {
+        // base, 2 x base, 4 x base ... capped; the shift is bounded so it cannot overflow
+        long delay = baseDelayMillis << Math.min(failedAttempts, 30);
+        return delay <= 0 ? maxDelayMillis : Math.min(delay, maxDelayMillis);
+    }
+
+    private void replayQuietly() {
+        boolean stored;
+        try {
+            stored = replay();
+        } catch (RuntimeException e) {
+            System.err.println("Score replay failed: " + e.getMessage());
+            stored = false;
+        }
+        synchronized (this) {
+            if (stored) {
+                failedAttempts = 0;
+            } else {
+                failedAttempts++;
+                replayFailures.incrementAndGet();
+            }
+            if (!pending.isEmpty()) {
+                schedule(currentDelay());
+            }
+        }
+    }
+
+    /**
+     * Writes every journaled score to the store in one batch, skipping those
+     * already stored, then rewrites the journal without them. Returns true if
+     * the journal was empty or the batch was written and throws if the store
+     * is still failing. Runs on the replayer thread; exposed so callers can
+     * flush the backlog on demand.
+     */
+    public boolean replay() {
+        synchronized (replayLock) {
+            return replayPending();
+        }
+    }
+
+    private boolean replayPending() {
+        List<UserScoreRecord> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(pending);
+        }
+        if (batch.isEmpty()) {
+            return true;
+        }
+        List<UserScoreRecord> missing = new ArrayList<>(batch.size());
+        for (UserScoreRecord record : batch) {
+            if (scoreStore.containsScore(record)) {
+                duplicatesDropped.incrementAndGet();
+            } else {
+                missing.add(record);
+            }
+        }
+        if (!missing.isEmpty()) {
+            // Throws if the store is still unavailable; chunks that did commit are
+            // caught by the containsScore check on the next attempt
+            try {
+                scoreStore.saveScores(missing);
+                recordsReplayed.addAndGet(missing.size());
+            } catch (RuntimeException e) {
+                if (!isRejection(e)) {
+                    throw e;
+                }
+                replayOneByOne(missing);
+            }
+        }
+        synchronized (this) {
+            pending.removeAll(batch);
+            rewrite();
+        }
+        return true;
+    }
+
+    // Sets aside the records the store refuses; a failure that may pass keeps the rest pending
+    private void replayOneByOne(List<UserScoreRecord> records) {
+        List<UserScoreRecord> rejected = new ArrayList<>();
+        try {
+            for (UserScoreRecord record : records) {
+                if (scoreStore.containsScore(record)) {
+                    duplicatesDropped.incrementAndGet();
+                    continue;
+                }
+                try {
+                    scoreStore.saveScore(record);
+                    recordsReplayed.incrementAndGet();
+                } catch (RuntimeException e) {
+                    if (!isRejection(e)) {
+                        throw e;
+                    }
+                    System.err.println("Setting aside score the store rejects: " + record + ": " + e.getMessage());
+                    reject(record);
+                    rejected.add(record);
+                }
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pending.removeAll(rejected);
+                rewrite();
+            }
+            throw e;
+        }
+    }
+
+    private void reject(UserScoreRecord record) {
+        byte[] line = (ScoreCsv.formatLine(record) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        try {
+            Files.write(rejectsFile, line, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write rejected score to " + rejectsFile + ": " + e.getMessage(), e);
+        }
+        recordsRejected.incrementAndGet();
+    }
+
+    // Failures a retry cannot fix: the store refused the record itself
+    private static boolean isRejection(RuntimeException e) {
+        if (e instanceof IllegalArgumentException) {
+            return true;
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            // SQLITE_CONSTRAINT, including its extended codes
+            if (cause instanceof SQLException && (((SQLException) cause).getErrorCode() & 0xff) == 19) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Replaces the journal with the records still pending; caller holds the lock
+    private void rewrite() {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE, StandardOpenOption.SYNC)) {
+                for (UserScoreRecord record : pending) {
+                    out.write(ScoreCsv.formatLine(record));
+                    out.newLine();
+                }
+            }
+            // Closed for the move, since some platforms refuse to replace an open file
+            channel.close();
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                // If the move failed, appends go on to the old journal; replay drops its duplicates
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to rewrite retry journal " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    // SHUTDOWN
+    // Makes one last replay attempt; anything still pending stays in the file for the next run
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+        replayer.shutdown();
+        try {
+            replayer.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            replay();
+        } catch (RuntimeException e) {
+            System.err.println("Final score replay failed: " + e.getMessage());
+        }
+        synchronized (this) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close retry journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // GETTERS
+    public Path getFile() { return file; }
+    public Path getRejectsFile() { return rejectsFile; }
+    public synchronized int getBacklog() { return pending.size(); }
+    public long getRecordsJournaled() { return recordsJournaled.get(); }
+    public long getRecordsReplayed() { return recordsReplayed.get(); }
+    public long getDuplicatesDropped() { return duplicatesDropped.get(); }
+    public long getRecordsRejected() { return recordsRejected.get(); }
+    public long getReplayFailures() { return replayFailures.get(); }
+    public synchronized long getNextDelayMillis() { return currentDelay(); }
+
+    @Override
+    public String toString() {
+        return String.format("ScoreRetryJournal[backlog=%d, journaled=%d, replayed=%d, duplicates=%d, rejected=%d, failures=%d]",
+                getBacklog(), getRecordsJournaled(), getRecordsReplayed(), getDuplicatesDropped(), getRecordsRejected(),
+                getReplayFailures());
+    }
+}
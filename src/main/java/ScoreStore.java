@@ -0,0 +1,92 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Storage engine for quiz scores.
+ * {@link PersistenceManager} is the SQLite implementation; {@link InMemoryScoreStore}
+ * and {@link MappedScoreStore} trade durability guarantees for speed.
+ *
+ * Leaderboard order everywhere is score descending, then timestamp descending,
+ * then store id ascending (insertion order) for exact ties.
+ */
+public interface ScoreStore extends AutoCloseable {
+
+    // Creates whatever files or tables the store needs. Safe to call more than once.
+    void initialize();
+
+    void saveScore(UserScoreRecord record);
+
+    IngestReport saveScores(Iterable<UserScoreRecord> records);
+
+    List<UserScoreRecord> getTopScores(Difficulty difficulty, int limit);
+
+    ScorePage getScoresPage(Difficulty difficulty, ScoreCursor cursor, int pageSize);
+
+    // Visits every matching record; the order is up to the store. Returns the number visited.
+    long forEachScore(ScoreFilter filter, Consumer<UserScoreRecord> action);
+
+    void clearAllScores();
+
+    void addScoreListener(ScoreListener listener);
+
+    void removeScoreListener(ScoreListener listener);
+
+    @Override
+    void close();
+
+    // Every score in leaderboard order. Materialises the whole history; prefer forEachScore.
+    default List<UserScoreRecord> loadAllScores() {
+        List<UserScoreRecord> scores = new ArrayList<>();
+        forEachScore(ScoreFilter.all(), scores::add);
+        scores.sort(LeaderboardCache.LEADERBOARD_ORDER);
+        return scores;
+    }
+
+    // Number of stored scores per score value, indexed by score, for each difficulty
+    default Map<Difficulty, long[]> loadScoreCounts() {
+        Map<Difficulty, long[]> counts = new EnumMap<>(Difficulty.class);
+        forEachScore(ScoreFilter.all(), record -> {
+            long[] perScore = counts.getOrDefault(record.getDifficulty(), new long[0]);
+            if (record.getScore() >= perScore.length) {
+                perScore = Arrays.copyOf(perScore, record.getScore() + 1);
+            }
+            perScore[record.getScore()]++;
+            counts.put(record.getDifficulty(), perScore);
+        });
+        return counts;
+    }
+
+    // Best score and attempts per difficulty for one player. Scans every score; stores
+    // that keep a per-user aggregate override this.
+    default PersonalStats getPersonalStats(String userName) {
+        if (userName == null) {
+            throw new IllegalArgumentException("User name cannot be null");
+        }
+        List<UserScoreRecord> mine = new ArrayList<>();
+        forEachScore(ScoreFilter.all(), record -> {
+            if (record.getUserName().equals(userName)) {
+                mine.add(record);
+            }
+        });
+        return PersonalStats.of(userName, mine);
+    }
+
+    // Whether a score with the same user, score, difficulty and timestamp is already stored
+    default boolean containsScore(UserScoreRecord record) {
+        if (record == null) {
+            throw new IllegalArgumentException("Score record cannot be null");
+        }
+        long ts = record.getTimestamp();
+        boolean[] found = new boolean[1];
+        forEachScore(ScoreFilter.forDifficulty(record.getDifficulty()).between(ts, ts + 1), r -> {
+            if (r.equals(record)) {
+                found[0] = true;
+            }
+        });
+        return found[0];
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Picks the {@link ScoreStore} engine from configuration.
+ *
+ *   -Dquiz.store=sqlite|sqlite-memory|mapped|memory   (default sqlite)
+ *   -Dquiz.store.path=...               database file (the snapshot file for sqlite-memory),
+ *                                       or base path of the mapped log
+ *   -Dquiz.store.snapshotInterval=60000 sqlite-memory only: ms between snapshots to the file
+ *   -Dquiz.store.busyTimeout=5000       SQLite only: ms a write waits for another process's lock
+ */
+public final class ScoreStoreFactory {
+
+    public static final String ENGINE_PROPERTY = "quiz.store";
+    public static final String PATH_PROPERTY = "quiz.store.path";
+    public static final String BUSY_TIMEOUT_PROPERTY = "quiz.store.busyTimeout";
+    public static final String SNAPSHOT_INTERVAL_PROPERTY = "quiz.store.snapshotInterval";
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_MILLIS = 60_000;
+
+    private static final String DEFAULT_SQLITE_PATH = "quiz_scores.db";
+    private static final String DEFAULT_MAPPED_PATH = "quiz_scores";
+
+    private ScoreStoreFactory() {
+    }
+
+    // Builds the engine named by the system properties; the caller initializes it
+    public static ScoreStore fromSystemProperties() {
+        long busyTimeout = Long.getLong(BUSY_TIMEOUT_PROPERTY, ConnectionPool.DEFAULT_BUSY_TIMEOUT_MILLIS);
+        return create(System.getProperty(ENGINE_PROPERTY, "sqlite"), System.getProperty(PATH_PROPERTY), busyTimeout);
+    }
+
+    public static ScoreStore create(String engine, String path) {
+        return create(engine, path, ConnectionPool.DEFAULT_BUSY_TIMEOUT_MILLIS);
+    }
+
+    public static ScoreStore create(String engine, String path, long busyTimeoutMillis) {
+        if (engine == null) {
+            throw new IllegalArgumentException("Engine cannot be null");
+        }
+        switch (engine.trim().toLowerCase()) {
+            case "sqlite":
+                return new PersistenceManager(path != null ? path : DEFAULT_SQLITE_PATH,
+                        ConnectionPool.DEFAULT_POOL_SIZE, busyTimeoutMillis);
+            case "sqlite-memory":
+                return PersistenceManager.inMemory(path != null ? path : DEFAULT_SQLITE_PATH,
+                        Long.getLong(SNAPSHOT_INTERVAL_PROPERTY, DEFAULT_SNAPSHOT_INTERVAL_MILLIS));
+            case "mapped":
+                return new MappedScoreStore(path != null ? path : DEFAULT_MAPPED_PATH);
+            case "memory":
+                return new InMemoryScoreStore();
+            default:
+                throw new IllegalArgumentException("Unknown score store engine: " + engine);
+        }
+    }
+}
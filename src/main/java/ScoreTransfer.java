@@ -0,0 +1,31 @@
+import java.nio.file.Path;
+
+/**
+ * Command-line export and import of score history, for moving it between
+ * kiosks in the {@link ColumnarScores} format.
+ *
+ *   java ScoreTransfer export quiz_scores.db scores.qsc
+ *   java ScoreTransfer import quiz_scores.db scores.qsc
+ *
+ * Import appends to whatever the database already holds.
+ */
+public class ScoreTransfer {
+
+    public static void main(String[] args) {
+        if (args.length != 3 || !(args[0].equals("export") || args[0].equals("import"))) {
+            System.err.println("Usage: ScoreTransfer export|import <database file> <columnar file>");
+            System.exit(2);
+        }
+        PersistenceManager store = new PersistenceManager(args[1]);
+        try {
+            store.initializeDatabase();
+            IngestReport report = args[0].equals("export")
+                    ? store.exportScores(Path.of(args[2]))
+                    : store.importScores(Path.of(args[2]));
+            System.out.printf("%s %,d scores in %d chunks (%.0f rows/s)%n", args[0].equals("export") ? "Exported" : "Imported",
+                    report.getRowsWritten(), report.getChunks(), report.getRowsPerSecond());
+        } finally {
+            store.close();
+        }
+    }
+}
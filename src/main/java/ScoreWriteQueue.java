@@ -0,0 +1,223 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind buffer for finished quiz scores.
+ * Callers enqueue records and return immediately; a single writer thread
+ * drains the queue in batches, writing each batch in one transaction.
+ * A batch is flushed when it reaches batchSize or when its oldest record
+ * has waited maxDelayMillis, whichever comes first.
+ */
+public class ScoreWriteQueue implements AutoCloseable {
+
+    // What submit() does when the queue is full
+    public enum Backpressure {
+        BLOCK,        // wait up to offerTimeoutMillis for space, then fail
+        FAIL,         // reject immediately
+        CALLER_RUNS   // write the record synchronously on the caller's thread
+    }
+
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final ScoreStore scoreStore;
+    private final BlockingQueue<UserScoreRecord> queue;
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final Backpressure backpressure;
+    private final long offerTimeoutMillis;
+    private final Thread writer;
+
+    private volatile boolean accepting = true;
+    private volatile Consumer<List<UserScoreRecord>> failureHandler; // null: failed batches are only counted
+
+    // METRICS
+    private final AtomicLong recordsWritten = new AtomicLong();
+    private final AtomicLong recordsFailed = new AtomicLong();
+    private final AtomicLong recordsRejected = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+
+    // CONSTRUCTOR
+    public ScoreWriteQueue(ScoreStore scoreStore, int capacity, int batchSize,
+                           long maxDelayMillis, Backpressure backpressure, long offerTimeoutMillis) {
+        if (scoreStore == null) {
+            throw new IllegalArgumentException("Score store cannot be null");
+        }
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Capacity and batch size must be positive");
+        }
+        if (maxDelayMillis < 0 || offerTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Delays cannot be negative");
+        }
+        if (backpressure == null) {
+            throw new IllegalArgumentException("Backpressure policy cannot be null");
+        }
+        this.scoreStore = scoreStore;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.backpressure = backpressure;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+
+        this.writer = new Thread(this::runWriter, "score-write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // SUBMIT
+    public void submit(UserScoreRecord record) {
+        if (record == null) {
+            throw new IllegalArgumentException("Score record cannot be null");
+        }
+        if (!accepting) {
+            throw new IllegalStateException("Score queue is shut down");
+        }
+        if (queue.offer(record)) {
+            return;
+        }
+
+        switch (backpressure) {
+            case BLOCK:
+                try {
+                    if (queue.offer(record, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                recordsRejected.incrementAndGet();
+                throw new IllegalStateException("Score queue is full - timed out after " + offerTimeoutMillis + " ms");
+            case CALLER_RUNS:
+                scoreStore.saveScore(record);
+                recordsWritten.incrementAndGet();
+                return;
+            case FAIL:
+            default:
+                recordsRejected.incrementAndGet();
+                throw new IllegalStateException("Score queue is full");
+        }
+    }
+
+    // WRITER THREAD
+    private void runWriter() {
+        List<UserScoreRecord> batch = new ArrayList<>(batchSize);
+        while (accepting || !queue.isEmpty()) {
+            try {
+                UserScoreRecord first = queue.poll(POLL_NANOS, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Keep filling until the batch is full or the first record has waited long enough
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !accepting) {
+                        break;
+                    }
+                    // Short polls so close() is noticed without interrupting a flush in progress
+                    UserScoreRecord next = queue.poll(Math.min(remaining, POLL_NANOS), TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // The batch is already off the queue, so close() would never see it. Flush it
+                // before restoring the flag, which would make an interruptible channel fail the write
+                flush(batch);
+                Thread.currentThread().interrupt();
+                return;
+            }
+            flush(batch);
+        }
+    }
+
+    private void flush(List<UserScoreRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            scoreStore.saveScores(batch);
+            recordsWritten.addAndGet(batch.size());
+        } catch (Exception e) {
+            recordsFailed.addAndGet(batch.size());
+            System.err.println("Failed to flush " + batch.size() + " scores: " + e.getMessage());
+            handleFailure(batch);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            lastFlushNanos = elapsed;
+            flushes.incrementAndGet();
+            totalFlushNanos.addAndGet(elapsed);
+            maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+            batch.clear();
+        }
+    }
+
+    private void handleFailure(List<UserScoreRecord> batch) {
+        Consumer<List<UserScoreRecord>> handler = failureHandler;
+        if (handler == null) {
+            return;
+        }
+        try {
+            handler.accept(new ArrayList<>(batch));
+        } catch (Exception e) {
+            System.err.println("Failure handler rejected " + batch.size() + " scores: " + e.getMessage());
+        }
+    }
+
+    // Receives every batch whose write failed, e.g. to journal it for a later retry
+    public void setFailureHandler(Consumer<List<UserScoreRecord>> failureHandler) {
+        this.failureHandler = failureHandler;
+    }
+
+    // SHUTDOWN
+    // Stops accepting new scores and blocks until everything queued has been written
+    @Override
+    public void close() {
+        if (!accepting) {
+            return;
+        }
+        accepting = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Catch anything a racing submit() slipped in after the writer's last check
+        List<UserScoreRecord> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        flush(rest);
+    }
+
+    // GETTERS
+    public int getQueueDepth() { return queue.size(); }
+    public int getRemainingCapacity() { return queue.remainingCapacity(); }
+    public long getRecordsWritten() { return recordsWritten.get(); }
+    public long getRecordsFailed() { return recordsFailed.get(); }
+    public long getRecordsRejected() { return recordsRejected.get(); }
+    public long getFlushCount() { return flushes.get(); }
+    public double getLastFlushMillis() { return lastFlushNanos / 1_000_000.0; }
+    public double getMaxFlushMillis() { return maxFlushNanos.get() / 1_000_000.0; }
+
+    public double getAverageFlushMillis() {
+        long count = flushes.get();
+        return count == 0 ? 0.0 : totalFlushNanos.get() / (double) count / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ScoreWriteQueue[depth=%d, written=%d, failed=%d, rejected=%d, flushes=%d, avgFlushMs=%.3f, maxFlushMs=%.3f]",
+                getQueueDepth(), getRecordsWritten(), getRecordsFailed(), getRecordsRejected(),
+                getFlushCount(), getAverageFlushMillis(), getMaxFlushMillis());
+    }
+}
@@ -0,0 +1,104 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process name &lt;-&gt; id cache over the {@code users} table.
+ *
+ * Score rows store an integer user id; this keeps saves from looking the
+ * name up on every insert and lets reads hand out one shared String per
+ * user instead of one per row. Ids come from the database, so they stay
+ * valid across processes; a miss falls through to the table.
+ *
+ * Only ids that are known to be committed are cached. A caller that
+ * inserts a user inside a transaction calls {@link #remember} after the
+ * commit, so a rollback can never leave a dangling id behind.
+ */
+public class UserDictionary {
+
+    static final String TABLE_NAME = "users";
+
+    private static final String INSERT_SQL = "INSERT OR IGNORE INTO " + TABLE_NAME + "(name) VALUES(?)";
+    private static final String SELECT_ID_SQL = "SELECT id FROM " + TABLE_NAME + " WHERE name = ?";
+    private static final String SELECT_NAME_SQL = "SELECT name FROM " + TABLE_NAME + " WHERE id = ?";
+    private static final String SELECT_ALL_SQL = "SELECT id, name FROM " + TABLE_NAME;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+    // Warms the cache with every known user
+    public void load(PooledConnection conn) throws SQLException {
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery(SELECT_ALL_SQL);
+            while (rs.next()) {
+                remember(rs.getString("name"), rs.getInt("id"));
+            }
+        } finally {
+            closeQuietly(rs);
+            closeQuietly(stmt);
+        }
+    }
+
+    // Returns null when the name has not been seen by this process yet
+    public Integer cachedId(String name) {
+        return ids.get(name);
+    }
+
+    // Finds the user's id, inserting the user if needed. Does not cache the result.
+    public int lookupOrInsert(PooledConnection conn, String name) throws SQLException {
+        PreparedStatement insert = conn.prepare(INSERT_SQL);
+        insert.setString(1, name);
+        insert.executeUpdate();
+
+        PreparedStatement select = conn.prepare(SELECT_ID_SQL);
+        select.setString(1, name);
+        try (ResultSet rs = select.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("User was not inserted: " + name);
+            }
+            return rs.getInt(1);
+        }
+    }
+
+    public String nameOf(PooledConnection conn, int id) throws SQLException {
+        String name = names.get(id);
+        if (name != null) {
+            return name;
+        }
+        PreparedStatement select = conn.prepare(SELECT_NAME_SQL);
+        select.setInt(1, id);
+        try (ResultSet rs = select.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("Unknown user id: " + id);
+            }
+            name = rs.getString(1);
+        }
+        remember(name, id);
+        return name;
+    }
+
+    public void remember(String name, int id) {
+        ids.put(name, id);
+        names.put(id, name);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                System.err.println("Error closing resource: " + e.getMessage());
+            }
+        }
+    }
+}
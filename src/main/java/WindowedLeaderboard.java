@@ -0,0 +1,194 @@
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Daily and weekly leaderboards: each player's best score in the current
+ * window, one bucket per (window, difficulty).
+ *
+ * A bucket keeps every player's best of the window plus an immutable top-K
+ * list, replaced on each improvement, so a read is a sublist of that list
+ * whatever the size of the history. Buckets follow committed saves through
+ * {@link ScoreListener}; a save in a newer window replaces the bucket, and a
+ * read after the window has ended sees an empty one, so old windows expire
+ * on their own.
+ */
+public class WindowedLeaderboard implements ScoreListener {
+
+    public static final int DEFAULT_CAPACITY = 100;
+
+    /**
+     * Competition windows, in the clock's time zone. Weeks start on Monday.
+     */
+    public enum Window {
+        DAILY, WEEKLY;
+
+        // Epoch millis at which the window containing the timestamp starts
+        public long startOf(long timestamp, ZoneId zone) {
+            LocalDate date = Instant.ofEpochMilli(timestamp).atZone(zone).toLocalDate();
+            if (this == WEEKLY) {
+                date = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            }
+            return date.atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+    }
+
+    private final ScoreStore scoreStore;
+    private final Clock clock;
+    private final int capacity;
+
+    // Built once in the constructor; only the bucket references change
+    private final Map<Window, Map<Difficulty, AtomicReference<Bucket>>> buckets = new EnumMap<>(Window.class);
+
+    // CONSTRUCTORS
+    public WindowedLeaderboard(ScoreStore scoreStore) {
+        this(scoreStore, Clock.systemDefaultZone(), DEFAULT_CAPACITY);
+    }
+
+    public WindowedLeaderboard(ScoreStore scoreStore, Clock clock, int capacity) {
+        if (scoreStore == null || clock == null) {
+            throw new IllegalArgumentException("Score store and clock cannot be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.scoreStore = scoreStore;
+        this.clock = clock;
+        this.capacity = capacity;
+        for (Window window : Window.values()) {
+            Map<Difficulty, AtomicReference<Bucket>> perDifficulty = new EnumMap<>(Difficulty.class);
+            for (Difficulty difficulty : Difficulty.values()) {
+                perDifficulty.put(difficulty, new AtomicReference<>(new Bucket(currentStart(window))));
+            }
+            buckets.put(window, perDifficulty);
+        }
+        scoreStore.addScoreListener(this);
+    }
+
+    // SEEDING
+    // Reads the scores of the current week (which contains the current day) once, at startup
+    public void reload() {
+        long start = System.nanoTime();
+        onScoresCleared();
+        long rows = scoreStore.forEachScore(
+                ScoreFilter.all().between(currentStart(Window.WEEKLY), Long.MAX_VALUE), this::onScoreSaved);
+        System.out.printf("Windowed leaderboards loaded from %d scores in %.1f ms%n",
+                rows, (System.nanoTime() - start) / 1_000_000.0);
+    }
+
+    // READS
+    // Best score per player in the current window, best first; an immutable view
+    public List<UserScoreRecord> getTopScores(Difficulty difficulty, Window window, int limit) {
+        if (difficulty == null || window == null) {
+            throw new IllegalArgumentException("Difficulty and window cannot be null");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        AtomicReference<Bucket> ref = buckets.get(window).get(difficulty);
+        Bucket bucket = ref.get();
+        long start = currentStart(window);
+        if (bucket.start != start) {
+            // The window has ended with no saves since; drop the old bucket
+            ref.compareAndSet(bucket, new Bucket(start));
+            return Collections.emptyList();
+        }
+        List<UserScoreRecord> top = bucket.top;
+        return top.subList(0, Math.min(limit, top.size()));
+    }
+
+    private long currentStart(Window window) {
+        return window.startOf(clock.millis(), clock.getZone());
+    }
+
+    // UPDATES
+    @Override
+    public void onScoreSaved(UserScoreRecord record) {
+        for (Window window : Window.values()) {
+            long start = window.startOf(record.getTimestamp(), clock.getZone());
+            AtomicReference<Bucket> ref = buckets.get(window).get(record.getDifficulty());
+            while (true) {
+                Bucket bucket = ref.get();
+                if (start == bucket.start) {
+                    bucket.offer(record, capacity);
+                    break;
+                }
+                if (start < bucket.start) {
+                    break; // belongs to a window that has already expired
+                }
+                ref.compareAndSet(bucket, new Bucket(start));
+            }
+        }
+    }
+
+    @Override
+    public void onScoresCleared() {
+        for (Window window : Window.values()) {
+            for (AtomicReference<Bucket> ref : buckets.get(window).values()) {
+                ref.set(new Bucket(currentStart(window)));
+            }
+        }
+    }
+
+    /**
+     * One window of one difficulty: best score per player, plus the top K of those.
+     */
+    private static class Bucket {
+        final long start;
+        private final Map<String, UserScoreRecord> best = new HashMap<>();
+        volatile List<UserScoreRecord> top = Collections.emptyList();
+
+        Bucket(long start) {
+            this.start = start;
+        }
+
+        // Only a strictly better score replaces a player's entry
+        synchronized void offer(UserScoreRecord record, int capacity) {
+            UserScoreRecord previous = best.get(record.getUserName());
+            if (previous != null && previous.getScore() >= record.getScore()) {
+                return;
+            }
+            best.put(record.getUserName(), record);
+
+            List<UserScoreRecord> current = top;
+            int pos = insertionPoint(current, record);
+            if (pos >= capacity) {
+                return;
+            }
+            // A player's best only rises, so their old entry (if listed) is below pos
+            List<UserScoreRecord> updated = new ArrayList<>(Math.min(current.size() + 1, capacity));
+            updated.addAll(current.subList(0, pos));
+            updated.add(record);
+            for (int i = pos; i < current.size() && updated.size() < capacity; i++) {
+                if (current.get(i) != previous) {
+                    updated.add(current.get(i));
+                }
+            }
+            top = Collections.unmodifiableList(updated);
+        }
+
+        private static int insertionPoint(List<UserScoreRecord> sorted, UserScoreRecord record) {
+            int low = 0;
+            int high = sorted.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (LeaderboardCache.LEADERBOARD_ORDER.compare(sorted.get(mid), record) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * Runs the ScoreStore contract against InMemoryScoreStore.
+ */
+class InMemoryScoreStoreTest extends ScoreStoreContractTest {
+
+    @Override
+    protected ScoreStore createStore() {
+        return new InMemoryScoreStore();
+    }
+}
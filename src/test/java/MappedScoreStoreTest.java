@@ -0,0 +1,131 @@
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the ScoreStore contract against MappedScoreStore, plus reopening,
+ * crash recovery and compaction.
+ */
+class MappedScoreStoreTest extends ScoreStoreContractTest {
+
+    private static final String TEST_BASE = "test_mapped_store";
+
+    @Override
+    protected ScoreStore createStore() {
+        return new MappedScoreStore(TEST_BASE, 0, MappedScoreStore.DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    @Override
+    protected void cleanUp() {
+        for (String suffix : new String[]{".log", ".users", ".EASY.seg", ".HARD.seg"}) {
+            File file = new File(TEST_BASE + suffix);
+            if (file.exists()) {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("scores should survive closing and reopening the log")
+    void testReopen() {
+        for (int i = 0; i < 5000; i++) {
+            store.saveScore(new UserScoreRecord("U" + (i % 10), i % 9, Difficulty.EASY, 1000L + i));
+        }
+        store.close();
+
+        store = createStore();
+        store.initialize();
+
+        assertEquals(5000, store.forEachScore(ScoreFilter.all(), r -> { }));
+        UserScoreRecord best = store.getTopScores(Difficulty.EASY, 1).get(0);
+        assertEquals(8, best.getScore());
+        assertEquals("U4", best.getUserName()); // newest 8 is i = 4994
+    }
+
+    @Test
+    @DisplayName("a torn record at the tail should be dropped on reopen")
+    void testRecoversFromTornRecord() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            store.saveScore(new UserScoreRecord("U" + i, i, Difficulty.EASY, 1000L + i));
+        }
+        store.close();
+
+        // Corrupt the score of the last record without fixing its checksum
+        try (RandomAccessFile log = new RandomAccessFile(TEST_BASE + ".log", "rw")) {
+            log.seek(MappedScoreStore.HEADER_SIZE + 9L * MappedScoreStore.RECORD_SIZE + 4);
+            log.writeShort(99);
+        }
+
+        store = createStore();
+        store.initialize();
+
+        assertEquals(9, store.forEachScore(ScoreFilter.all(), r -> { }));
+        assertEquals(8, store.getTopScores(Difficulty.EASY, 1).get(0).getScore());
+
+        // Appends continue after the last good record
+        store.saveScore(new UserScoreRecord("New", 50, Difficulty.EASY, 2000L));
+        assertEquals(10, store.forEachScore(ScoreFilter.all(), r -> { }));
+        assertEquals("New", store.getTopScores(Difficulty.EASY, 1).get(0).getUserName());
+    }
+
+    @Test
+    @DisplayName("records written after the last header update should be kept")
+    void testRecoversRecordsPastHeaderCount() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            store.saveScore(new UserScoreRecord("U" + i, i, Difficulty.HARD, 1000L + i));
+        }
+        store.close();
+
+        // Simulate a crash between writing a record and updating the count
+        try (RandomAccessFile log = new RandomAccessFile(TEST_BASE + ".log", "rw")) {
+            log.seek(8);
+            log.writeLong(7);
+        }
+
+        store = createStore();
+        store.initialize();
+
+        assertEquals(10, store.forEachScore(ScoreFilter.all(), r -> { }));
+    }
+
+    @Test
+    @DisplayName("compaction should keep reads in leaderboard order across segment and tail")
+    void testCompaction() {
+        MappedScoreStore mapped = (MappedScoreStore) store;
+        for (int i = 0; i < 2000; i++) {
+            store.saveScore(new UserScoreRecord("A" + i, (i * 7) % 100, Difficulty.HARD, 1000L + i));
+        }
+        List<UserScoreRecord> before = store.getTopScores(Difficulty.HARD, 50);
+
+        mapped.compact();
+        assertEquals(0, mapped.getUncompactedCount(Difficulty.HARD));
+        assertEquals(before, store.getTopScores(Difficulty.HARD, 50));
+
+        // New scores land in the tail and merge with the segment
+        store.saveScore(new UserScoreRecord("Tail", 100, Difficulty.HARD, 500L));
+        assertEquals(1, mapped.getUncompactedCount(Difficulty.HARD));
+        assertEquals("Tail", store.getTopScores(Difficulty.HARD, 1).get(0).getUserName());
+
+        // Pages over segment + tail see every record once
+        long seen = 0;
+        ScoreCursor cursor = null;
+        do {
+            ScorePage page = store.getScoresPage(Difficulty.HARD, cursor, 137);
+            seen += page.getRecords().size();
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(2001, seen);
+
+        // Segments survive a reopen
+        store.close();
+        store = createStore();
+        store.initialize();
+        assertEquals(1, ((MappedScoreStore) store).getUncompactedCount(Difficulty.HARD));
+        assertEquals("Tail", store.getTopScores(Difficulty.HARD, 1).get(0).getUserName());
+    }
+}
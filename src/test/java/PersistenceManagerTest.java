@@ -0,0 +1,713 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for PersistenceManager against a real SQLite file.
+ */
+class PersistenceManagerTest {
+
+    private static final String TEST_DB_FILE = "test_persistence_manager.db";
+    private PersistenceManager persistenceManager;
+
+    @BeforeEach
+    void setUp() {
+        deleteDatabaseFiles();
+        persistenceManager = new PersistenceManager(TEST_DB_FILE, 2);
+        persistenceManager.initializeDatabase();
+    }
+
+    @AfterEach
+    void tearDown() {
+        persistenceManager.close();
+        deleteDatabaseFiles();
+    }
+
+    private void deleteDatabaseFiles() {
+        for (String suffix : new String[]{"", "-wal", "-shm", ".snapshot"}) {
+            File dbFile = new File(TEST_DB_FILE + suffix);
+            if (dbFile.exists()) {
+                dbFile.delete();
+            }
+        }
+    }
+
+    // CONNECTION POOL TESTS
+
+    @Test
+    @DisplayName("Repeated saves should reuse pooled connections and cached statements")
+    void testStatementCacheReuse() {
+        for (int i = 0; i < 10; i++) {
+            persistenceManager.saveScore(new UserScoreRecord("Alice", i, Difficulty.EASY, 1000L + i));
+        }
+
+        PoolStats stats = persistenceManager.getPoolStats();
+        assertTrue(stats.getOpenConnections() <= 2);
+        assertEquals(0, stats.getInUse());
+        assertTrue(stats.getStatementCacheHits() >= 9);
+        assertEquals(10, persistenceManager.loadAllScores().size());
+    }
+
+    @Test
+    @DisplayName("Concurrent saves should never exceed the pool bound")
+    void testConcurrentSavesStayBounded() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                final int n = i;
+                futures.add(executor.submit(() ->
+                        persistenceManager.saveScore(new UserScoreRecord("User" + n, n % 9, Difficulty.HARD, 1000L + n))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        PoolStats stats = persistenceManager.getPoolStats();
+        assertTrue(stats.getOpenConnections() <= stats.getMaxSize());
+        assertEquals(0, stats.getInUse());
+        assertEquals(60, persistenceManager.loadAllScores().size());
+    }
+
+    @Test
+    @DisplayName("Closing a pooled connection twice should release it once")
+    void testDoubleCloseReleasesOnce() throws SQLException {
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite::memory:", 1, 1);
+        try {
+            PooledConnection first = pool.acquire();
+            first.close();
+            first.close();
+            assertEquals(0, pool.getStats().getInUse());
+
+            // The reused connection can be closed again once it is handed out
+            PooledConnection second = pool.acquire();
+            assertSame(first, second);
+            assertEquals(1, pool.getStats().getInUse());
+            second.close();
+            assertEquals(0, pool.getStats().getInUse());
+        } finally {
+            pool.close();
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionPool("jdbc:sqlite::memory:", 1, 0));
+    }
+
+    @Test
+    @DisplayName("A closed PersistenceManager should reject further work")
+    void testClosedPoolRejectsWork() {
+        persistenceManager.close();
+        assertThrows(RuntimeException.class, () ->
+                persistenceManager.saveScore(new UserScoreRecord("Alice", 1, Difficulty.EASY, 1000L)));
+    }
+
+    // TOP SCORES TESTS
+
+    @Test
+    @DisplayName("getTopScores should return the best scores for one difficulty only")
+    void testGetTopScores() {
+        persistenceManager.saveScore(new UserScoreRecord("Low", 1, Difficulty.EASY, 1000L));
+        persistenceManager.saveScore(new UserScoreRecord("High", 7, Difficulty.EASY, 1001L));
+        persistenceManager.saveScore(new UserScoreRecord("HighLater", 7, Difficulty.EASY, 2000L));
+        persistenceManager.saveScore(new UserScoreRecord("Middle", 4, Difficulty.EASY, 1002L));
+        persistenceManager.saveScore(new UserScoreRecord("Hard", 8, Difficulty.HARD, 1003L));
+
+        List<UserScoreRecord> top = persistenceManager.getTopScores(Difficulty.EASY, 3);
+
+        assertEquals(3, top.size());
+        assertEquals("HighLater", top.get(0).getUserName()); // ties broken by newest first
+        assertEquals("High", top.get(1).getUserName());
+        assertEquals("Middle", top.get(2).getUserName());
+        for (UserScoreRecord r : top) {
+            assertEquals(Difficulty.EASY, r.getDifficulty());
+        }
+    }
+
+    @Test
+    @DisplayName("getTopScores should reject invalid arguments")
+    void testGetTopScoresInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> persistenceManager.getTopScores(null, 5));
+        assertThrows(IllegalArgumentException.class, () -> persistenceManager.getTopScores(Difficulty.EASY, 0));
+    }
+
+    // BATCH SAVE TESTS
+
+    @Test
+    @DisplayName("saveScores should write the whole batch or nothing")
+    void testSaveScoresIsAtomic() {
+        List<UserScoreRecord> batch = new ArrayList<>();
+        batch.add(new UserScoreRecord("A", 1, Difficulty.EASY, 1000L));
+        batch.add(new UserScoreRecord("B", 2, Difficulty.EASY, 1001L));
+        persistenceManager.saveScores(batch);
+        assertEquals(2, persistenceManager.loadAllScores().size());
+
+        List<UserScoreRecord> broken = new ArrayList<>();
+        broken.add(new UserScoreRecord("C", 3, Difficulty.EASY, 1002L));
+        broken.add(null);
+        assertThrows(IllegalArgumentException.class, () -> persistenceManager.saveScores(broken));
+        assertEquals(2, persistenceManager.loadAllScores().size());
+    }
+
+    @Test
+    @DisplayName("saveScores should commit large inputs in chunks")
+    void testSaveScoresInChunks() {
+        List<UserScoreRecord> records = new ArrayList<>();
+        for (int i = 0; i < 2_500; i++) {
+            records.add(new UserScoreRecord("Bulk" + i, i % 9, Difficulty.EASY, 1000L + i));
+        }
+
+        IngestReport report = persistenceManager.saveScores(records, 1_000);
+
+        assertEquals(2_500, report.getRowsWritten());
+        assertEquals(3, report.getChunks());
+        assertEquals(2_500, persistenceManager.loadAllScores().size());
+    }
+
+    @Test
+    @DisplayName("importScoresCsv should stream lines and skip malformed ones")
+    void testImportScoresCsv() {
+        String csv = ScoreCsv.HEADER + "\n" +
+                "Alice,5,EASY,1000\n" +
+                "Smith, John,7,HARD,1001\n" +
+                "\n" +
+                "Broken,notanumber,EASY,1002\n" +
+                "Bob,3,easy,1003\n";
+
+        IngestReport report = persistenceManager.importScoresCsv(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(3, report.getRowsWritten());
+        assertEquals(1, report.getRowsRejected());
+        List<UserScoreRecord> hard = persistenceManager.getTopScores(Difficulty.HARD, 5);
+        assertEquals("Smith, John", hard.get(0).getUserName());
+    }
+
+    // STREAMING TESTS
+
+    @Test
+    @DisplayName("forEachScore should visit only rows matching the filter")
+    void testForEachScoreFilters() {
+        persistenceManager.saveScore(new UserScoreRecord("Old", 1, Difficulty.EASY, 1000L));
+        persistenceManager.saveScore(new UserScoreRecord("New", 2, Difficulty.EASY, 5000L));
+        persistenceManager.saveScore(new UserScoreRecord("Hard", 3, Difficulty.HARD, 5000L));
+
+        List<String> names = new ArrayList<>();
+        long visited = persistenceManager.forEachScore(
+                ScoreFilter.forDifficulty(Difficulty.EASY).between(2000L, 6000L),
+                r -> names.add(r.getUserName()));
+
+        assertEquals(1, visited);
+        assertEquals(List.of("New"), names);
+        assertEquals(3, persistenceManager.forEachScore(ScoreFilter.all(), r -> { }));
+    }
+
+    @Test
+    @DisplayName("streamScores should release its connection when closed")
+    void testStreamScoresReleasesConnection() {
+        for (int i = 0; i < 5; i++) {
+            persistenceManager.saveScore(new UserScoreRecord("S" + i, i, Difficulty.HARD, 1000L + i));
+        }
+
+        try (Stream<UserScoreRecord> scores = persistenceManager.streamScores(ScoreFilter.all())) {
+            assertEquals(10, scores.mapToInt(UserScoreRecord::getScore).sum());
+            assertEquals(1, persistenceManager.getPoolStats().getInUse());
+        }
+        assertEquals(0, persistenceManager.getPoolStats().getInUse());
+    }
+
+    // PAGINATION TESTS
+
+    @Test
+    @DisplayName("getScoresPage should walk the leaderboard without gaps or duplicates")
+    void testKeysetPagination() {
+        List<UserScoreRecord> records = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            // Plenty of ties on both score and timestamp
+            records.add(new UserScoreRecord("P" + i, i % 4, Difficulty.EASY, 1000L + (i % 3)));
+        }
+        records.add(new UserScoreRecord("OtherDifficulty", 9, Difficulty.HARD, 1000L));
+        persistenceManager.saveScores(records);
+
+        List<UserScoreRecord> seen = new ArrayList<>();
+        ScoreCursor cursor = null;
+        int pages = 0;
+        do {
+            ScorePage page = persistenceManager.getScoresPage(Difficulty.EASY, cursor, 5);
+            seen.addAll(page.getRecords());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(5, pages);
+        assertEquals(23, seen.size());
+        assertEquals(23, seen.stream().map(UserScoreRecord::getUserName).distinct().count());
+        for (int i = 1; i < seen.size(); i++) {
+            UserScoreRecord prev = seen.get(i - 1);
+            UserScoreRecord cur = seen.get(i);
+            assertTrue(prev.getScore() > cur.getScore() ||
+                    (prev.getScore() == cur.getScore() && prev.getTimestamp() >= cur.getTimestamp()));
+        }
+    }
+
+    @Test
+    @DisplayName("loadScoreCounts should aggregate by difficulty and score")
+    void testLoadScoreCounts() {
+        persistenceManager.saveScore(new UserScoreRecord("A", 2, Difficulty.EASY, 1000L));
+        persistenceManager.saveScore(new UserScoreRecord("B", 2, Difficulty.EASY, 1001L));
+        persistenceManager.saveScore(new UserScoreRecord("C", 0, Difficulty.EASY, 1002L));
+        persistenceManager.saveScore(new UserScoreRecord("D", 5, Difficulty.HARD, 1003L));
+
+        Map<Difficulty, long[]> counts = persistenceManager.loadScoreCounts();
+
+        assertArrayEquals(new long[]{1, 0, 2}, counts.get(Difficulty.EASY));
+        assertArrayEquals(new long[]{0, 0, 0, 0, 0, 1}, counts.get(Difficulty.HARD));
+    }
+
+    // SCHEMA TESTS
+
+    @Test
+    @DisplayName("A legacy TEXT schema should be migrated to user ids and difficulty ordinals")
+    void testLegacySchemaMigration() throws SQLException {
+        persistenceManager.close();
+        deleteDatabaseFiles();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB_FILE);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE quiz_scores (id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "user_name TEXT NOT NULL, score INTEGER NOT NULL, difficulty TEXT NOT NULL, timestamp INTEGER NOT NULL)");
+            stmt.execute("INSERT INTO quiz_scores(user_name, score, difficulty, timestamp) VALUES " +
+                    "('Alice', 5, 'EASY', 1000), ('Bob', 7, 'HARD', 1001), ('Alice', 9, 'HARD', 1002)");
+        }
+
+        persistenceManager = new PersistenceManager(TEST_DB_FILE, 2);
+        persistenceManager.setMigrationChunkRows(2); // forces more than one chunk
+        persistenceManager.initializeDatabase();
+        assertEquals(6, persistenceManager.getAppliedMigrations().size());
+
+        List<UserScoreRecord> hard = persistenceManager.getTopScores(Difficulty.HARD, 10);
+        assertEquals(2, hard.size());
+        assertEquals("Alice", hard.get(0).getUserName());
+        assertEquals(9, hard.get(0).getScore());
+        assertEquals("Bob", hard.get(1).getUserName());
+        assertEquals(1, persistenceManager.getTopScores(Difficulty.EASY, 10).size());
+        assertEquals(9, persistenceManager.getPersonalStats("Alice").getBestScore(Difficulty.HARD));
+        assertEquals(2, persistenceManager.getPersonalStats("Alice").getTotalAttempts());
+
+        // Existing users keep their id; new rows continue after the old ids
+        persistenceManager.saveScore(new UserScoreRecord("Alice", 1, Difficulty.EASY, 2000L));
+        persistenceManager.saveScore(new UserScoreRecord("Carol", 2, Difficulty.EASY, 2001L));
+        assertEquals(5, persistenceManager.loadAllScores().size());
+    }
+
+    @Test
+    @DisplayName("A legacy table whose ids start after a large gap should still be migrated")
+    void testLegacySchemaMigrationWithIdGap() throws SQLException {
+        persistenceManager.close();
+        deleteDatabaseFiles();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB_FILE);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE quiz_scores (id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "user_name TEXT NOT NULL, score INTEGER NOT NULL, difficulty TEXT NOT NULL, timestamp INTEGER NOT NULL)");
+            // Cleared and refilled, so the ids carry on from where they were
+            for (int i = 0; i < 10; i++) {
+                stmt.execute("INSERT INTO quiz_scores(id, user_name, score, difficulty, timestamp) VALUES (" +
+                        (60_000 + i) + ", 'Gap', " + i + ", 'EASY', " + (1000 + i) + ")");
+            }
+            stmt.execute("INSERT INTO quiz_scores(id, user_name, score, difficulty, timestamp) VALUES " +
+                    "(90000, 'Gap', 3, 'HARD', 2000)");
+        }
+
+        persistenceManager = new PersistenceManager(TEST_DB_FILE, 2);
+        persistenceManager.setMigrationChunkRows(4);
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> persistenceManager.initializeDatabase());
+
+        assertEquals(11, persistenceManager.loadAllScores().size());
+        assertEquals(11, persistenceManager.getPersonalStats("Gap").getTotalAttempts());
+        assertEquals(9, persistenceManager.getTopScores(Difficulty.EASY, 1).get(0).getScore());
+    }
+
+    @Test
+    @DisplayName("Names should round-trip through the users table across batches and reopen")
+    void testUserDictionaryRoundTrip() {
+        List<UserScoreRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(new UserScoreRecord("Player " + (i % 7) + " \u00e9", i, Difficulty.EASY, 1000L + i));
+        }
+        persistenceManager.saveScores(batch, 30);
+        persistenceManager.close();
+
+        persistenceManager = new PersistenceManager(TEST_DB_FILE, 2);
+        persistenceManager.initializeDatabase();
+
+        List<UserScoreRecord> top = persistenceManager.getTopScores(Difficulty.EASY, 1);
+        assertEquals("Player " + (99 % 7) + " \u00e9", top.get(0).getUserName());
+        assertEquals(100, persistenceManager.forEachScore(ScoreFilter.all(), r -> { }));
+    }
+
+    @Test
+    @DisplayName("Migrations should record the schema version and run only once")
+    void testMigrationsRunOnce() throws SQLException {
+        assertEquals(6, persistenceManager.getAppliedMigrations().size());
+        persistenceManager.saveScore(new UserScoreRecord("Alice", 3, Difficulty.EASY, 1000L));
+        persistenceManager.close();
+
+        persistenceManager = new PersistenceManager(TEST_DB_FILE, 2);
+        persistenceManager.initializeDatabase();
+        assertTrue(persistenceManager.getAppliedMigrations().isEmpty());
+        assertEquals(1, persistenceManager.loadAllScores().size());
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB_FILE);
+             Statement stmt = conn.createStatement()) {
+            assertEquals(6, stmt.executeQuery("PRAGMA user_version").getInt(1));
+            assertEquals(2, stmt.executeQuery("PRAGMA auto_vacuum").getInt(1));
+            // Retention seeks the timestamp index instead of scanning the table
+            assertTrue(stmt.executeQuery("EXPLAIN QUERY PLAN SELECT id FROM quiz_scores WHERE timestamp < 5 " +
+                    "ORDER BY timestamp, id LIMIT 10").getString("detail").contains("idx_quiz_scores_timestamp"));
+        }
+    }
+
+    @Test
+    @DisplayName("A database from a newer build should be refused")
+    void testRejectsNewerSchema() throws SQLException {
+        persistenceManager.close();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB_FILE);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA user_version = 99");
+        }
+
+        persistenceManager = new PersistenceManager(TEST_DB_FILE, 2);
+        assertThrows(IllegalStateException.class, () -> persistenceManager.initializeDatabase());
+    }
+
+    // PERSONAL STATS TESTS
+
+    @Test
+    @DisplayName("Personal stats should follow single saves, batches and clears")
+    void testPersonalStats() {
+        persistenceManager.saveScore(new UserScoreRecord("Alice", 4, Difficulty.EASY, 1000L));
+        List<UserScoreRecord> batch = new ArrayList<>();
+        batch.add(new UserScoreRecord("Alice", 2, Difficulty.EASY, 3000L));
+        batch.add(new UserScoreRecord("Alice", 6, Difficulty.HARD, 2000L));
+        batch.add(new UserScoreRecord("Bob", 1, Difficulty.EASY, 1500L));
+        persistenceManager.saveScores(batch, 2);
+
+        PersonalStats alice = persistenceManager.getPersonalStats("Alice");
+        assertEquals(4, alice.getBestScore(Difficulty.EASY));
+        assertEquals(2, alice.getAttempts(Difficulty.EASY));
+        assertEquals(6, alice.getBestScore(Difficulty.HARD));
+        assertEquals(3000L, alice.getLastPlayed());
+        assertEquals(-1, persistenceManager.getPersonalStats("Bob").getBestScore(Difficulty.HARD));
+        assertFalse(persistenceManager.getPersonalStats("Nobody").hasPlayed());
+
+        persistenceManager.clearAllScores();
+        assertFalse(persistenceManager.getPersonalStats("Alice").hasPlayed());
+    }
+
+    // CONTENTION TESTS
+
+    @Test
+    @DisplayName("A write blocked by another process's lock should retry until the lock is released")
+    void testBusyRetry() throws Exception {
+        PersistenceManager other = new PersistenceManager(TEST_DB_FILE, 2, 50);
+        other.setBusyRetry(20, 10);
+        try (Connection locker = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB_FILE);
+             Statement stmt = locker.createStatement()) {
+            stmt.execute("BEGIN IMMEDIATE");
+            Thread release = new Thread(() -> {
+                try {
+                    Thread.sleep(200);
+                    stmt.execute("COMMIT");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            release.start();
+            other.saveScore(new UserScoreRecord("Patient", 3, Difficulty.EASY, 1000L));
+            release.join();
+        }
+        assertTrue(other.getBusyRetries() > 0);
+        assertEquals(0, other.getBusyFailures());
+        assertEquals(1, persistenceManager.loadAllScores().size());
+        other.close();
+    }
+
+    @Test
+    @DisplayName("A write that runs out of retries should fail and leave its connection usable")
+    void testBusyFailure() throws Exception {
+        PersistenceManager other = new PersistenceManager(TEST_DB_FILE, 1, 20);
+        other.setBusyRetry(1, 5);
+        try (Connection locker = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB_FILE);
+             Statement stmt = locker.createStatement()) {
+            stmt.execute("BEGIN IMMEDIATE");
+            assertThrows(RuntimeException.class, () ->
+                    other.saveScore(new UserScoreRecord("Impatient", 3, Difficulty.EASY, 1000L)));
+            stmt.execute("COMMIT");
+        }
+        assertEquals(1, other.getBusyRetries());
+        assertEquals(1, other.getBusyFailures());
+
+        other.saveScore(new UserScoreRecord("Impatient", 4, Difficulty.EASY, 2000L));
+        assertEquals(1, other.loadAllScores().size());
+        assertEquals(1, other.getPersonalStats("Impatient").getTotalAttempts());
+        other.close();
+    }
+
+    // IN-MEMORY TESTS
+
+    @Test
+    @DisplayName("An in-memory store should load the file at startup and snapshot it back on close")
+    void testInMemorySnapshot() {
+        persistenceManager.saveScore(new UserScoreRecord("OnDisk", 3, Difficulty.EASY, 1000L));
+        persistenceManager.close();
+
+        PersistenceManager memory = PersistenceManager.inMemory(TEST_DB_FILE, 0);
+        memory.initializeDatabase();
+        assertEquals("OnDisk", memory.getTopScores(Difficulty.EASY, 1).get(0).getUserName());
+        memory.saveScore(new UserScoreRecord("InMemory", 5, Difficulty.EASY, 2000L));
+        PersistenceManager reader = new PersistenceManager(TEST_DB_FILE);
+        assertEquals(1, reader.loadAllScores().size()); // not yet on disk
+        reader.close();
+        memory.close();
+        assertEquals(1, memory.getMemoryDatabase().getSnapshotCount());
+
+        persistenceManager = new PersistenceManager(TEST_DB_FILE);
+        persistenceManager.initializeDatabase();
+        List<UserScoreRecord> all = persistenceManager.loadAllScores();
+        assertEquals(2, all.size());
+        assertEquals("InMemory", all.get(0).getUserName());
+        assertEquals(5, persistenceManager.getPersonalStats("InMemory").getBestScore(Difficulty.EASY));
+    }
+
+    @Test
+    @DisplayName("An in-memory store should snapshot on its schedule")
+    void testInMemoryScheduledSnapshot() throws InterruptedException {
+        persistenceManager.close();
+        new File(TEST_DB_FILE).delete();
+
+        PersistenceManager memory = PersistenceManager.inMemory(TEST_DB_FILE, 50);
+        memory.initializeDatabase();
+        memory.saveScore(new UserScoreRecord("Scheduled", 2, Difficulty.HARD, 1000L));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (memory.getMemoryDatabase().getSnapshotCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(memory.getMemoryDatabase().getSnapshotCount() >= 2);
+
+        PersistenceManager reader = new PersistenceManager(TEST_DB_FILE);
+        assertEquals(1, reader.loadAllScores().size());
+        reader.close();
+        memory.close();
+        persistenceManager = new PersistenceManager(TEST_DB_FILE);
+    }
+
+    // EXPORT / IMPORT TESTS
+
+    @Test
+    @DisplayName("Scores exported to a columnar file should import into another database unchanged")
+    void testColumnarRoundTrip(@TempDir Path dir) {
+        List<UserScoreRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            // Out-of-order timestamps give negative deltas
+            batch.add(new UserScoreRecord(i % 3 == 0 ? "Zoë, the 3rd" : "P" + (i % 40), i % 11,
+                    i % 2 == 0 ? Difficulty.EASY : Difficulty.HARD, 1_700_000_000_000L + (i % 7) * 1000L - i));
+        }
+        persistenceManager.saveScores(batch);
+        Path file = dir.resolve("scores.qsc");
+
+        assertEquals(500, persistenceManager.exportScores(file).getRowsWritten());
+
+        PersistenceManager target = PersistenceManager.inMemory(null, 0);
+        target.initializeDatabase();
+        assertEquals(500, target.importScores(file).getRowsWritten());
+        assertEquals(persistenceManager.loadAllScores(), target.loadAllScores());
+        assertEquals(persistenceManager.getPersonalStats("Zoë, the 3rd").toString(),
+                target.getPersonalStats("Zoë, the 3rd").toString());
+        target.close();
+    }
+
+    @Test
+    @DisplayName("A failed export should not leave its temp file behind")
+    void testFailedExportRemovesTempFile(@TempDir Path dir) throws IOException {
+        persistenceManager.saveScore(new UserScoreRecord("A", 1, Difficulty.EASY, 1000L));
+        Path file = dir.resolve("scores.qsc");
+        Files.createDirectories(file.resolve("in-the-way")); // a non-empty directory cannot be replaced
+
+        assertThrows(UncheckedIOException.class, () -> persistenceManager.exportScores(file));
+        assertFalse(Files.exists(dir.resolve("scores.qsc.tmp")));
+    }
+
+    @Test
+    @DisplayName("A columnar file should round-trip across chunks and reject corruption")
+    void testColumnarChunks(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("chunks.qsc");
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ColumnarScores.Writer writer = new ColumnarScores.Writer(out, 2);
+            writer.add("A", 1, Difficulty.EASY, 5000L);
+            writer.add("B", 2, Difficulty.HARD, 4000L);
+            writer.add("A", 3, Difficulty.HARD, Long.MAX_VALUE / 2);
+            assertEquals(3, writer.finish());
+            assertEquals(2, writer.getChunks());
+        }
+        IngestReport report = persistenceManager.importScores(file);
+        assertEquals(3, report.getRowsWritten());
+        assertEquals(2, report.getChunks());
+        assertEquals(3, persistenceManager.getPersonalStats("A").getBestScore(Difficulty.HARD));
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 6] ^= 0x40; // inside the second chunk's body
+        Files.write(file, bytes);
+        assertThrows(UncheckedIOException.class, () -> persistenceManager.importScores(file));
+        assertEquals(5, persistenceManager.loadAllScores().size()); // the intact first chunk went in again
+
+        // The row count sits outside the checksum, right after the 17-byte file header
+        bytes[bytes.length - 6] ^= 0x40;
+        ByteBuffer.wrap(bytes).putInt(17, Integer.MAX_VALUE);
+        Files.write(file, bytes);
+        assertThrows(UncheckedIOException.class, () -> persistenceManager.importScores(file));
+        ByteBuffer.wrap(bytes).putInt(17, 1);
+        Files.write(file, bytes);
+        assertThrows(UncheckedIOException.class, () -> persistenceManager.importScores(file));
+        assertEquals(5, persistenceManager.loadAllScores().size());
+    }
+
+    @Test
+    @DisplayName("Importing should reject rows a score record would not accept, before writing the chunk")
+    void testColumnarRejectsInvalidRows(@TempDir Path dir) throws IOException {
+        List<UserScoreRecord> notified = new ArrayList<>();
+        persistenceManager.addScoreListener(notified::add);
+        Path file = dir.resolve("invalid.qsc");
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ColumnarScores.Writer writer = new ColumnarScores.Writer(out, 2);
+            writer.add(" Padded ", 1, Difficulty.EASY, 5000L);
+            writer.add("B", 2, Difficulty.EASY, 5001L);
+            writer.add("C", 3, Difficulty.EASY, 5002L);
+            writer.add("D", -1, Difficulty.EASY, 5003L);
+            writer.finish();
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> persistenceManager.importScores(file));
+        assertEquals(2, persistenceManager.loadAllScores().size());
+        assertEquals(persistenceManager.loadAllScores().size(), notified.size());
+        assertEquals(1, persistenceManager.getPersonalStats("Padded").getAttempts(Difficulty.EASY));
+        assertEquals(0, persistenceManager.getPersonalStats("C").getAttempts(Difficulty.EASY));
+
+        Path blank = dir.resolve("blank.qsc");
+        try (FileChannel out = FileChannel.open(blank, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ColumnarScores.Writer writer = new ColumnarScores.Writer(out);
+            writer.add("  ", 1, Difficulty.HARD, 5000L);
+            writer.finish();
+        }
+        assertThrows(IllegalArgumentException.class, () -> persistenceManager.importScores(blank));
+        assertEquals(2, persistenceManager.loadAllScores().size());
+    }
+
+    // RETENTION TESTS
+
+    @Test
+    @DisplayName("Steps another process applied meanwhile should be skipped, not run again")
+    void testConcurrentMigrationsSkipAppliedSteps(@TempDir Path dir) throws SQLException {
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + dir.resolve("shared.db"), 2, 4);
+        int[] runs = new int[4];
+        SchemaMigrator[] other = new SchemaMigrator[1];
+        List<SchemaMigrator.Applied> otherApplied = new ArrayList<>();
+        List<SchemaMigrator.Step> steps = List.of(
+                // The first step lets a second process migrate everything while this one is still running
+                SchemaMigrator.Step.chunked(1, "start", conn -> {
+                    if (runs[1]++ == 0) {
+                        try (PooledConnection second = pool.acquire()) {
+                            otherApplied.addAll(other[0].migrate(second));
+                        }
+                    }
+                }),
+                SchemaMigrator.Step.transactional(2, "create two", conn -> {
+                    runs[2]++;
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute("CREATE TABLE two (x INTEGER)");
+                    }
+                }),
+                SchemaMigrator.Step.transactional(3, "create three", conn -> {
+                    runs[3]++;
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute("CREATE TABLE three (x INTEGER)");
+                    }
+                }));
+        other[0] = new SchemaMigrator(steps);
+        try (PooledConnection first = pool.acquire()) {
+            List<SchemaMigrator.Applied> applied = new SchemaMigrator(steps).migrate(first);
+            assertEquals(1, applied.size());
+            assertEquals(3, otherApplied.size());
+            assertEquals(3, SchemaMigrator.getVersion(first));
+        } finally {
+            pool.close();
+        }
+        assertEquals(1, runs[2]);
+        assertEquals(1, runs[3]);
+    }
+
+    @Test
+    @DisplayName("Retention should archive, roll up and delete only expired rows")
+    void testRetention(@TempDir Path archiveDir) throws IOException {
+        long now = System.currentTimeMillis();
+        List<UserScoreRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            // 1970, newest first and in pairs, so ties straddle the batches of 10
+            batch.add(new UserScoreRecord("Old" + i, i % 4, Difficulty.EASY, 1000L + (24 - i) / 2));
+        }
+        batch.add(new UserScoreRecord("Recent", 2, Difficulty.EASY, now));
+        persistenceManager.saveScores(batch);
+        Map<Difficulty, long[]> countsBefore = persistenceManager.loadScoreCounts();
+
+        RetentionPolicy policy = new RetentionPolicy(24L * 3600 * 1000, 10, 0, 100, archiveDir);
+        ScoreRetentionJob job = new ScoreRetentionJob(persistenceManager, policy);
+        assertEquals(25, job.runOnce());
+        assertEquals(0, job.runOnce());
+
+        List<UserScoreRecord> left = persistenceManager.loadAllScores();
+        assertEquals(1, left.size());
+        assertEquals("Recent", left.get(0).getUserName());
+        // Aggregates still count the removed rows
+        assertArrayEquals(countsBefore.get(Difficulty.EASY), persistenceManager.loadScoreCounts().get(Difficulty.EASY));
+        assertEquals(1, persistenceManager.getPersonalStats("Old7").getAttempts(Difficulty.EASY));
+
+        // Three chunks of at most 10 rows, restorable with importScoresCsv
+        List<Path> chunks;
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            chunks = files.sorted().collect(Collectors.toList());
+        }
+        assertEquals(3, chunks.size());
+        long restored = 0;
+        for (Path chunk : chunks) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(chunk))) {
+                restored += persistenceManager.importScoresCsv(in).getRowsWritten();
+            }
+        }
+        assertEquals(25, restored);
+    }
+}
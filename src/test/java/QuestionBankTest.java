@@ -0,0 +1,151 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for publishing and reloading versions of the question bank.
+ * Each test puts the built-in pack back, since the bank is shared.
+ */
+class QuestionBankTest {
+
+    @TempDir
+    Path tempDir;
+
+    private PersistenceManager store;
+
+    @BeforeEach
+    void setUp() {
+        store = PersistenceManager.inMemory(null, 0);
+        store.initializeDatabase();
+    }
+
+    @AfterEach
+    void tearDown() {
+        QuestionBank.stopWatching();
+        QuestionBank.reload(List.of());
+        store.close();
+    }
+
+    // Writes a pack of true/false questions, moved into place as a complete file
+    private Path writePack(Path file, String prefix, int count) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(QuestionPack.formatLine(new TrueFalseQuestion(prefix + " " + i, "True", Difficulty.EASY),
+                    QuestionPack.Format.JSON_LINES)).append('\n');
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, text);
+        return Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Test
+    @DisplayName("A reload should reach new quizzes while running quizzes keep their version")
+    void testReloadKeepsRunningQuizzes() throws IOException {
+        Path pack = writePack(tempDir.resolve("pack.jsonl"), "First", 3);
+        QuestionSnapshot first = QuestionBank.reload(List.of(pack));
+
+        QuizManager running = new QuizManager(store);
+        running.loadQuestions();
+        running.startQuiz("Early", Difficulty.EASY);
+        assertSame(first, running.getQuestionSnapshot());
+
+        writePack(pack, "Second", 5);
+        QuestionSnapshot second = QuestionBank.reload();
+        assertEquals(first.getVersion() + 1, second.getVersion());
+        assertSame(second, QuestionBank.current());
+
+        // The running quiz still answers from the first version
+        assertEquals(3, running.getTotalQuestions());
+        assertEquals("First 0", running.getQuestion(0).getText());
+        assertTrue(running.answerQuestion(2, "True"));
+
+        QuizManager later = new QuizManager(store);
+        later.loadQuestions();
+        later.startQuiz("Late", Difficulty.EASY);
+        assertSame(second, later.getQuestionSnapshot());
+        assertEquals("Second 0", later.getQuestion(0).getText());
+
+        // Starting another quiz moves the running manager onto the new version too
+        running.startQuiz("Early", Difficulty.EASY);
+        assertEquals(5, running.getTotalQuestions());
+    }
+
+    @Test
+    @DisplayName("A reload that fails should leave the current version published")
+    void testFailedReloadKeepsCurrent() throws IOException {
+        Path pack = writePack(tempDir.resolve("pack.jsonl"), "Good", 2);
+        QuestionSnapshot good = QuestionBank.reload(List.of(pack));
+
+        Files.writeString(pack, "{\"type\":\"broken\"}\n");
+        assertThrows(IllegalStateException.class, QuestionBank::reload);
+        assertSame(good, QuestionBank.current());
+
+        Files.delete(pack);
+        assertThrows(UncheckedIOException.class, QuestionBank::reload);
+        assertSame(good, QuestionBank.current());
+    }
+
+    @Test
+    @DisplayName("The watcher should publish a new version when a pack is replaced")
+    void testWatcherReloads() throws Exception {
+        writePack(tempDir.resolve("a.jsonl"), "Before", 2);
+        QuestionSnapshot before = QuestionBank.reload(List.of(tempDir));
+        QuestionBank.watch(50);
+        assertTrue(QuestionBank.isWatching());
+
+        Files.writeString(tempDir.resolve("notes.txt"), "not a pack");
+        writePack(tempDir.resolve("b.jsonl"), "Added", 3);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (QuestionBank.current().size() != 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        QuestionSnapshot after = QuestionBank.current();
+        assertEquals(5, after.size());
+        assertTrue(after.getVersion() > before.getVersion());
+        assertEquals(2, after.getPacks().size());
+
+        QuestionBank.stopWatching();
+        assertFalse(QuestionBank.isWatching());
+    }
+
+    @Test
+    @DisplayName("A superseded version should only stay reachable through a quiz that started on it")
+    void testSupersededSnapshotIsReleased() throws Exception {
+        Path pack = writePack(tempDir.resolve("pack.jsonl"), "Old", 2);
+        QuizManager quiz = new QuizManager(store);
+        quiz.loadQuestions();
+
+        QuestionSnapshot old = QuestionBank.reload(List.of(pack));
+        quiz.startQuiz("Holder", Difficulty.EASY);
+        writePack(pack, "New", 2);
+        QuestionSnapshot next = QuestionBank.reload();
+
+        // The bank has moved on; only the quiz in progress keeps the old version
+        assertNotSame(old, next);
+        assertSame(next, QuestionBank.current());
+        assertSame(old, quiz.getQuestionSnapshot());
+
+        quiz.startQuiz("Holder", Difficulty.EASY);
+        assertSame(next, quiz.getQuestionSnapshot());
+        assertNotSame(old, QuestionBank.current());
+    }
+
+    @Test
+    @DisplayName("Questions should not expose their options for modification")
+    void testQuestionsAreImmutable() {
+        String[] options = {"Yes", "No"};
+        MultipleChoiceQuestion q = new MultipleChoiceQuestion("Q", options, "Yes", Difficulty.EASY);
+        options[0] = "Changed";
+        q.getOptions()[1] = "Changed";
+        assertArrayEquals(new String[]{"Yes", "No"}, q.getOptions());
+    }
+}
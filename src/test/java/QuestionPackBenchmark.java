@@ -0,0 +1,138 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Load-time measurements for large question packs.
+ * Not part of the normal test run (the class name does not end in Test);
+ * run it explicitly with: mvn test -Dtest=QuestionPackBenchmark
+ */
+class QuestionPackBenchmark {
+
+    private static final int PACK_QUESTIONS = 1_000_000;
+
+    // Keeps the reads in report() from being optimized away
+    private static volatile int sink;
+
+    @TempDir
+    Path tempDir;
+
+    // Every other question multiple choice, with texts of realistic length
+    static Path writePack(Path file, int count) throws IOException {
+        QuestionPack.Format format = QuestionPack.Format.of(file);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < count; i++) {
+                Difficulty difficulty = i % 3 == 0 ? Difficulty.HARD : Difficulty.EASY;
+                Questions q = i % 2 == 0
+                        ? new MultipleChoiceQuestion("Which of these, question " + i + ", is the greenhouse gas?",
+                                new String[]{"Argon " + i, "Carbon dioxide", "Nitrogen", "Helium, mostly"},
+                                "Carbon dioxide", difficulty)
+                        : new TrueFalseQuestion("Statement " + i + ": deforestation adds to warming.", "True", difficulty);
+                out.write(QuestionPack.formatLine(q, format));
+                out.newLine();
+            }
+        }
+        return file;
+    }
+
+    @Test
+    void loadLargePack() throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%-8s %8s %10s %12s %12s%n", "format", "threads", "MB", "ms", "questions/s");
+        for (QuestionPack.Format format : QuestionPack.Format.values()) {
+            Path file = writePack(tempDir.resolve(format == QuestionPack.Format.CSV ? "pack.csv" : "pack.jsonl"),
+                    PACK_QUESTIONS);
+            QuestionPack.load(file); // warm-up
+            for (int threads : new int[]{1, cores}) {
+                QuestionPack pack = QuestionPack.load(file, threads);
+                System.out.printf("%-8s %8d %10.1f %12.0f %12.0f%n", format, threads, Files.size(file) / 1e6,
+                        pack.getElapsedMillis(), pack.getQuestions().size() * 1000.0 / pack.getElapsedMillis());
+            }
+            Files.delete(file);
+        }
+    }
+
+    // Startup time and retained heap: 1M questions parsed onto the heap versus mapped
+    @Test
+    void compareTextAndMapped() throws IOException {
+        Path text = writePack(tempDir.resolve("pack.jsonl"), PACK_QUESTIONS);
+        Path binary = tempDir.resolve("pack" + MappedQuestionPack.EXTENSION);
+        long compileStart = System.nanoTime();
+        MappedQuestionPack.write(QuestionPack.load(text).getQuestions(), binary);
+        System.out.printf("compiled %,d questions in %.0f ms: %.1f MB text, %.1f MB binary%n", PACK_QUESTIONS,
+                (System.nanoTime() - compileStart) / 1e6, Files.size(text) / 1e6, Files.size(binary) / 1e6);
+
+        System.out.printf("%-8s %10s %10s %14s%n", "source", "open ms", "heap MB", "10 reads us");
+        long before = usedHeap();
+        long start = System.nanoTime();
+        QuestionSource loaded = QuestionIndex.of(QuestionPack.load(text).getQuestions());
+        report("text", start, before, loaded);
+
+        loaded = null;
+        before = usedHeap();
+        start = System.nanoTime();
+        QuestionSource mapped = MappedQuestionPack.open(binary);
+        report("mapped", start, before, mapped);
+    }
+
+    // Drawing a 10-question quiz from 1M questions: sparse sampling versus copying and shuffling the bank
+    @Test
+    void sampleQuiz() throws IOException {
+        Path binary = tempDir.resolve("pack" + MappedQuestionPack.EXTENSION);
+        MappedQuestionPack.write(QuestionPack.load(writePack(tempDir.resolve("pack.csv"), PACK_QUESTIONS)).getQuestions(),
+                binary);
+        QuestionSource heap = QuestionIndex.of(MappedQuestionPack.open(binary).all());
+        QuestionSource mapped = MappedQuestionPack.open(binary);
+        int quizzes = 1_000;
+
+        System.out.printf("%-8s %-10s %14s%n", "source", "method", "us/quiz");
+        for (QuestionSource source : new QuestionSource[]{heap, mapped}) {
+            String name = source == heap ? "heap" : "mapped";
+            List<Questions> easy = source.get(Difficulty.EASY);
+            Random random = new Random(1);
+            long start = System.nanoTime();
+            for (int i = 0; i < quizzes; i++) {
+                sink += QuestionSampler.sample(easy, 10, random).size();
+            }
+            System.out.printf("%-8s %-10s %14.1f%n", name, "sample", (System.nanoTime() - start) / 1e3 / quizzes);
+
+            start = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                List<Questions> copy = new ArrayList<>(easy);
+                Collections.shuffle(copy, random);
+                sink += copy.subList(0, 10).size();
+            }
+            System.out.printf("%-8s %-10s %14.1f%n", name, "shuffle", (System.nanoTime() - start) / 1e3 / 10);
+        }
+    }
+
+    private static void report(String name, long start, long heapBefore, QuestionSource source) {
+        double openMillis = (System.nanoTime() - start) / 1e6;
+        double heapMb = (usedHeap() - heapBefore) / 1e6;
+        List<Questions> easy = source.get(Difficulty.EASY);
+        long readStart = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            sink += easy.get((int) ((i * 7_919L) % easy.size())).displayQuestion().length();
+        }
+        System.out.printf("%-8s %10.1f %10.1f %14.1f%n", name, openMillis, heapMb, (System.nanoTime() - readStart) / 1e3);
+        Reference.reachabilityFence(source);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,289 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for reading and writing question packs.
+ */
+class QuestionPackTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static QuestionPack read(String text, QuestionPack.Format format) throws IOException {
+        return QuestionPack.read(new BufferedReader(new StringReader(text)), format, "test", 4);
+    }
+
+    @Test
+    @DisplayName("The bundled pack should hold the built-in questions")
+    void testBuiltInPack() {
+        QuestionPack pack = QuestionBank.loadBuiltInPack();
+        assertEquals(16, pack.getQuestions().size());
+        assertEquals(0, pack.getRejected());
+        assertFalse(pack.isParallel());
+
+        QuestionIndex index = QuestionIndex.of(pack.getQuestions());
+        assertEquals(8, index.get(Difficulty.EASY).size());
+        assertEquals(4, index.get(Difficulty.HARD, QuestionType.TRUE_FALSE).size());
+        for (Questions q : pack.getQuestions()) {
+            assertTrue(q.checkAnswer(q.getCorrectAnswer()), q.getText());
+        }
+    }
+
+    @Test
+    @DisplayName("JSON lines should handle escapes and ignored keys, and skip bad lines")
+    void testJsonLines() throws IOException {
+        String text = String.join("\n",
+                "# comment",
+                "{\"type\": \"multiple_choice\", \"id\": 7, \"difficulty\": \"easy\", \"question\": \"Say \\\"CO\\u2082\\\"\",",
+                "",
+                "{\"type\":\"true_false\",\"difficulty\":\"HARD\",\"question\":\"Tab\\there\",\"answer\":\"false\",\"tags\":[\"x\"]}",
+                "{\"type\":\"multiple_choice\",\"difficulty\":\"EASY\",\"question\":\"Q\",\"options\":[\"A\",\"B\"],\"answer\":\"C\"}",
+                "{\"type\":\"true_false\",\"difficulty\":\"MEDIUM\",\"question\":\"Q\",\"answer\":\"True\"}",
+                "{\"type\":\"true_false\",\"difficulty\":\"EASY\",\"question\":\"Q\",\"answer\":\"Maybe\"}",
+                "{\"type\":\"multiple_choice\",\"difficulty\":\"EASY\",\"question\":\"Q\",\"options\":[\" Yes \",\"No\"],\"answer\":\"yes\"}");
+        QuestionPack pack = read(text, QuestionPack.Format.JSON_LINES);
+
+        // Line 2 is cut short, lines 5-7 fail validation
+        assertEquals(4, pack.getRejected());
+        assertEquals(8, pack.getLines());
+        List<Questions> questions = pack.getQuestions();
+        assertEquals(2, questions.size());
+
+        TrueFalseQuestion tf = (TrueFalseQuestion) questions.get(0);
+        assertEquals("Tab\there", tf.getText());
+        assertEquals("False", tf.getCorrectAnswer());
+        assertEquals(Difficulty.HARD, tf.getDifficultyLevel());
+
+        MultipleChoiceQuestion mc = (MultipleChoiceQuestion) questions.get(1);
+        assertArrayEquals(new String[]{"Yes", "No"}, mc.getOptions());
+        assertTrue(mc.checkAnswer("A"));
+
+        Questions escaped = QuestionPack.parseLine("{\"type\":\"multiple_choice\",\"difficulty\":\"EASY\","
+                + "\"question\":\"Say \\\"CO\\u2082\\\"\",\"options\":[\"a\",\"b\"],\"answer\":\"b\"}",
+                QuestionPack.Format.JSON_LINES);
+        assertEquals("Say \"CO₂\"", escaped.getText());
+        assertThrows(IllegalArgumentException.class,
+                () -> QuestionPack.parseLine("{\"type\":\"true_false\"} trailing", QuestionPack.Format.JSON_LINES));
+    }
+
+    @Test
+    @DisplayName("CSV should handle a header and quoted fields")
+    void testCsv() throws IOException {
+        String text = String.join("\n",
+                "type,difficulty,question,answer,options",
+                "multiple_choice,EASY,\"Pick one, please\",\"Say \"\"hi\"\"\",Other,\"Say \"\"hi\"\"\"",
+                "true_false,HARD,Is it warm?,True",
+                "true_false,HARD,Too few fields",
+                "multiple_choice,EASY,\"Unterminated,A,A,B");
+        QuestionPack pack = read(text, QuestionPack.Format.CSV);
+
+        assertEquals(2, pack.getRejected());
+        assertEquals(2, pack.getQuestions().size());
+        MultipleChoiceQuestion mc = (MultipleChoiceQuestion) pack.getQuestions().get(0);
+        assertEquals("Pick one, please", mc.getText());
+        assertArrayEquals(new String[]{"Other", "Say \"hi\""}, mc.getOptions());
+        assertTrue(mc.checkAnswer("B"));
+        assertInstanceOf(TrueFalseQuestion.class, pack.getQuestions().get(1));
+    }
+
+    @Test
+    @DisplayName("formatLine and parseLine should round-trip in both formats")
+    void testFormatRoundTrip() {
+        for (QuestionPack.Format format : QuestionPack.Format.values()) {
+            for (Questions q : QuestionBank.getAllQuestions()) {
+                Questions copy = QuestionPack.parseLine(QuestionPack.formatLine(q, format), format);
+                assertEquals(q.getClass(), copy.getClass());
+                assertEquals(q.getText(), copy.getText());
+                assertEquals(q.getCorrectAnswer(), copy.getCorrectAnswer());
+                assertEquals(q.getDifficultyLevel(), copy.getDifficultyLevel());
+                if (q instanceof MultipleChoiceQuestion) {
+                    assertArrayEquals(((MultipleChoiceQuestion) q).getOptions(),
+                            ((MultipleChoiceQuestion) copy).getOptions());
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("A large pack should be parsed in parallel and keep file order")
+    void testParallelLoadKeepsOrder() throws IOException {
+        int lines = QuestionPack.BATCH_LINES * 5 + 17;
+        Path file = tempDir.resolve("large.jsonl");
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < lines; i++) {
+                if (i % 1000 == 999) {
+                    out.write("{\"type\":\"broken\"}");
+                } else {
+                    out.write(QuestionPack.formatLine(new TrueFalseQuestion("Question " + i, "True",
+                            i % 2 == 0 ? Difficulty.EASY : Difficulty.HARD), QuestionPack.Format.JSON_LINES));
+                }
+                out.newLine();
+            }
+        }
+
+        QuestionPack parallel = QuestionPack.load(file, 4);
+        QuestionPack serial = QuestionPack.load(file, 1);
+        assertTrue(parallel.isParallel());
+        assertFalse(serial.isParallel());
+        assertEquals(lines, parallel.getLines());
+        assertEquals(lines / 1000, parallel.getRejected());
+        assertEquals(lines - lines / 1000, parallel.getQuestions().size());
+        assertEquals(serial.getQuestions().size(), parallel.getQuestions().size());
+
+        int expected = 0;
+        for (Questions q : parallel.getQuestions()) {
+            if (expected % 1000 == 999) {
+                expected++;
+            }
+            assertEquals("Question " + expected, q.getText());
+            expected++;
+        }
+    }
+
+    @Test
+    @DisplayName("A directory should yield its pack files in name order")
+    void testPackFilesInDirectory() throws IOException {
+        Files.writeString(tempDir.resolve("b.csv"), "");
+        Files.writeString(tempDir.resolve("a.jsonl"), "");
+        Files.writeString(tempDir.resolve("notes.txt"), "");
+        assertEquals(List.of(tempDir.resolve("a.jsonl"), tempDir.resolve("b.csv")), QuestionBank.packFiles(tempDir));
+        assertThrows(IllegalArgumentException.class, () -> QuestionPack.load(tempDir.resolve("notes.txt")));
+    }
+
+    @Test
+    @DisplayName("A compiled binary pack should map back to the same questions and groups")
+    void testMappedPackRoundTrip() throws IOException {
+        List<Questions> source = QuestionPackCompiler.readAll(List.of());
+        Path file = tempDir.resolve("climate" + MappedQuestionPack.EXTENSION);
+        long bytes = MappedQuestionPack.write(source, file);
+        assertEquals(Files.size(file), bytes);
+
+        MappedQuestionPack pack = MappedQuestionPack.open(file);
+        QuestionIndex index = QuestionIndex.of(source);
+        assertEquals(source.size(), pack.size());
+        for (Difficulty d : Difficulty.values()) {
+            assertSameQuestions(index.get(d), pack.get(d));
+            for (QuestionType type : QuestionType.values()) {
+                assertSameQuestions(index.get(d, type), pack.get(d, type));
+            }
+        }
+        assertSameQuestions(source, pack.all());
+        assertThrows(UnsupportedOperationException.class, () -> pack.get(Difficulty.EASY).clear());
+        assertThrows(IndexOutOfBoundsException.class, () -> pack.all().get(source.size()));
+
+        // Each distinct string is stored once: a repeated question costs its record and two index entries
+        Questions repeated = source.get(0);
+        long one = MappedQuestionPack.write(List.of(repeated), file);
+        long two = MappedQuestionPack.write(List.of(repeated, repeated), file);
+        assertEquals(16 + 2 * 4 + 4 * ((MultipleChoiceQuestion) repeated).getOptions().length, two - one);
+    }
+
+    @Test
+    @DisplayName("Opening a file that is not a binary pack should fail")
+    void testMappedPackRejectsOtherFiles() throws IOException {
+        Path file = tempDir.resolve("bogus" + MappedQuestionPack.EXTENSION);
+        Files.write(file, new byte[100]);
+        assertThrows(IOException.class, () -> MappedQuestionPack.open(file));
+
+        MappedQuestionPack.write(QuestionBank.getAllQuestions(), file);
+        byte[] truncated = Arrays.copyOf(Files.readAllBytes(file), 200);
+        Files.write(file, truncated);
+        assertThrows(IOException.class, () -> MappedQuestionPack.open(file));
+    }
+
+    @Test
+    @DisplayName("Sampling should match a full Fisher-Yates prefix and depend only on the seed")
+    void testSampleIndexes() {
+        for (int n : new int[]{10, 1_000_000}) {
+            int k = 8;
+            int[] sample = QuestionSampler.sampleIndexes(n, k, new Random(42));
+            assertArrayEquals(sample, QuestionSampler.sampleIndexes(n, k, new Random(42)));
+            assertEquals(k, Arrays.stream(sample).distinct().count());
+
+            // Reference: the first k steps of an ordinary shuffle over every position
+            int[] positions = new int[n];
+            Arrays.setAll(positions, i -> i);
+            Random random = new Random(42);
+            for (int i = 0; i < k; i++) {
+                int j = i + random.nextInt(n - i);
+                int swap = positions[i];
+                positions[i] = positions[j];
+                positions[j] = swap;
+            }
+            assertArrayEquals(Arrays.copyOf(positions, k), sample);
+        }
+        assertEquals(5, QuestionSampler.sampleIndexes(5, 50, new Random(1)).length);
+        assertEquals(0, QuestionSampler.sampleIndexes(0, 3, new Random(1)).length);
+        assertThrows(IllegalArgumentException.class, () -> QuestionSampler.sampleIndexes(5, -1, new Random(1)));
+    }
+
+    @Test
+    @DisplayName("Every position should be drawn about equally often")
+    void testSampleIsUniform() {
+        int n = 20;
+        int k = 3;
+        int rounds = 20_000;
+        int[] hits = new int[n];
+        Random random = new Random(7);
+        for (int r = 0; r < rounds; r++) {
+            for (int index : QuestionSampler.sampleIndexes(n, k, random)) {
+                hits[index]++;
+            }
+        }
+        double expected = (double) rounds * k / n;
+        for (int count : hits) {
+            assertEquals(expected, count, expected * 0.1);
+        }
+    }
+
+    @Test
+    @DisplayName("Reservoir sampling should draw from a pack file in one pass")
+    void testReservoirSampleFromPack() throws IOException {
+        Path file = tempDir.resolve("stream.csv");
+        StringBuilder text = new StringBuilder(QuestionPack.CSV_HEADER).append('\n');
+        for (int i = 0; i < 500; i++) {
+            text.append(QuestionPack.formatLine(new TrueFalseQuestion("Q" + i, "False",
+                    i % 5 == 0 ? Difficulty.HARD : Difficulty.EASY), QuestionPack.Format.CSV)).append('\n');
+        }
+        Files.writeString(file, text);
+
+        List<Questions> hard = QuestionPack.sample(file, Difficulty.HARD, 10, new Random(3));
+        assertEquals(10, hard.size());
+        hard.forEach(q -> assertEquals(Difficulty.HARD, q.getDifficultyLevel()));
+        assertEquals(10, hard.stream().map(Questions::getText).distinct().count());
+        assertEquals(hard.stream().map(Questions::getText).toList(),
+                QuestionPack.sample(file, Difficulty.HARD, 10, new Random(3)).stream().map(Questions::getText).toList());
+
+        assertEquals(100, QuestionPack.sample(file, Difficulty.HARD, 1_000, new Random(3)).size());
+        assertEquals(500, QuestionPack.sample(file, null, 1_000, new Random(3)).size());
+    }
+
+    private static void assertSameQuestions(List<Questions> expected, List<Questions> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Questions e = expected.get(i);
+            Questions a = actual.get(i);
+            assertEquals(e.getClass(), a.getClass());
+            assertEquals(e.getText(), a.getText());
+            assertEquals(e.getCorrectAnswer(), a.getCorrectAnswer());
+            assertEquals(e.getDifficultyLevel(), a.getDifficultyLevel());
+            if (e instanceof MultipleChoiceQuestion) {
+                assertArrayEquals(((MultipleChoiceQuestion) e).getOptions(), ((MultipleChoiceQuestion) a).getOptions());
+            }
+            assertTrue(a.checkAnswer(e.getCorrectAnswer()));
+        }
+    }
+}
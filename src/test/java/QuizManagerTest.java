@@ -1,7 +1,15 @@
 import org.junit.jupiter.api.*;
-
-import java.io.File;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -11,20 +19,13 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class QuizManagerTest {
 
-    private static final String TEST_DB_FILE = "test_quiz_manager.db";
     private QuizManager quizManager;
     private PersistenceManager testPersistenceManager;
 
     @BeforeEach
     void setUp() {
-        // Clean up old test DB to ensure fresh start
-        File dbFile = new File(TEST_DB_FILE);
-        if (dbFile.exists()) {
-            dbFile.delete();
-        }
-
-        // Initialize REAL PersistenceManager for testing
-        testPersistenceManager = new PersistenceManager(TEST_DB_FILE);
+        // A fresh in-memory database per test: nothing to clean up on disk
+        testPersistenceManager = PersistenceManager.inMemory(null, 0);
         testPersistenceManager.initializeDatabase();
 
         // Pass it to the Manager
@@ -34,11 +35,8 @@ class QuizManagerTest {
 
     @AfterEach
     void tearDown() {
-        // Clean up the database file after tests run
-        File dbFile = new File(TEST_DB_FILE);
-        if (dbFile.exists()) {
-            dbFile.delete();
-        }
+        // Releases the in-memory database
+        testPersistenceManager.close();
     }
 
     // ========== QUESTION LOADING TESTS ==========
@@ -222,6 +220,50 @@ class QuizManagerTest {
         assertEquals(originalSize, quizManager.getCurrentQuizQuestions().size());
     }
 
+    @Test
+    @DisplayName("The question index should group by difficulty and type behind read-only views")
+    void testQuestionIndex() {
+        QuestionSource index = QuestionBank.getIndex();
+        int total = 0;
+        for (Difficulty d : Difficulty.values()) {
+            List<Questions> level = index.get(d);
+            int mc = index.get(d, QuestionType.MULTIPLE_CHOICE).size();
+            int tf = index.get(d, QuestionType.TRUE_FALSE).size();
+            assertEquals(level.size(), mc + tf);
+            index.get(d, QuestionType.TRUE_FALSE).forEach(q -> assertInstanceOf(TrueFalseQuestion.class, q));
+            level.forEach(q -> assertEquals(d, q.getDifficultyLevel()));
+            total += level.size();
+        }
+        assertEquals(index.size(), total);
+        assertSame(index.get(Difficulty.EASY), index.get(Difficulty.EASY)); // a lookup, not a copy
+        assertThrows(UnsupportedOperationException.class, () -> index.get(Difficulty.EASY).clear());
+        assertThrows(UnsupportedOperationException.class, () -> QuestionBank.getAllQuestions().clear());
+    }
+
+    @Test
+    @DisplayName("A sized quiz should draw distinct questions and repeat for the same seed")
+    void testSampledQuizIsReproducible() {
+        quizManager.startQuiz("Alice", Difficulty.EASY, 3, 99L);
+        List<Questions> first = quizManager.getCurrentQuizQuestions();
+        assertEquals(3, first.size());
+        assertEquals(99L, quizManager.getQuizSeed());
+        assertEquals(3, first.stream().distinct().count());
+        first.forEach(q -> assertEquals(Difficulty.EASY, q.getDifficultyLevel()));
+
+        quizManager.startQuiz("Bob", Difficulty.EASY, 3, 99L);
+        assertEquals(first, quizManager.getCurrentQuizQuestions());
+
+        // Asking for more than the bank holds serves all of it
+        int available = QuestionBank.current().get(Difficulty.HARD).size();
+        quizManager.startQuiz("Carol", Difficulty.HARD, available + 10);
+        assertEquals(available, quizManager.getTotalQuestions());
+        assertNotNull(quizManager.getQuizSeed());
+
+        quizManager.startQuiz("Dave", Difficulty.EASY);
+        assertNull(quizManager.getQuizSeed());
+        assertThrows(IllegalArgumentException.class, () -> quizManager.startQuiz("Eve", Difficulty.EASY, 0));
+    }
+
     //  POLYMORPHISM TESTS
 
     @Test
@@ -280,4 +322,420 @@ class QuizManagerTest {
         assertEquals("HighScorer", leaderboard.get(0).getUserName()); // High score first
         assertEquals("LowScorer", leaderboard.get(1).getUserName());  // Low score second
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("write-behind mode should persist queued scores on shutdown")
+    void testWriteBehindDrainsOnShutdown() {
+        quizManager.enableWriteBehind(100, 10, 5_000, ScoreWriteQueue.Backpressure.BLOCK, 1_000);
+
+        for (int i = 0; i < 25; i++) {
+            quizManager.startQuiz("Queued" + i, Difficulty.HARD);
+            quizManager.recordScore();
+        }
+        quizManager.shutdown();
+
+        assertEquals(25, testPersistenceManager.loadAllScores().size());
+    }
+
+    @Test
+    @DisplayName("getTopScores should stay current as scores are recorded")
+    void testTopScoresCacheUpdatesOnRecord() {
+        quizManager.startQuiz("First", Difficulty.EASY);
+        quizManager.recordScore(); // Score 0
+        assertEquals("First", quizManager.getTopScores(Difficulty.EASY, 5).get(0).getUserName());
+
+        quizManager.startQuiz("Better", Difficulty.EASY);
+        quizManager.answerQuestion(0, quizManager.getQuestion(0).getCorrectAnswer());
+        quizManager.recordScore(); // Score 1, served from the warmed cache
+
+        List<UserScoreRecord> top = quizManager.getTopScores(Difficulty.EASY, 5);
+        assertEquals(2, top.size());
+        assertEquals("Better", top.get(0).getUserName());
+        assertEquals(top, testPersistenceManager.getTopScores(Difficulty.EASY, 5));
+        assertTrue(quizManager.getTopScores(Difficulty.HARD, 5).isEmpty());
+    }
+
+    @Test
+    @DisplayName("A leaderboard loaded while a score is saved should not be cached stale")
+    void testLeaderboardWarmRacingSave() {
+        InMemoryScoreStore store = new InMemoryScoreStore() {
+            private boolean raced;
+
+            @Override
+            public List<UserScoreRecord> getTopScores(Difficulty difficulty, int limit) {
+                List<UserScoreRecord> loaded = super.getTopScores(difficulty, limit);
+                if (!raced) {
+                    raced = true;
+                    saveScore(new UserScoreRecord("Racer", 9, difficulty, 2000L)); // commits after the read
+                }
+                return loaded;
+            }
+        };
+        store.saveScore(new UserScoreRecord("Early", 1, Difficulty.EASY, 1000L));
+        LeaderboardCache cache = new LeaderboardCache(store);
+
+        assertEquals("Early", cache.getTopScores(Difficulty.EASY, 5).get(0).getUserName());
+        List<UserScoreRecord> top = cache.getTopScores(Difficulty.EASY, 5);
+        assertEquals(2, top.size());
+        assertEquals("Racer", top.get(0).getUserName());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    @DisplayName("a leaderboard warmed between a save and its callback should not list the save twice")
+    void testLeaderboardWarmBeforeCallback() {
+        InMemoryScoreStore store = new InMemoryScoreStore();
+        LeaderboardCache cache = new LeaderboardCache(store);
+        UserScoreRecord record = new UserScoreRecord("Late", 2, Difficulty.EASY, 1000L);
+
+        // Commit without the callback, warm, then deliver the callback late
+        store.removeScoreListener(cache);
+        store.saveScore(record);
+        assertEquals(1, cache.getTopScores(Difficulty.EASY, 5).size());
+        cache.onScoreSaved(new UserScoreRecord("Late", 2, Difficulty.EASY, 1000L));
+        assertEquals(List.of(record), cache.getTopScores(Difficulty.EASY, 5));
+
+        // A later save with the same values is a new row
+        store.addScoreListener(cache);
+        store.saveScore(new UserScoreRecord("Late", 2, Difficulty.EASY, 1000L));
+        assertEquals(2, cache.getTopScores(Difficulty.EASY, 5).size());
+        assertEquals(store.getTopScores(Difficulty.EASY, 5), cache.getTopScores(Difficulty.EASY, 5));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    @DisplayName("shutdown should detach the manager's views from a store that outlives it")
+    void testShutdownRemovesScoreListeners() {
+        List<ScoreListener> registered = new ArrayList<>();
+        InMemoryScoreStore store = new InMemoryScoreStore() {
+            @Override
+            public void addScoreListener(ScoreListener listener) {
+                super.addScoreListener(listener);
+                registered.add(listener);
+            }
+
+            @Override
+            public void removeScoreListener(ScoreListener listener) {
+                super.removeScoreListener(listener);
+                registered.remove(listener);
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            QuizManager manager = new QuizManager(store);
+            assertFalse(registered.isEmpty());
+            manager.shutdown();
+            assertTrue(registered.isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("saves committing during a rank rebuild should be counted once")
+    void testRankRebuildRacingSaves() {
+        InMemoryScoreStore store = new InMemoryScoreStore() {
+            private boolean raced;
+
+            @Override
+            public long forEachScore(ScoreFilter filter, Consumer<UserScoreRecord> action) {
+                if (raced) {
+                    return super.forEachScore(filter, action);
+                }
+                raced = true;
+                saveScore(new UserScoreRecord("Before", 5, Difficulty.EASY, 2000L)); // the scan reads it
+                long rows = super.forEachScore(filter, action);
+                saveScore(new UserScoreRecord("After", 7, Difficulty.EASY, 3000L)); // the scan missed it
+                return rows;
+            }
+        };
+        store.saveScore(new UserScoreRecord("Old", 1, Difficulty.EASY, 1000L));
+        RankIndex index = new RankIndex(store);
+
+        index.rebuild();
+        assertEquals(3, index.size(Difficulty.EASY));
+        assertEquals(1, index.rankOf(Difficulty.EASY, 7, 3000L));
+        assertEquals(2, index.rankOf(Difficulty.EASY, 5, 2000L));
+        assertArrayEquals(new long[]{0, 1, 0, 0, 0, 1, 0, 1}, index.getDistribution(Difficulty.EASY));
+
+        index.rebuild();
+        assertEquals(3, index.size(Difficulty.EASY));
+    }
+
+    @Test
+    @DisplayName("getRankOfLastScore should reflect every stored score")
+    void testRankOfLastScore() {
+        List<UserScoreRecord> history = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            history.add(new UserScoreRecord("Past" + i, i % 3, Difficulty.EASY, 1000L + i)); // scores 0..2
+        }
+        testPersistenceManager.saveScores(history);
+
+        quizManager.startQuiz("Newcomer", Difficulty.EASY);
+        quizManager.answerQuestion(0, quizManager.getQuestion(0).getCorrectAnswer());
+        quizManager.recordScore(); // Score 1
+
+        // Three players scored 2; the newest score wins ties against older 1s
+        assertEquals(4, quizManager.getRankOfLastScore());
+        assertEquals(11, quizManager.getRankedPlayerCount(Difficulty.EASY));
+        assertEquals(1, quizManager.getRank(Difficulty.EASY, 3, 1L));
+        assertEquals(12, quizManager.getRank(Difficulty.EASY, 0, 1L));
+    }
+
+    @Test
+    @DisplayName("percentileOf and getDistribution should track recorded scores")
+    void testPercentileAndDistribution() {
+        List<UserScoreRecord> history = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            history.add(new UserScoreRecord("Past" + i, i, Difficulty.HARD, 1000L + i)); // scores 0..3
+        }
+        testPersistenceManager.saveScores(history);
+
+        assertArrayEquals(new long[]{1, 1, 1, 1}, quizManager.getDistribution(Difficulty.HARD));
+        assertEquals(50.0, quizManager.percentileOf(2, Difficulty.HARD), 0.001);
+
+        quizManager.startQuiz("Zero", Difficulty.HARD);
+        quizManager.recordScore(); // Score 0
+
+        assertArrayEquals(new long[]{2, 1, 1, 1}, quizManager.getDistribution(Difficulty.HARD));
+        assertEquals(0.0, quizManager.percentileOf(0, Difficulty.HARD), 0.001);
+        assertEquals(0, quizManager.getDistribution(Difficulty.EASY).length);
+    }
+
+    @Test
+    @DisplayName("windowed leaderboards should keep each player's best of the current window")
+    void testWindowedTopScores() {
+        // Wednesday 2024-01-10 12:00 UTC, well inside its day and week
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-10T12:00:00Z"));
+        long now = clock.millis();
+        List<UserScoreRecord> history = new ArrayList<>();
+        history.add(new UserScoreRecord("Old", 9, Difficulty.EASY, now - 30L * 24 * 3600 * 1000)); // a month ago
+        history.add(new UserScoreRecord("Alice", 1, Difficulty.EASY, now));
+        history.add(new UserScoreRecord("Alice", 3, Difficulty.EASY, now));
+        testPersistenceManager.saveScores(history);
+
+        WindowedLeaderboard windows = new WindowedLeaderboard(testPersistenceManager, clock, 10);
+        windows.reload(); // seeded from the store, then kept current by later saves
+        testPersistenceManager.saveScores(List.of(
+                new UserScoreRecord("Alice", 2, Difficulty.EASY, now),
+                new UserScoreRecord("Bob", 2, Difficulty.EASY, now)));
+
+        List<UserScoreRecord> daily = windows.getTopScores(Difficulty.EASY, WindowedLeaderboard.Window.DAILY, 10);
+        assertEquals(2, daily.size());
+        assertEquals("Alice", daily.get(0).getUserName());
+        assertEquals(3, daily.get(0).getScore());
+        assertEquals("Bob", daily.get(1).getUserName());
+        assertEquals(2, windows.getTopScores(Difficulty.EASY, WindowedLeaderboard.Window.WEEKLY, 10).size());
+    }
+
+    @Test
+    @DisplayName("windowed leaderboards should expire when the window ends")
+    void testWindowExpiry() {
+        // Wednesday 2024-01-10 12:00 UTC
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-10T12:00:00Z"));
+        WindowedLeaderboard windows = new WindowedLeaderboard(new InMemoryScoreStore(), clock, 10);
+        windows.onScoreSaved(new UserScoreRecord("Alice", 4, Difficulty.HARD, clock.millis()));
+
+        clock.now = Instant.parse("2024-01-11T09:00:00Z"); // next day, same week
+        assertTrue(windows.getTopScores(Difficulty.HARD, WindowedLeaderboard.Window.DAILY, 5).isEmpty());
+        assertEquals(1, windows.getTopScores(Difficulty.HARD, WindowedLeaderboard.Window.WEEKLY, 5).size());
+
+        clock.now = Instant.parse("2024-01-15T00:00:00Z"); // Monday: a new week
+        assertTrue(windows.getTopScores(Difficulty.HARD, WindowedLeaderboard.Window.WEEKLY, 5).isEmpty());
+    }
+
+    @Test
+    @DisplayName("getPersonalStats should stay current as scores are recorded")
+    void testPersonalStats() {
+        quizManager.startQuiz("Stats", Difficulty.EASY);
+        quizManager.recordScore(); // Score 0
+        assertEquals(1, quizManager.getPersonalStats("Stats").getAttempts(Difficulty.EASY)); // loaded and cached
+
+        quizManager.startQuiz("Stats", Difficulty.EASY);
+        Questions q = quizManager.getQuestion(0);
+        quizManager.answerQuestion(0, q.getCorrectAnswer());
+        quizManager.recordScore(); // Score 1, drops the cached entry
+
+        PersonalStats stats = quizManager.getPersonalStats("Stats");
+        assertEquals(2, stats.getAttempts(Difficulty.EASY));
+        assertEquals(1, stats.getBestScore(Difficulty.EASY));
+        assertEquals(-1, stats.getBestScore(Difficulty.HARD));
+    }
+
+    @Test
+    @DisplayName("personal stats loaded between a commit and its callback should count the save once")
+    void testPersonalStatsLoadBeforeCallback() {
+        InMemoryScoreStore store = new InMemoryScoreStore();
+        PersonalStatsCache cache = new PersonalStatsCache(store);
+        UserScoreRecord record = new UserScoreRecord("Late", 2, Difficulty.EASY, 1000L);
+
+        // Commit without the callback, read, then deliver the callback late
+        store.removeScoreListener(cache);
+        store.saveScore(record);
+        assertEquals(1, cache.get("Late").getAttempts(Difficulty.EASY));
+        cache.onScoreSaved(record);
+        assertEquals(1, cache.get("Late").getAttempts(Difficulty.EASY));
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    @DisplayName("personal stats loaded while the player saves should not be cached")
+    void testPersonalStatsLoadRacingSave() {
+        InMemoryScoreStore store = new InMemoryScoreStore() {
+            private boolean raced;
+
+            @Override
+            public PersonalStats getPersonalStats(String userName) {
+                PersonalStats loaded = super.getPersonalStats(userName);
+                if (!raced) {
+                    raced = true;
+                    saveScore(new UserScoreRecord(userName, 3, Difficulty.HARD, 2000L)); // commits after the read
+                }
+                return loaded;
+            }
+        };
+        PersonalStatsCache cache = new PersonalStatsCache(store);
+        store.saveScore(new UserScoreRecord("Racer", 1, Difficulty.EASY, 1000L));
+
+        assertEquals(0, cache.get("Racer").getAttempts(Difficulty.HARD));
+        assertEquals(1, cache.get("Racer").getAttempts(Difficulty.HARD));
+        assertEquals(3, cache.get("Racer").getBestScore(Difficulty.HARD));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    @DisplayName("retention should drop expired scores from ranks and the leaderboard")
+    void testRetentionUpdatesRanks() {
+        testPersistenceManager.saveScore(new UserScoreRecord("Ancient", 5, Difficulty.EASY, 1000L)); // 1970
+        quizManager.startQuiz("Today", Difficulty.EASY);
+        quizManager.recordScore(); // Score 0
+        assertEquals(2, quizManager.getRankOfLastScore());
+        assertEquals("Ancient", quizManager.getTopScores(Difficulty.EASY, 1).get(0).getUserName());
+
+        quizManager.enableRetention(new RetentionPolicy(24L * 3600 * 1000, 100, 0, 0, null), 3_600_000);
+        assertEquals(1, quizManager.getRetentionJob().runOnce());
+
+        assertEquals(1, quizManager.getRankOfLastScore());
+        assertEquals("Today", quizManager.getTopScores(Difficulty.EASY, 1).get(0).getUserName());
+        // The histogram still counts the rolled-up score, also when seeded afresh
+        assertArrayEquals(new long[]{1, 0, 0, 0, 0, 1}, quizManager.getDistribution(Difficulty.EASY));
+        quizManager.shutdown();
+        QuizManager restarted = new QuizManager(testPersistenceManager);
+        assertEquals(1, restarted.getRankedPlayerCount(Difficulty.EASY));
+        assertArrayEquals(new long[]{1, 0, 0, 0, 0, 1}, restarted.getDistribution(Difficulty.EASY));
+        assertEquals(50.0, restarted.percentileOf(5, Difficulty.EASY), 0.001);
+        restarted.shutdown();
+    }
+
+    @Test
+    @DisplayName("scores that fail to save should be journaled and replayed once the store recovers")
+    void testRetryJournalReplaysFailedWrites(@TempDir Path dir) throws Exception {
+        FlakyStore flaky = new FlakyStore();
+        QuizManager manager = new QuizManager(flaky);
+        manager.loadQuestions();
+        manager.enableRetryJournal(dir.resolve("retry.journal"));
+
+        flaky.failing = true;
+        manager.startQuiz("Retry", Difficulty.EASY);
+        manager.recordScore();
+        assertEquals(1, manager.getRetryJournal().getBacklog());
+        List<String> lines = Files.readAllLines(dir.resolve("retry.journal"));
+        assertEquals(1, lines.size());
+        assertFalse(manager.getRetryJournal().append(ScoreCsv.parseLine(lines.get(0)))); // already journaled
+
+        flaky.failing = false;
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (manager.getRetryJournal().getBacklog() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, manager.getRetryJournal().getBacklog());
+        assertEquals(1, flaky.getTopScores(Difficulty.EASY, 10).size());
+        assertTrue(Files.readAllLines(dir.resolve("retry.journal")).isEmpty());
+        manager.shutdown();
+    }
+
+    @Test
+    @DisplayName("a journal left by an earlier run should be replayed without duplicating stored scores")
+    void testRetryJournalSurvivesRestart(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("retry.journal");
+        UserScoreRecord stored = new UserScoreRecord("Stored", 3, Difficulty.EASY, 1000L);
+        UserScoreRecord lost = new UserScoreRecord("Lost", 2, Difficulty.HARD, 1001L);
+        testPersistenceManager.saveScore(stored); // committed although the caller saw a failure
+        Files.write(file, List.of(ScoreCsv.formatLine(stored), ScoreCsv.formatLine(lost), "Torn,1,EA"));
+
+        try (ScoreRetryJournal journal = new ScoreRetryJournal(testPersistenceManager, file)) {
+            assertTrue(journal.replay());
+            assertEquals(0, journal.getBacklog());
+            assertEquals(1, journal.getRecordsReplayed());
+            assertEquals(1, journal.getDuplicatesDropped());
+        }
+        assertEquals(1, testPersistenceManager.getTopScores(Difficulty.EASY, 10).size());
+        assertEquals(1, testPersistenceManager.getTopScores(Difficulty.HARD, 10).size());
+    }
+
+    @Test
+    @DisplayName("a journaled score the store always refuses should be set aside, not block the rest")
+    void testRetryJournalSetsAsideRejectedScores(@TempDir Path dir) throws Exception {
+        InMemoryScoreStore picky = new InMemoryScoreStore() {
+            @Override
+            public void saveScore(UserScoreRecord record) {
+                if (record.getUserName().equals("Bad")) throw new IllegalArgumentException("name not allowed");
+                super.saveScore(record);
+            }
+
+            @Override
+            public IngestReport saveScores(Iterable<UserScoreRecord> records) {
+                for (UserScoreRecord record : records) {
+                    if (record.getUserName().equals("Bad")) throw new IllegalArgumentException("name not allowed");
+                }
+                return super.saveScores(records);
+            }
+        };
+        Path file = dir.resolve("retry.journal");
+        UserScoreRecord first = new UserScoreRecord("First", 1, Difficulty.EASY, 1000L);
+        UserScoreRecord bad = new UserScoreRecord("Bad", 2, Difficulty.EASY, 1001L);
+        UserScoreRecord last = new UserScoreRecord("Last", 3, Difficulty.EASY, 1002L);
+        Files.write(file, List.of(ScoreCsv.formatLine(first), ScoreCsv.formatLine(bad), ScoreCsv.formatLine(last)));
+
+        try (ScoreRetryJournal journal = new ScoreRetryJournal(picky, file)) {
+            assertTrue(journal.replay());
+            assertEquals(0, journal.getBacklog());
+            assertEquals(2, journal.getRecordsReplayed());
+            assertEquals(1, journal.getRecordsRejected());
+            assertEquals(List.of(ScoreCsv.formatLine(bad)), Files.readAllLines(journal.getRejectsFile()));
+        }
+        assertEquals(List.of(last, first), picky.getTopScores(Difficulty.EASY, 10));
+        assertTrue(Files.readAllLines(file).isEmpty());
+    }
+
+    // An in-memory store whose writes can be made to fail, like a database locked by another process
+    private static class FlakyStore extends InMemoryScoreStore {
+        volatile boolean failing;
+
+        @Override
+        public void saveScore(UserScoreRecord record) {
+            if (failing) throw new RuntimeException("database is locked");
+            super.saveScore(record);
+        }
+
+        @Override
+        public IngestReport saveScores(Iterable<UserScoreRecord> records) {
+            if (failing) throw new RuntimeException("database is locked");
+            return super.saveScores(records);
+        }
+    }
+
+    // A clock the test can move forward
+    private static class MutableClock extends Clock {
+        Instant now;
+        private final ZoneId zone;
+
+        MutableClock(Instant now) { this(now, ZoneOffset.UTC); }
+
+        MutableClock(Instant now, ZoneId zone) {
+            this.now = now;
+            this.zone = zone;
+        }
+
+        @Override public ZoneId getZone() { return zone; }
+        @Override public Clock withZone(ZoneId zone) { return new MutableClock(now, zone); }
+        @Override public Instant instant() { return now; }
+    }
+}
@@ -0,0 +1,334 @@
+import org.junit.jupiter.api.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Throughput comparison between the ScoreStore backends.
+ * Not part of the normal test run (the class name does not end in Test);
+ * run it explicitly with: mvn test -Dtest=ScoreStoreBenchmark
+ */
+class ScoreStoreBenchmark {
+
+    private static final int SINGLE_WRITES = 5_000;
+    private static final int BATCH_WRITES = 200_000;
+    private static final int TOP_READS = 2_000;
+    private static final int LEGACY_ROWS = 1_000_000;
+    private static final int CONTENTION_WRITES = 500;
+
+    private static final String DB_FILE = "bench_scores.db";
+    private static final String LOG_BASE = "bench_scores";
+
+    @AfterEach
+    void tearDown() {
+        for (String name : new String[]{DB_FILE, DB_FILE + "-wal", DB_FILE + "-shm", LOG_BASE + ".log", LOG_BASE + ".users",
+                LOG_BASE + ".EASY.seg", LOG_BASE + ".HARD.seg"}) {
+            new File(name).delete();
+        }
+    }
+
+    @Test
+    void compareBackends() {
+        System.out.printf("%-10s %14s %14s %14s %14s%n", "backend", "single/s", "batch/s", "top5/s", "scan/s");
+        run("sqlite", () -> new PersistenceManager(DB_FILE));
+        run("sqlite-mem", () -> PersistenceManager.inMemory(null, 0));
+        run("memory", InMemoryScoreStore::new);
+        run("mapped", () -> new MappedScoreStore(LOG_BASE, 0, MappedScoreStore.DEFAULT_COMPACTION_THRESHOLD), store -> { });
+        run("mapped+c", () -> new MappedScoreStore(LOG_BASE, 0, MappedScoreStore.DEFAULT_COMPACTION_THRESHOLD),
+                store -> ((MappedScoreStore) store).compact());
+    }
+
+    private void run(String name, Supplier<ScoreStore> factory) {
+        run(name, factory, store -> { });
+    }
+
+    // beforeReads runs between the writes and the timed reads
+    private void run(String name, Supplier<ScoreStore> factory, Consumer<ScoreStore> beforeReads) {
+        tearDown();
+        ScoreStore store = factory.get();
+        store.initialize();
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < SINGLE_WRITES; i++) {
+                store.saveScore(record(i));
+            }
+            double single = SINGLE_WRITES / seconds(start);
+
+            List<UserScoreRecord> batch = new ArrayList<>(BATCH_WRITES);
+            for (int i = 0; i < BATCH_WRITES; i++) {
+                batch.add(record(SINGLE_WRITES + i));
+            }
+            start = System.nanoTime();
+            store.saveScores(batch);
+            double batched = BATCH_WRITES / seconds(start);
+            beforeReads.accept(store);
+
+            start = System.nanoTime();
+            for (int i = 0; i < TOP_READS; i++) {
+                store.getTopScores(i % 2 == 0 ? Difficulty.EASY : Difficulty.HARD, 5);
+            }
+            double top = TOP_READS / seconds(start);
+
+            start = System.nanoTime();
+            long rows = store.forEachScore(ScoreFilter.all(), r -> { });
+            double scan = rows / seconds(start);
+
+            System.out.printf("%-10s %14.0f %14.0f %14.0f %14.0f%n", name, single, batched, top, scan);
+        } finally {
+            store.close();
+        }
+    }
+
+    // Size and full-scan read rate of the old TEXT schema against the users-table schema
+    @Test
+    void compareUserDictionary() throws SQLException {
+        tearDown();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + DB_FILE);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE quiz_scores (id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "user_name TEXT NOT NULL, score INTEGER NOT NULL, difficulty TEXT NOT NULL, timestamp INTEGER NOT NULL)");
+            stmt.execute("CREATE INDEX idx_quiz_scores_leaderboard ON quiz_scores (difficulty, score DESC, timestamp DESC)");
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO quiz_scores(user_name, score, difficulty, timestamp) VALUES(?, ?, ?, ?)")) {
+                for (int i = 0; i < LEGACY_ROWS; i++) {
+                    UserScoreRecord r = record(i);
+                    insert.setString(1, "player-" + r.getUserName());
+                    insert.setInt(2, r.getScore());
+                    insert.setString(3, r.getDifficulty().name());
+                    insert.setLong(4, r.getTimestamp());
+                    insert.addBatch();
+                    if (i % 10_000 == 9_999) {
+                        insert.executeBatch();
+                    }
+                }
+            }
+            conn.commit();
+
+            long size = new File(DB_FILE).length();
+            long start = System.nanoTime();
+            long rows = 0;
+            try (ResultSet rs = stmt.executeQuery("SELECT user_name, score, difficulty, timestamp FROM quiz_scores")) {
+                while (rs.next()) {
+                    new UserScoreRecord(rs.getString(1), rs.getInt(2), Difficulty.valueOf(rs.getString(3)), rs.getLong(4));
+                    rows++;
+                }
+            }
+            System.out.printf("legacy schema:     %,12d bytes %,12.0f rows/s%n", size, rows / seconds(start));
+        }
+
+        PersistenceManager store = new PersistenceManager(DB_FILE);
+        store.initialize();
+        try {
+            long size = store.getDatabaseSize();
+            long start = System.nanoTime();
+            long rows = store.forEachScore(ScoreFilter.all(), r -> { });
+            System.out.printf("users-table schema:%,12d bytes %,12.0f rows/s%n", size, rows / seconds(start));
+
+            start = System.nanoTime();
+            for (int i = 0; i < TOP_READS; i++) {
+                store.getPersonalStats("player-user" + (i % 1000));
+            }
+            System.out.printf("personal stats:    %12.3f ms per lookup%n", seconds(start) * 1000 / TOP_READS);
+        } finally {
+            store.close();
+        }
+    }
+
+    // Time to expire most of a large table in small batches, and what it does to the file
+    @Test
+    void retention() {
+        tearDown();
+        PersistenceManager store = new PersistenceManager(DB_FILE);
+        store.initialize();
+        try {
+            List<UserScoreRecord> batch = new ArrayList<>(LEGACY_ROWS);
+            for (int i = 0; i < LEGACY_ROWS; i++) {
+                batch.add(record(i)); // all in 1970, so all expired
+            }
+            store.saveScores(batch);
+            long sizeBefore = new File(DB_FILE).length();
+
+            ScoreRetentionJob job = new ScoreRetentionJob(store, new RetentionPolicy(
+                    24L * 3600 * 1000, RetentionPolicy.DEFAULT_BATCH_SIZE, 0, RetentionPolicy.DEFAULT_VACUUM_PAGES, null));
+            long start = System.nanoTime();
+            long removed = job.runOnce();
+            double elapsed = seconds(start);
+            store.close(); // checkpoints the WAL, which is when the file is truncated
+            System.out.printf("retention: %,d rows in %.1f s, %,d pages vacuumed, file %,d -> %,d bytes%n",
+                    removed, elapsed, job.getPagesVacuumed(), sizeBefore, new File(DB_FILE).length());
+        } finally {
+            store.close();
+        }
+    }
+
+    // Moving a large history out and back in: columnar file versus CSV
+    @Test
+    void columnarTransfer() throws IOException {
+        tearDown();
+        PersistenceManager store = new PersistenceManager(DB_FILE);
+        store.initialize();
+        Path columnar = Files.createTempFile("bench-", ".qsc");
+        Path csv = Files.createTempFile("bench-", ".csv");
+        try {
+            List<UserScoreRecord> batch = new ArrayList<>(LEGACY_ROWS);
+            for (int i = 0; i < LEGACY_ROWS; i++) {
+                batch.add(record(i));
+            }
+            store.saveScores(batch);
+            batch = null;
+
+            System.gc();
+            long start = System.nanoTime();
+            store.exportScores(columnar);
+            double exportSeconds = seconds(start);
+
+            start = System.nanoTime();
+            try (BufferedWriter out = Files.newBufferedWriter(csv)) {
+                out.write(ScoreCsv.HEADER);
+                out.newLine();
+                store.forEachScore(ScoreFilter.all(), r -> {
+                    try {
+                        out.write(ScoreCsv.formatLine(r));
+                        out.newLine();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            double csvExportSeconds = seconds(start);
+
+            store.clearAllScores();
+            start = System.nanoTime();
+            store.importScores(columnar);
+            double importSeconds = seconds(start);
+
+            store.clearAllScores();
+            start = System.nanoTime();
+            try (InputStream in = Files.newInputStream(csv)) {
+                store.importScoresCsv(in);
+            }
+            double csvImportSeconds = seconds(start);
+
+            System.out.printf("%-9s %14s %14s %14s%n", "format", "bytes", "export rows/s", "import rows/s");
+            System.out.printf("%-9s %,14d %,14.0f %,14.0f%n", "columnar", Files.size(columnar),
+                    LEGACY_ROWS / exportSeconds, LEGACY_ROWS / importSeconds);
+            System.out.printf("%-9s %,14d %,14.0f %,14.0f%n", "csv", Files.size(csv),
+                    LEGACY_ROWS / csvExportSeconds, LEGACY_ROWS / csvImportSeconds);
+        } finally {
+            store.close();
+            Files.deleteIfExists(columnar);
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    // N writer processes saving single scores into one file, as kiosks sharing a database do
+    @Test
+    void contention() throws Exception {
+        System.out.printf("%-8s %12s %10s %10s %10s %10s%n", "writers", "writes/s", "retries", "failed", "p50 ms", "p99 ms");
+        for (int writers : new int[]{1, 2, 4, 8}) {
+            tearDown();
+            PersistenceManager setup = new PersistenceManager(DB_FILE);
+            setup.initialize(); // migrate once, before the writers race for it
+            setup.close();
+
+            List<Process> processes = new ArrayList<>();
+            List<Path> outputs = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                Path out = Files.createTempFile("contention-" + w + "-", ".txt");
+                outputs.add(out);
+                processes.add(new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                        "-cp", System.getProperty("java.class.path"), ScoreStoreBenchmark.class.getName(),
+                        DB_FILE, String.valueOf(CONTENTION_WRITES), String.valueOf(w))
+                        .redirectErrorStream(true)
+                        .redirectOutput(out.toFile())
+                        .start());
+            }
+            for (Process process : processes) {
+                process.waitFor();
+            }
+
+            // Throughput over the span in which writers were writing, without JVM start-up
+            long firstStart = Long.MAX_VALUE;
+            long lastEnd = 0;
+            long retries = 0;
+            long failed = 0;
+            List<Long> latencies = new ArrayList<>();
+            for (Path out : outputs) {
+                for (String line : Files.readAllLines(out)) {
+                    if (line.startsWith("RETRIES ")) {
+                        String[] parts = line.split(" ");
+                        retries += Long.parseLong(parts[1]);
+                        failed += Long.parseLong(parts[2]);
+                        firstStart = Math.min(firstStart, Long.parseLong(parts[3]));
+                        lastEnd = Math.max(lastEnd, Long.parseLong(parts[4]));
+                    } else if (line.startsWith("LATENCY ")) {
+                        latencies.add(Long.parseLong(line.substring(8)));
+                    }
+                }
+                Files.delete(out);
+            }
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            double elapsed = Math.max(lastEnd - firstStart, 1) / 1000.0;
+            System.out.printf("%-8d %,12.0f %,10d %,10d %10.2f %10.2f%n", writers,
+                    (writers * CONTENTION_WRITES - failed) / elapsed, retries, failed,
+                    percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6);
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+
+    // Writer process for contention(): args are the database file, the number of writes and the writer id
+    public static void main(String[] args) throws IOException {
+        int writes = Integer.parseInt(args[1]);
+        int id = Integer.parseInt(args[2]);
+        PersistenceManager store = new PersistenceManager(args[0], 1, 1_000);
+        store.initialize();
+        long[] latencies = new long[writes];
+        long failed = 0;
+        long startMillis = System.currentTimeMillis();
+        for (int i = 0; i < writes; i++) {
+            long start = System.nanoTime();
+            try {
+                store.saveScore(record(id * writes + i));
+            } catch (RuntimeException e) {
+                failed++;
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+        long endMillis = System.currentTimeMillis();
+        store.close();
+        StringBuilder report = new StringBuilder();
+        report.append("RETRIES ").append(store.getBusyRetries()).append(' ').append(failed)
+                .append(' ').append(startMillis).append(' ').append(endMillis).append('\n');
+        for (long latency : latencies) {
+            report.append("LATENCY ").append(latency).append('\n');
+        }
+        System.out.print(report);
+    }
+
+    private static UserScoreRecord record(int i) {
+        return new UserScoreRecord("user" + (i % 1000), i % 9, i % 2 == 0 ? Difficulty.EASY : Difficulty.HARD, 1_000_000L + i);
+    }
+
+    private static double seconds(long startNanos) {
+        return Math.max(System.nanoTime() - startNanos, 1) / 1_000_000_000.0;
+    }
+}
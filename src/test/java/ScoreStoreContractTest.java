@@ -0,0 +1,195 @@
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Behaviour every ScoreStore must share. Each backend has a small subclass
+ * that creates and cleans up the store under test.
+ */
+abstract class ScoreStoreContractTest {
+
+    protected ScoreStore store;
+
+    protected abstract ScoreStore createStore();
+
+    protected void cleanUp() {
+    }
+
+    @BeforeEach
+    void setUpStore() {
+        cleanUp();
+        store = createStore();
+        store.initialize();
+    }
+
+    @AfterEach
+    void tearDownStore() {
+        store.close();
+        cleanUp();
+    }
+
+    @Test
+    @DisplayName("saved scores should come back in leaderboard order")
+    void testSaveAndTopScores() {
+        store.saveScore(new UserScoreRecord("Low", 1, Difficulty.EASY, 1000L));
+        store.saveScore(new UserScoreRecord("High", 7, Difficulty.EASY, 1001L));
+        store.saveScore(new UserScoreRecord("HighLater", 7, Difficulty.EASY, 2000L));
+        store.saveScore(new UserScoreRecord("Hard", 8, Difficulty.HARD, 1003L));
+
+        List<UserScoreRecord> top = store.getTopScores(Difficulty.EASY, 2);
+
+        assertEquals(2, top.size());
+        assertEquals("HighLater", top.get(0).getUserName());
+        assertEquals("High", top.get(1).getUserName());
+        assertEquals(4, store.loadAllScores().size());
+        assertEquals("Hard", store.loadAllScores().get(0).getUserName());
+    }
+
+    @Test
+    @DisplayName("saveScores should store every record and report the count")
+    void testBatchSave() {
+        List<UserScoreRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            batch.add(new UserScoreRecord("B" + (i % 50), i % 9, i % 2 == 0 ? Difficulty.EASY : Difficulty.HARD, 1000L + i));
+        }
+
+        IngestReport report = store.saveScores(batch);
+
+        assertEquals(500, report.getRowsWritten());
+        assertEquals(250, store.forEachScore(ScoreFilter.forDifficulty(Difficulty.EASY), r -> { }));
+        assertEquals(10, store.forEachScore(ScoreFilter.all().between(1000L, 1010L), r -> { }));
+    }
+
+    @Test
+    @DisplayName("containsScore should match on user, score, difficulty and timestamp")
+    void testContainsScore() {
+        UserScoreRecord saved = new UserScoreRecord("Here", 4, Difficulty.EASY, 5000L);
+        store.saveScore(saved);
+
+        assertTrue(store.containsScore(new UserScoreRecord("Here", 4, Difficulty.EASY, 5000L)));
+        assertFalse(store.containsScore(new UserScoreRecord("Other", 4, Difficulty.EASY, 5000L)));
+        assertFalse(store.containsScore(new UserScoreRecord("Here", 5, Difficulty.EASY, 5000L)));
+        assertFalse(store.containsScore(new UserScoreRecord("Here", 4, Difficulty.HARD, 5000L)));
+        assertFalse(store.containsScore(new UserScoreRecord("Here", 4, Difficulty.EASY, 5001L)));
+    }
+
+    @Test
+    @DisplayName("pages should cover every record exactly once")
+    void testPagination() {
+        List<UserScoreRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 37; i++) {
+            batch.add(new UserScoreRecord("P" + i, i % 4, Difficulty.HARD, 1000L + (i % 3)));
+        }
+        store.saveScores(batch);
+
+        List<UserScoreRecord> seen = new ArrayList<>();
+        ScoreCursor cursor = null;
+        do {
+            ScorePage page = store.getScoresPage(Difficulty.HARD, cursor, 6);
+            seen.addAll(page.getRecords());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(37, seen.size());
+        assertEquals(37, seen.stream().map(UserScoreRecord::getUserName).distinct().count());
+        assertEquals(store.getTopScores(Difficulty.HARD, 37), seen);
+    }
+
+    @Test
+    @DisplayName("listeners should see saves and clears")
+    void testListeners() {
+        List<UserScoreRecord> saved = new ArrayList<>();
+        int[] cleared = {0};
+        store.addScoreListener(new ScoreListener() {
+            @Override
+            public void onScoreSaved(UserScoreRecord record) {
+                saved.add(record);
+            }
+
+            @Override
+            public void onScoresCleared() {
+                cleared[0]++;
+            }
+        });
+
+        store.saveScore(new UserScoreRecord("A", 1, Difficulty.EASY, 1000L));
+        store.saveScores(List.of(new UserScoreRecord("B", 2, Difficulty.EASY, 1001L)));
+        store.clearAllScores();
+
+        assertEquals(2, saved.size());
+        assertEquals(1, cleared[0]);
+        assertTrue(store.loadAllScores().isEmpty());
+    }
+
+    @Test
+    @DisplayName("listeners should see exactly the stored part of a batch that fails")
+    void testListenersAfterFailedBatch() {
+        List<UserScoreRecord> saved = new ArrayList<>();
+        store.addScoreListener(saved::add);
+
+        List<UserScoreRecord> batch = new ArrayList<>();
+        batch.add(new UserScoreRecord("A", 1, Difficulty.EASY, 1000L));
+        batch.add(null);
+        batch.add(new UserScoreRecord("B", 2, Difficulty.EASY, 1001L));
+        assertThrows(IllegalArgumentException.class, () -> store.saveScores(batch));
+
+        assertEquals(store.loadAllScores(), saved);
+    }
+
+    @Test
+    @DisplayName("loadScoreCounts should aggregate by difficulty and score")
+    void testScoreCounts() {
+        store.saveScore(new UserScoreRecord("A", 2, Difficulty.EASY, 1000L));
+        store.saveScore(new UserScoreRecord("B", 2, Difficulty.EASY, 1001L));
+        store.saveScore(new UserScoreRecord("C", 0, Difficulty.EASY, 1002L));
+
+        Map<Difficulty, long[]> counts = store.loadScoreCounts();
+
+        assertArrayEquals(new long[]{1, 0, 2}, counts.get(Difficulty.EASY));
+        assertFalse(counts.containsKey(Difficulty.HARD));
+    }
+
+    @Test
+    @DisplayName("concurrent writers should not lose scores")
+    void testConcurrentWriters() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        store.saveScore(new UserScoreRecord("T" + thread, i % 9, Difficulty.EASY, 1000L + i));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(400, store.forEachScore(ScoreFilter.all(), r -> { }));
+    }
+
+    @Test
+    @DisplayName("personal stats should aggregate one player's scores")
+    void testPersonalStats() {
+        store.saveScore(new UserScoreRecord("Alice", 3, Difficulty.EASY, 1000L));
+        store.saveScore(new UserScoreRecord("Alice", 5, Difficulty.EASY, 900L));
+        store.saveScore(new UserScoreRecord("Bob", 8, Difficulty.EASY, 2000L));
+
+        PersonalStats stats = store.getPersonalStats("Alice");
+        assertEquals(5, stats.getBestScore(Difficulty.EASY));
+        assertEquals(2, stats.getAttempts(Difficulty.EASY));
+        assertEquals(0, stats.getAttempts(Difficulty.HARD));
+        assertEquals(1000L, stats.getLastPlayed());
+    }
+}
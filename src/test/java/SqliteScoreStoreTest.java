@@ -0,0 +1,24 @@
+import java.io.File;
+
+/**
+ * Runs the ScoreStore contract against PersistenceManager.
+ */
+class SqliteScoreStoreTest extends ScoreStoreContractTest {
+
+    private static final String TEST_DB_FILE = "test_sqlite_store.db";
+
+    @Override
+    protected ScoreStore createStore() {
+        return new PersistenceManager(TEST_DB_FILE);
+    }
+
+    @Override
+    protected void cleanUp() {
+        for (String suffix : new String[]{"", "-wal", "-shm"}) {
+            File dbFile = new File(TEST_DB_FILE + suffix);
+            if (dbFile.exists()) {
+                dbFile.delete();
+            }
+        }
+    }
+}